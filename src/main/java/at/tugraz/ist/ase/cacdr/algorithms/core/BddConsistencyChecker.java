@@ -0,0 +1,88 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
+import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
+
+/**
+ * A consistency checker for Boolean feature models, which checks by a traversal of the {@link FeatureModelBdd}
+ * of the template instead of a search. The BDD is loaded or compiled once per model and shared by the checkers
+ * of all clones, see {@link FeatureModelBdd#of}.
+ * Since a traversal is linear in the size of the BDD, the budget of a check is not needed.
+ *
+ * The checker is created by {@link #create}, which returns null if the model is not an {@link FMModel}
+ * whose template can be compiled into a BDD, see {@link FeatureModelBdd#of}.
+ */
+@Slf4j
+public class BddConsistencyChecker extends BooleanConsistencyChecker {
+
+    public static final String COUNTER_BDD_CHECKS = "The number of consistency checks of BDD checkers";
+
+    private final FeatureModelBdd.Query query;
+
+    private BddConsistencyChecker(@NonNull CDRModel diagModel, List<Constraint> constraints, FeatureModelBdd bdd) {
+        super(diagModel, constraints);
+        this.query = bdd.newQuery();
+    }
+
+    /**
+     * Creates a BDD checker for the given model.
+     * @return the checker, or null if the model is not an {@link FMModel} whose template can be compiled into a BDD
+     */
+    public static BddConsistencyChecker create(@NonNull CDRModel diagModel) {
+        FMModelTemplate template = templateOf(diagModel);
+        FeatureModelBdd bdd = template != null ? FeatureModelBdd.of((FMModel) diagModel, template) : null;
+        if (bdd == null) {
+            return null;
+        }
+
+        List<Constraint> constraints = constraintsOf(diagModel, template);
+        if (constraints == null) {
+            return null;
+        }
+        log.debug("{}(BddConsistencyChecker) created a checker [nodes={}]", LoggerUtils.tab(), bdd.size());
+        return new BddConsistencyChecker(diagModel, constraints, bdd);
+    }
+
+    @Override
+    public CheckOutcome check(@NonNull Collection<Constraint> C, @NonNull CheckBudget budget,
+                              @NonNull BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            return CheckOutcome.UNKNOWN;
+        }
+        int[] constraints = C.stream().mapToInt(this::indexOf).toArray();
+
+        start(TIMER_SOLVER);
+        try {
+            return CheckOutcome.of(query.isConsistent(constraints));
+        } finally {
+            stop(TIMER_SOLVER);
+            incrementCounter(COUNTER_BDD_CHECKS);
+        }
+    }
+
+    /**
+     * Since a check is exact and as cheap as a propagation, an inconsistent C is always refuted
+     */
+    @Override
+    public CheckOutcome propagate(@NonNull Collection<Constraint> C) {
+        return check(C, CheckBudget.UNLIMITED, () -> false) == CheckOutcome.INCONSISTENT
+                ? CheckOutcome.INCONSISTENT : CheckOutcome.UNKNOWN;
+    }
+
+    @Override
+    public long[] getSolution() {
+        return query.getSolution();
+    }
+}
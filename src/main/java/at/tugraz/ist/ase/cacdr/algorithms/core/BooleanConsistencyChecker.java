@@ -0,0 +1,103 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
+import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A consistency checker for Boolean feature models, which checks a compiled form of the {@link FMModelTemplate}
+ * instead of the Choco model, e.g., the clauses of a {@link SatConsistencyChecker} or the BDD of a
+ * {@link BddConsistencyChecker}. The checks are stopped by the budget instead of a {@link CheckGuard},
+ * and the solution of a consistent check is given as a bitset of the variables of the template.
+ *
+ * The constraints of the model are identified by their index in the order of {@link FMModelTemplate#getConstraintNames()}.
+ * The Choco model of the checker is not used.
+ */
+@Slf4j
+public abstract class BooleanConsistencyChecker extends ChocoConsistencyChecker implements IPropagationChecker {
+
+    private final Map<Constraint, Integer> indexes = new HashMap<>();
+
+    protected BooleanConsistencyChecker(@NonNull CDRModel diagModel, @NonNull List<Constraint> constraints) {
+        super(diagModel);
+
+        for (int j = 0; j < constraints.size(); j++) {
+            indexes.put(constraints.get(j), j);
+        }
+    }
+
+    /**
+     * Returns the template of the given model, or null if the model is not an {@link FMModel} or cannot be compiled
+     */
+    protected static FMModelTemplate templateOf(@NonNull CDRModel diagModel) {
+        if (!(diagModel instanceof FMModel fmModel)) {
+            return null;
+        }
+        try {
+            return fmModel.getTemplate();
+        } catch (CloneNotSupportedException e) {
+            log.warn("{}(BooleanConsistencyChecker) Cannot compile the template of {} - {}", LoggerUtils.tab(),
+                    diagModel.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the constraints of the model in the order of the template,
+     * or null if the names of the constraints do not match the template
+     */
+    protected static List<Constraint> constraintsOf(@NonNull CDRModel diagModel, @NonNull FMModelTemplate template) {
+        List<Constraint> constraints = new ArrayList<>(diagModel.getPossiblyFaultyConstraints());
+        constraints.addAll(diagModel.getCorrectConstraints());
+        if (!template.getConstraintNames().equals(constraints.stream().map(Constraint::getName).toList())) {
+            log.warn("{}(BooleanConsistencyChecker) The constraints of {} do not match its template", LoggerUtils.tab(),
+                    diagModel.getName());
+            return null;
+        }
+        return constraints;
+    }
+
+    /**
+     * Returns the index of the given constraint in the order of the template
+     */
+    protected int indexOf(@NonNull Constraint c) {
+        Integer index = indexes.get(c);
+        if (index == null) {
+            throw new IllegalArgumentException("The constraint " + c + " does not belong to the model of the checker");
+        }
+        return index;
+    }
+
+    @Override
+    public boolean isConsistent(@NonNull Collection<Constraint> C) {
+        return check(C, CheckBudget.UNLIMITED, () -> false) == CheckOutcome.CONSISTENT;
+    }
+
+    /**
+     * Checks the consistency of C within the given budget.
+     * @param cancelled tells whether the result of the check can no longer be used
+     * @return the outcome, UNKNOWN if the budget is exhausted or the check was cancelled
+     */
+    public abstract CheckOutcome check(@NonNull Collection<Constraint> C, @NonNull CheckBudget budget,
+                                       @NonNull BooleanSupplier cancelled);
+
+    /**
+     * Returns the solution of the last consistent check as a bitset of the variables of the template,
+     * see {@link FMModelTemplate#getVariableNames()}
+     */
+    public abstract long[] getSolution();
+
+    @Override
+    public void dispose() {
+        indexes.clear();
+        super.dispose();
+    }
+}
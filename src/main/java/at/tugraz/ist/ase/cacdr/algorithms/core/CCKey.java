@@ -0,0 +1,72 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A canonical key of a constraint set, which replaces the hash code of a {@link java.util.Set}
+ * in the lookup tables.
+ *
+ * The key consists of a 128-bit Zobrist fingerprint and the membership bitset of the constraint set
+ * (w.r.t. a {@link ConstraintIndex}). The fingerprint is used for hashing and for the fast comparison,
+ * the bitset is used to verify a hit, so that two different constraint sets never share a key.
+ */
+public final class CCKey {
+    private final long[] bits;
+    @Getter
+    private final long fingerprintLo;
+    @Getter
+    private final long fingerprintHi;
+
+    public CCKey(@NonNull long[] bits, long fingerprintLo, long fingerprintHi) {
+        this.bits = bits;
+        this.fingerprintLo = fingerprintLo;
+        this.fingerprintHi = fingerprintHi;
+    }
+
+    /**
+     * Returns true if the constraint with the given index belongs to the constraint set.
+     */
+    public boolean contains(int idx) {
+        int word = idx >>> 6;
+        return word < bits.length && (bits[word] & (1L << idx)) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CCKey other)) return false;
+
+        return fingerprintLo == other.fingerprintLo
+                && fingerprintHi == other.fingerprintHi
+                && sameBits(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprintLo ^ (fingerprintLo >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", fingerprintHi, fingerprintLo);
+    }
+
+    /**
+     * Compares two bitsets, which could have different lengths
+     * if the {@link ConstraintIndex} has grown between the creation of them.
+     */
+    static boolean sameBits(long[] a, long[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        for (int i = common; i < a.length; i++) {
+            if (a[i] != 0) return false;
+        }
+        for (int i = common; i < b.length; i++) {
+            if (b[i] != 0) return false;
+        }
+        return true;
+    }
+}
@@ -2,62 +2,117 @@ package at.tugraz.ist.ase.cacdr.algorithms.core;
 
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
 import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.cdrmodel.IChocoModel;
 import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.chocosolver.solver.Model;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
 
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
 
 /**
- * Manages a list of pre-generated {@link ChocoConsistencyChecker}s.
+ * Manages a pool of {@link ChocoConsistencyChecker}s.
  * In the parallel scheme, when a worker need to check the consistency of a constraint set,
  * it will ask CCManager to get a free ChocoConsistencyChecker that is not being used by other workers.
  *
  * Each checker is an instance of {@link ChocoConsistencyChecker}, which provides a set of methods
  * to check the consistency of a constraint set. Since Choco Solver is not thread-safe, we need to
  * create a new ChocoConsistencyChecker for each thread.
+ *
+ * The free checkers are kept in a lock-free {@link CheckerPool}, i.e., getting and releasing a checker
+ * neither blocks nor scans the list of checkers, and a thread usually gets the checker it used before.
+ * The pool is elastic: it starts with minCheckers checkers and clones further checkers in the background,
+ * up to numCheckers, when the checkers are busy. Checkers which are idle for idleTimeout are disposed again.
+ *
+ * In the incremental mode, the checkers are {@link IncrementalConsistencyChecker}s, and a check of a
+ * {@link ConstraintSet} is routed to the free checker whose posted constraints are closest to the set,
+ * i.e., with the smallest Hamming distance of the bitsets.
+ * The type of the checkers is given by {@link CheckerType}. {@link BooleanConsistencyChecker}s, e.g., the SAT checkers,
+ * are stopped by their budget instead of a {@link CheckGuard}.
+ *
+ * {@link #check} runs a consistency check with a {@link CheckBudget}, and stops the solver by a {@link CheckGuard}
+ * if the budget is exhausted or the check is cancelled. The checker is released at once, and the outcome is UNKNOWN.
+ * If a {@link WitnessCache} is set, the solutions of the consistent checks are added to it.
+ * In the two-stage mode, a check first propagates the constraints only, see {@link TwoStageCheck}, and searches
+ * only if the propagation does not fail. {@link #propagate} runs the first stage alone.
  */
 @Slf4j
 public class CCManager {
 
     private static final String COUNTER_GET_CHECKER = "The number of get checkers";
+    public static final String COUNTER_STOPPED_CHECKS = "The number of consistency checks stopped by a budget or a cancellation";
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 60_000; // in milliseconds
 
-//    private final CDRModel model;
+    private final CDRModel model;
+    @Getter
+    private final CheckerType checkerType;
 
-    private final ConcurrentLinkedQueue<ChocoConsistencyChecker> checkers; // list of ChocoConsistencyCheckers
-    private final ConcurrentMap<Integer, Boolean> usingCheckers; // control the usage of checkers, false - free, true - used
+    private final CheckerPool<ChocoConsistencyChecker> pool; // the free ChocoConsistencyCheckers
+    private final ConcurrentMap<ChocoConsistencyChecker, Model> chocoModels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ChocoConsistencyChecker, CheckGuard> guards = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ChocoConsistencyChecker, WitnessRecorder> recorders = new ConcurrentHashMap<>();
+
+    /**
+     * The cache of the solutions of the consistent checks, null if not used
+     */
+    @Setter
+    private volatile WitnessCache witnessCache = null;
 
-    private final Semaphore manager_semaphore;
-    private final Semaphore checker_semaphore;
+    /**
+     * True if the checks are two-stage checks, i.e., the search is skipped if the propagation fails
+     */
+    @Getter
+    @Setter
+    private volatile boolean twoStage = false;
 
+    /**
+     * Creates a CCManager, which starts with half of numCheckers checkers.
+     * @param numCheckers the maximal number of checkers, i.e., the size of the checkerPool
+     */
     public CCManager(int numCheckers, @NonNull CDRModel diagModel) throws CloneNotSupportedException {
-//        this.model = diagModel;
+        this(numCheckers, CheckerType.POST_UNPOST, diagModel);
+    }
 
-        // create checkers
-        checkers = new ConcurrentLinkedQueue<>();
-        usingCheckers = new ConcurrentHashMap<>();
+    /**
+     * Creates a CCManager, which starts with half of numCheckers checkers.
+     * @param numCheckers the maximal number of checkers, i.e., the size of the checkerPool
+     * @param checkerType the type of the checkers
+     */
+    public CCManager(int numCheckers, @NonNull CheckerType checkerType, @NonNull CDRModel diagModel) throws CloneNotSupportedException {
+        this(numCheckers, (numCheckers + 1) / 2, DEFAULT_IDLE_TIMEOUT, checkerType, diagModel);
+    }
 
-        List<Thread> threads = new LinkedList<>();
-        for (int i = 0; i < numCheckers * 2; i++) {
-            Thread t = new Thread(() -> {
-                try {
-                    CDRModel copy = (CDRModel) diagModel.clone(); // clone the model
+    /**
+     * @param numCheckers the maximal number of checkers, i.e., the size of the checkerPool
+     * @param minCheckers the number of checkers created at once, the pool never shrinks below it
+     * @param idleTimeout the time in milliseconds after which an idle checker is disposed, 0 to keep all checkers
+     * @param checkerType the type of the checkers
+     */
+    public CCManager(int numCheckers, int minCheckers, long idleTimeout, @NonNull CheckerType checkerType,
+                     @NonNull CDRModel diagModel) throws CloneNotSupportedException {
+        this.model = diagModel;
+        this.checkerType = checkerType;
+        minCheckers = Math.max(1, Math.min(minCheckers, numCheckers));
 
-                    ChocoConsistencyChecker checker = new ChocoConsistencyChecker(copy); // create a new checker
+        // create the initial checkers
+        ConcurrentLinkedQueue<ChocoConsistencyChecker> checkers = new ConcurrentLinkedQueue<>();
 
-                    checkers.add(checker);
-                    usingCheckers.put(checker.hashCode(), false); // initially, all checkers are not used
-                } catch (CloneNotSupportedException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+        List<Thread> threads = new LinkedList<>();
+        for (int i = 0; i < minCheckers; i++) {
+            Thread t = new Thread(() -> checkers.add(createChecker()));
 
             t.start();
             threads.add(t);
@@ -71,68 +126,242 @@ public class CCManager {
             }
         }
 
-        // limit the number of workers operating at the same time
-        // numCheckers == size of checkerPool
-        manager_semaphore = new Semaphore(numCheckers);
-
-        checker_semaphore = new Semaphore(1);
-    }
-
-//    public long getNumCheckers() {
-//        return checkers.size();
-//    }
-//
-//    public long getNumFreeCheckers() {
-//        return usingCheckers.values().parallelStream().filter(b -> !b).count();
-//    }
-//
-//    public void addCheckers(long numCheckers) throws CloneNotSupportedException {
-//        if (numCheckers > getNumCheckers()) {
-//            long numNewCheckers = numCheckers - getNumCheckers();
-//            for (int i = 0; i < numNewCheckers; i++) {
-//                CDRModel copy = (CDRModel) model.clone();
-//
-//                ChocoConsistencyChecker checker = new ChocoConsistencyChecker(copy);
-//
-//                checkers.add(checker);
-//                usingCheckers.put(checker.hashCode(), false); // initially, all checkers are not used
-//            }
-//        }
-//    }
-
-    /**
-     * Returns a free {@link ChocoConsistencyChecker}
+        // initially, all checkers are free
+        pool = new CheckerPool<>(checkers, Math.max(numCheckers, minCheckers), this::createChecker,
+                this::disposeChecker, idleTimeout);
+    }
+
+    /**
+     * Clones the model and creates a new checker for the clone
+     */
+    private ChocoConsistencyChecker createChecker() {
+        try {
+            CDRModel copy = (CDRModel) model.clone(); // clone the model
+
+            // create a new checker
+            ChocoConsistencyChecker checker = checkerType.createChecker(copy);
+            if (copy instanceof IChocoModel chocoModel && !(checker instanceof BooleanConsistencyChecker)) {
+                chocoModels.put(checker, chocoModel.getModel());
+                guards.put(checker, new CheckGuard(chocoModel.getModel().getSolver()));
+            }
+            return checker;
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void disposeChecker(ChocoConsistencyChecker checker) {
+        chocoModels.remove(checker);
+        guards.remove(checker);
+        recorders.remove(checker);
+        checker.dispose();
+    }
+
+    /**
+     * Returns true if the checkers are {@link IncrementalConsistencyChecker}s
+     */
+    public boolean isIncremental() {
+        return checkerType == CheckerType.INCREMENTAL;
+    }
+
+    /**
+     * Returns the current number of checkers
+     */
+    public int getNumCheckers() {
+        return pool.size();
+    }
+
+    /**
+     * Returns the number of checkers in use
+     */
+    public int getNumUsedCheckers() {
+        return pool.getInUse();
+    }
+
+    /**
+     * Returns true if a checker is free, i.e., a check would not wait for a checker
+     */
+    public boolean hasFreeChecker() {
+        return pool.getInUse() < pool.size();
+    }
+
+    /**
+     * Returns the average time in nanoseconds to clone a checker in the background
+     */
+    public long getAverageCloneTime() {
+        return pool.getAverageCreationTime();
+    }
+
+    /**
+     * Returns the metrics of the pool of checkers
+     */
+    public CheckerPool<ChocoConsistencyChecker> getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns a free {@link ChocoConsistencyChecker}, waits if all checkers are in use
      * @throws InterruptedException if interrupted
      */
     public ChocoConsistencyChecker getChecker() throws InterruptedException {
-        manager_semaphore.acquire();
-        checker_semaphore.acquire();
-        ChocoConsistencyChecker freeChecker = checkers.stream().filter(checker -> !usingCheckers.get(checker.hashCode())).findFirst().orElse(null);
-
-        if (freeChecker != null) {
-            usingCheckers.replace(freeChecker.hashCode(), true);
-            log.debug("{}(CCManager) found a free [checker={}] ", LoggerUtils.tab(), freeChecker.hashCode());
-
-            incrementCounter(COUNTER_GET_CHECKER);
-        } else {
-            // TODO - maybe create one more checker?
-            log.error("{}(CCManager) no free checker found", LoggerUtils.tab());
+        ChocoConsistencyChecker freeChecker = pool.take();
+        log.debug("{}(CCManager) found a free [checker={}] ", LoggerUtils.tab(), freeChecker.hashCode());
+
+        incrementCounter(COUNTER_GET_CHECKER);
+        return freeChecker;
+    }
+
+    /**
+     * Returns the free {@link ChocoConsistencyChecker} whose posted constraints are closest to C
+     * in the incremental mode, otherwise any free checker. Waits if all checkers are in use.
+     * @throws InterruptedException if interrupted
+     */
+    public ChocoConsistencyChecker getChecker(@NonNull ConstraintSet C) throws InterruptedException {
+        if (!isIncremental()) {
+            return getChecker();
         }
 
-        checker_semaphore.release();
+        ChocoConsistencyChecker freeChecker = pool.takeClosest(checker ->
+                checker instanceof IncrementalConsistencyChecker incrementalChecker ? incrementalChecker.distance(C) : C.size());
+        log.debug("{}(CCManager) found a free [checker={}] for [C={}]", LoggerUtils.tab(), freeChecker.hashCode(), C);
+
+        incrementCounter(COUNTER_GET_CHECKER);
         return freeChecker;
     }
 
+    /**
+     * Checks the consistency of C on a free checker, which is stopped if the budget is exhausted
+     * or cancelled becomes true. The checker is released before returning.
+     * @return the outcome, UNKNOWN if the checker was stopped or the check was cancelled before it started
+     * @throws InterruptedException if interrupted while waiting for a checker
+     */
+    public CheckOutcome check(@NonNull ConstraintSet C, @NonNull CheckBudget budget,
+                              @NonNull BooleanSupplier cancelled) throws InterruptedException {
+        if (cancelled.getAsBoolean()) {
+            return CheckOutcome.UNKNOWN;
+        }
+
+        ChocoConsistencyChecker checker = getChecker(C);
+        CheckGuard guard = guards.get(checker);
+        WitnessCache cache = witnessCache;
+        WitnessRecorder recorder = cache != null ? recorderOf(checker, cache) : null;
+        try {
+            if (twoStage && TwoStageCheck.propagate(checker, C) == CheckOutcome.INCONSISTENT) {
+                incrementCounter(TwoStageCheck.COUNTER_RESOLVED_BY_PROPAGATION);
+                return CheckOutcome.INCONSISTENT;
+            }
+
+            boolean consistent;
+            boolean stopped;
+            if (checker instanceof BooleanConsistencyChecker booleanChecker) {
+                CheckOutcome outcome = booleanChecker.check(C, budget, cancelled);
+                consistent = outcome == CheckOutcome.CONSISTENT;
+                stopped = outcome == CheckOutcome.UNKNOWN;
+            } else {
+                if (guard != null) {
+                    guard.arm(budget, cancelled);
+                }
+                if (recorder != null) {
+                    recorder.arm();
+                }
+                consistent = checker.isConsistent(C);
+                stopped = guard != null && guard.disarm();
+            }
+
+            if (consistent && cache != null) {
+                long[] solution = checker instanceof BooleanConsistencyChecker booleanChecker ? booleanChecker.getSolution()
+                        : recorder != null ? recorder.take() : null;
+                if (solution != null) {
+                    cache.add(solution);
+                }
+            }
+
+            if (!consistent && stopped) { // a found solution is valid even if the search was stopped afterwards
+                incrementCounter(COUNTER_STOPPED_CHECKS);
+                log.debug("{}(CCManager) stopped [checker={}] for [C={}]", LoggerUtils.tab(), checker.hashCode(), C);
+                return CheckOutcome.UNKNOWN;
+            }
+            if (twoStage) {
+                incrementCounter(TwoStageCheck.COUNTER_RESOLVED_BY_SEARCH);
+            }
+            return CheckOutcome.of(consistent);
+        } finally {
+            if (guard != null) {
+                guard.disarm();
+            }
+            releaseChecker(checker);
+        }
+    }
+
+    /**
+     * Runs the first stage of a two-stage check of C on a free checker, i.e., only propagates the constraints.
+     * The checker is released before returning. If the checkers cannot propagate, no checker is taken.
+     * @return INCONSISTENT if the propagation fails, otherwise UNKNOWN
+     * @throws InterruptedException if interrupted while waiting for a checker
+     */
+    public CheckOutcome propagate(@NonNull ConstraintSet C) throws InterruptedException {
+        if (!checkerType.canPropagate()) {
+            return CheckOutcome.UNKNOWN;
+        }
+        ChocoConsistencyChecker checker = getChecker(C);
+        try {
+            return TwoStageCheck.propagate(checker, C);
+        } finally {
+            releaseChecker(checker);
+        }
+    }
+
+    /**
+     * Returns the recorder of the solutions of the given checker, or null if the checker has no Choco model
+     */
+    private WitnessRecorder recorderOf(ChocoConsistencyChecker checker, WitnessCache cache) {
+        Model chocoModel = chocoModels.get(checker);
+        if (chocoModel == null) {
+            return null;
+        }
+        return recorders.computeIfAbsent(checker, c -> new WitnessRecorder(chocoModel, cache.getVariableNames()));
+    }
+
     /**
      * Release a {@link ChocoConsistencyChecker} which is done in use
      * @param checker the {@link ChocoConsistencyChecker} to release
      * @throws InterruptedException if interrupted
      */
     public void releaseChecker(ChocoConsistencyChecker checker) throws InterruptedException {
-//        checker_semaphore.acquire();
-        usingCheckers.replace(checker.hashCode(), false);
+        pool.release(checker);
         log.debug("{}(CCManager) released [checker={}] ", LoggerUtils.tab(), checker.hashCode());
-        manager_semaphore.release();
-//        checker_semaphore.release();
+    }
+
+    /**
+     * Runs the given consistency checks on each checker, in parallel. Since all checkers are taken,
+     * the pool clones checkers in the background, hence all numCheckers checkers are created and warmed up.
+     * @throws InterruptedException if interrupted while waiting for a checker
+     */
+    public void warmUp(@NonNull List<? extends Collection<Constraint>> checks) throws InterruptedException {
+        log.debug("{}(CCManager) warming up [checks={}, maxCheckers={}]", LoggerUtils.tab(), checks.size(), pool.getMaxSize());
+
+        List<ChocoConsistencyChecker> checkers = new LinkedList<>();
+        List<Thread> threads = new LinkedList<>();
+        try {
+            for (int i = 0; i < pool.getMaxSize(); i++) {
+                ChocoConsistencyChecker checker = pool.take(); // waits for the cloned checkers
+                checkers.add(checker);
+
+                Thread t = new Thread(() -> WarmUp.run(checker, checks));
+                t.start();
+                threads.add(t);
+            }
+        } finally {
+            threads.forEach(Uninterruptibles::joinUninterruptibly); // the checkers are in use until then
+            checkers.forEach(pool::release);
+        }
+    }
+
+    /**
+     * Disposes the free checkers, and the checkers in use once they are released, and stops cloning checkers
+     */
+    public void dispose() {
+        log.debug("{}(CCManager) disposing [pool={}]", LoggerUtils.tab(), pool);
+        pool.close();
     }
 }
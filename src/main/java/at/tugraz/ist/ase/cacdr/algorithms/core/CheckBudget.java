@@ -0,0 +1,31 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The limits of a speculative consistency check, after which the solver is stopped and
+ * the consistency is unknown. A limit of 0 means no limit.
+ *
+ * @param timeLimit the time limit in milliseconds
+ * @param failLimit the maximal number of fails of the search
+ * @param nodeLimit the maximal number of nodes of the search
+ */
+public record CheckBudget(long timeLimit, long failLimit, long nodeLimit) {
+
+    public static final CheckBudget UNLIMITED = new CheckBudget(0, 0, 0);
+
+    public CheckBudget {
+        checkArgument(timeLimit >= 0 && failLimit >= 0 && nodeLimit >= 0, "The limits must not be negative");
+    }
+
+    /**
+     * Returns a budget with the given time limit in milliseconds
+     */
+    public static CheckBudget ofTime(long timeLimit) {
+        return new CheckBudget(timeLimit, 0, 0);
+    }
+
+    public boolean isUnlimited() {
+        return timeLimit == 0 && failLimit == 0 && nodeLimit == 0;
+    }
+}
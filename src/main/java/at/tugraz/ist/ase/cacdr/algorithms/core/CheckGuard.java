@@ -0,0 +1,76 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import lombok.NonNull;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.util.criteria.Criterion;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A stop criterion of the solver of a checker, which stops a running search when the {@link CheckBudget}
+ * of the check is exhausted or the check is cancelled, i.e., its result can no longer be used.
+ * The guard is armed for each check and disarmed afterwards. Unarmed, it never stops the search.
+ */
+public class CheckGuard implements Criterion {
+
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    private final Solver solver;
+
+    private volatile boolean armed = false;
+    private volatile CheckBudget budget = CheckBudget.UNLIMITED;
+    private volatile BooleanSupplier cancelled = NOT_CANCELLED;
+    private volatile long deadline; // System.nanoTime
+    private volatile long startFails;
+    private volatile long startNodes;
+    private volatile boolean met = false;
+
+    public CheckGuard(@NonNull Solver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Arms the guard for the next check. The criterion is registered again,
+     * since resetting the solver may have removed it.
+     * @param cancelled tells whether the result of the check can no longer be used
+     */
+    public void arm(@NonNull CheckBudget budget, @NonNull BooleanSupplier cancelled) {
+        this.budget = budget;
+        this.cancelled = cancelled;
+        this.deadline = budget.timeLimit() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.timeLimit()) : 0L;
+        this.startFails = solver.getFailCount();
+        this.startNodes = solver.getNodeCount();
+        this.met = false;
+        this.armed = true;
+
+        solver.removeStopCriterion(this);
+        solver.addStopCriterion(this);
+    }
+
+    /**
+     * Disarms the guard.
+     * @return true if the guard stopped the search since it was armed
+     */
+    public boolean disarm() {
+        armed = false;
+        cancelled = NOT_CANCELLED;
+        return met;
+    }
+
+    @Override
+    public boolean isMet() {
+        if (!armed) {
+            return false;
+        }
+        CheckBudget b = budget;
+        boolean stop = cancelled.getAsBoolean()
+                || (b.timeLimit() > 0 && System.nanoTime() - deadline >= 0)
+                || (b.failLimit() > 0 && solver.getFailCount() - startFails >= b.failLimit())
+                || (b.nodeLimit() > 0 && solver.getNodeCount() - startNodes >= b.nodeLimit());
+        if (stop) {
+            met = true;
+        }
+        return stop;
+    }
+}
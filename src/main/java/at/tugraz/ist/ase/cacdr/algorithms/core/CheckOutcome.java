@@ -0,0 +1,22 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+/**
+ * The outcome of a consistency check with a {@link CheckBudget}, which is UNKNOWN if the solver was stopped
+ * by the budget or by a cancellation before it could decide the consistency.
+ */
+public enum CheckOutcome {
+    CONSISTENT,
+    INCONSISTENT,
+    UNKNOWN;
+
+    public static CheckOutcome of(boolean consistent) {
+        return consistent ? CONSISTENT : INCONSISTENT;
+    }
+
+    /**
+     * Returns the consistency, or null if unknown
+     */
+    public Boolean toConsistency() {
+        return this == UNKNOWN ? null : this == CONSISTENT;
+    }
+}
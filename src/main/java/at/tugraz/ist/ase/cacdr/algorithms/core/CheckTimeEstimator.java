@@ -0,0 +1,51 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the duration of a consistency check as an exponentially weighted moving average (EWMA)
+ * of the durations of the done consistency checks.
+ *
+ * The main thread uses the estimation to decide how long it waits for a consistency check
+ * which is being executed by a worker, instead of waiting a fixed time.
+ */
+public class CheckTimeEstimator {
+
+    /**
+     * The estimation before the first consistency check is done
+     */
+    private static final long DEFAULT_CHECK_TIME = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int SMOOTHING_SHIFT = 3; // alpha = 1/8
+
+    private volatile long averageCheckTime = DEFAULT_CHECK_TIME; // benign races between the workers
+
+    /**
+     * Adds the duration of a done consistency check to the estimation.
+     */
+    public void record(long checkTime) {
+        long avg = averageCheckTime;
+        averageCheckTime = avg + ((checkTime - avg) >> SMOOTHING_SHIFT);
+    }
+
+    /**
+     * Returns the estimated duration of a consistency check in nanoseconds.
+     */
+    public long getAverageCheckTime() {
+        return averageCheckTime;
+    }
+
+    /**
+     * Returns how long the main thread should wait for a consistency check started at the given time,
+     * i.e., the estimated remaining time of the check plus the time the main thread needs to do the check itself.
+     * Waiting longer is not worth it, since the main thread could have done the check in the meantime.
+     */
+    public long waitTime(long startTime) {
+        long avg = averageCheckTime;
+        long remaining = Math.max(avg - (System.nanoTime() - startTime), 0L);
+        return remaining + avg;
+    }
+
+    public void reset() {
+        averageCheckTime = DEFAULT_CHECK_TIME;
+    }
+}
@@ -0,0 +1,410 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * A lock-free pool of checkers, which is the core of {@link CCManager}.
+ *
+ * Each checker has its own slot, which holds the checker while it is free and null while it is in use.
+ * A thread takes a checker by a CAS on a slot, starting at the slot assigned to the thread, hence
+ * a thread usually gets the same checker again (thread affinity) and threads do not compete for the same slot.
+ * Releasing a checker puts it back into its slot. Both operations are O(1) as long as there are free checkers.
+ * A thread which finds no free checker spins for a short time, then parks until a checker is released.
+ *
+ * An elastic pool starts with the given checkers and creates further checkers, up to maxSize, on a background
+ * thread when at least 3/4 of its checkers are in use. Checkers which are free for longer than the idle timeout
+ * are disposed, but the pool never shrinks below its initial size.
+ *
+ * Closing the pool disposes the free checkers, and the checkers in use when they are released.
+ *
+ * @param <T> the type of the checkers
+ */
+@Slf4j
+public class CheckerPool<T> implements AutoCloseable {
+
+    public static final String COUNTER_CHECKER_CREATION = "The number of checkers created by the pool";
+    public static final String COUNTER_CHECKER_RETIREMENT = "The number of idle checkers disposed by the pool";
+
+    private static final int SPINS_BEFORE_PARK = 64;
+
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray idleSince; // the time a checker was put into the slot
+    private final ConcurrentMap<T, Integer> slotOf = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> emptySlots = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>(); // the parked threads
+
+    @Getter
+    private final int minSize;
+    @Getter
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger(); // only changed by the background thread after the construction
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final Supplier<T> factory;
+    private final Consumer<T> disposer;
+    private final long idleTimeout; // in nanoseconds
+    private final ScheduledExecutorService executor; // creates and disposes checkers
+    private final AtomicBoolean growing = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private final LongAdder creations = new LongAdder();
+    private final LongAdder creationTime = new LongAdder();
+    private final LongAdder retirements = new LongAdder();
+
+    /**
+     * Creates a pool of a fixed size.
+     */
+    public CheckerPool(@NonNull Collection<T> checkers) {
+        this(checkers, checkers.size(), null, null, 0);
+    }
+
+    /**
+     * Creates an elastic pool.
+     * @param checkers the initial checkers, the pool never shrinks below their number
+     * @param maxSize the maximal number of checkers
+     * @param factory creates a new checker, or null if the pool should not grow
+     * @param disposer disposes an idle checker, or null if nothing to do
+     * @param idleTimeout the time in milliseconds after which a free checker is disposed, 0 to keep all checkers
+     */
+    public CheckerPool(@NonNull Collection<T> checkers, int maxSize, Supplier<T> factory, Consumer<T> disposer, long idleTimeout) {
+        if (checkers.isEmpty()) {
+            throw new IllegalArgumentException("A CheckerPool needs at least one checker");
+        }
+        if (maxSize < checkers.size()) {
+            throw new IllegalArgumentException("The maxSize must not be smaller than the number of checkers");
+        }
+
+        this.minSize = checkers.size();
+        this.maxSize = maxSize;
+        this.factory = factory;
+        this.disposer = disposer;
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+
+        slots = new AtomicReferenceArray<>(maxSize);
+        idleSince = new AtomicLongArray(maxSize);
+        int slot = 0;
+        long now = System.nanoTime();
+        for (T checker : checkers) {
+            slotOf.put(checker, slot);
+            idleSince.set(slot, now);
+            slots.set(slot++, checker);
+        }
+        size.set(slot);
+        for (; slot < maxSize; slot++) {
+            emptySlots.add(slot);
+        }
+
+        boolean elastic = (factory != null && maxSize > minSize) || this.idleTimeout > 0;
+        if (elastic) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "CheckerPool");
+                t.setDaemon(true);
+                return t;
+            });
+            if (this.idleTimeout > 0) {
+                executor.scheduleWithFixedDelay(this::retireIdleCheckers, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Takes a free checker, waits if all checkers are in use.
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pool is closed while waiting
+     */
+    public T take() throws InterruptedException {
+        growIfBusy(inUse.incrementAndGet());
+
+        int n = slots.length();
+        int start = (int) (Thread.currentThread().getId() % n); // the slot assigned to this thread
+
+        boolean waiting = false;
+        for (int round = 0; ; round++) {
+            for (int i = 0, slot = start; i < n; i++, slot = slot + 1 == n ? 0 : slot + 1) {
+                T checker = slots.get(slot);
+                if (checker != null && slots.compareAndSet(slot, checker, null)) {
+                    if (waiting) {
+                        stopWaiting();
+                    }
+                    return checker;
+                }
+            }
+
+            waiting = awaitFreeChecker(round, waiting); // all checkers are in use
+        }
+    }
+
+    /**
+     * Takes the free checker with the smallest distance, e.g., the checker whose state is closest to the next check,
+     * waits if all checkers are in use.
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pool is closed while waiting
+     */
+    public T takeClosest(@NonNull ToIntFunction<? super T> distance) throws InterruptedException {
+        growIfBusy(inUse.incrementAndGet());
+
+        int n = slots.length();
+        boolean waiting = false;
+        for (int round = 0; ; ) {
+            int closestSlot = -1;
+            T closest = null;
+            int closestDistance = Integer.MAX_VALUE;
+            for (int slot = 0; slot < n && closestDistance > 0; slot++) {
+                T checker = slots.get(slot);
+                if (checker != null) {
+                    int d = distance.applyAsInt(checker);
+                    if (d < closestDistance) {
+                        closestSlot = slot;
+                        closest = checker;
+                        closestDistance = d;
+                    }
+                }
+            }
+
+            if (closest == null) {
+                waiting = awaitFreeChecker(round++, waiting); // all checkers are in use
+            } else if (slots.compareAndSet(closestSlot, closest, null)) {
+                if (waiting) {
+                    stopWaiting();
+                }
+                return closest;
+            } // else taken by another thread in the meantime, search again
+        }
+    }
+
+    /**
+     * Waits for a free checker after a scan of the slots has failed. The thread spins for the first rounds,
+     * then registers as a waiter, scans the slots once more, since a checker may have been released in the meantime,
+     * and parks until a released checker wakes it up.
+     * @return true if the thread is registered as a waiter
+     */
+    private boolean awaitFreeChecker(int round, boolean waiting) throws InterruptedException {
+        if (Thread.interrupted() || closed) {
+            if (waiting) {
+                stopWaiting();
+            }
+            inUse.decrementAndGet();
+            if (closed) {
+                throw new IllegalStateException("The CheckerPool is closed");
+            }
+            throw new InterruptedException();
+        }
+        if (round < SPINS_BEFORE_PARK) {
+            Thread.onSpinWait();
+            return false;
+        }
+        if (!waiting) {
+            growIfBusy(inUse.get()); // the checkers in use may have changed since the take
+            waiters.add(Thread.currentThread());
+            return true;
+        }
+
+        LockSupport.park(this);
+        waiters.remove(Thread.currentThread()); // still registered after a spurious wake-up
+        return false;
+    }
+
+    /**
+     * Unregisters a waiter which has got a checker. If a releasing thread has already woken it up,
+     * the wake-up is passed on to the next waiter, which may wait for the released checker.
+     */
+    private void stopWaiting() {
+        if (!waiters.remove(Thread.currentThread())) {
+            signalWaiter();
+        }
+    }
+
+    /**
+     * Wakes up the longest waiting thread, if any.
+     */
+    private void signalWaiter() {
+        Thread waiter = waiters.poll();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Puts a checker taken from this pool back, or disposes it if the pool is closed.
+     */
+    public void release(@NonNull T checker) {
+        Integer slot = slotOf.get(checker);
+        if (slot == null) {
+            throw new IllegalArgumentException("The checker does not belong to this pool");
+        }
+        inUse.decrementAndGet();
+        if (closed) {
+            dispose(checker);
+            return;
+        }
+
+        idleSince.set(slot, System.nanoTime());
+        slots.set(slot, checker);
+        signalWaiter();
+        // closed in the meantime, the checker is disposed either here or by close()
+        if (closed && slots.compareAndSet(slot, checker, null)) {
+            dispose(checker);
+        }
+    }
+
+    /**
+     * Starts creating checkers in the background if at least 3/4 of the checkers are in use.
+     */
+    private void growIfBusy(int busy) {
+        if (factory == null || busy * 4 < size.get() * 3 || size.get() >= maxSize) {
+            return;
+        }
+        if (growing.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::grow);
+            } catch (RejectedExecutionException e) { // closed
+                growing.set(false);
+            }
+        }
+    }
+
+    private void grow() {
+        try {
+            while (!closed && size.get() < maxSize && inUse.get() * 4 >= size.get() * 3) {
+                long start = System.nanoTime();
+                T checker = factory.get();
+                long time = System.nanoTime() - start;
+
+                creations.increment();
+                creationTime.add(time);
+                incrementCounter(COUNTER_CHECKER_CREATION);
+
+                Integer slot = emptySlots.poll();
+                slotOf.put(checker, slot);
+                idleSince.set(slot, System.nanoTime());
+                size.incrementAndGet();
+                slots.set(slot, checker); // publishes the checker
+                signalWaiter();
+                if (closed && slots.compareAndSet(slot, checker, null)) { // closed while creating the checker
+                    dispose(checker);
+                }
+                log.debug("{}(CheckerPool) created a checker [size={}, inUse={}, time={} ms]", LoggerUtils.tab(),
+                        size.get(), inUse.get(), TimeUnit.NANOSECONDS.toMillis(time));
+            }
+        } catch (RuntimeException e) {
+            log.warn("{}(CheckerPool) Cannot create a checker - {}", LoggerUtils.tab(), e.getMessage());
+        } finally {
+            growing.set(false);
+        }
+    }
+
+    /**
+     * Disposes the checkers which are free for longer than the idle timeout, down to minSize.
+     */
+    private void retireIdleCheckers() {
+        long now = System.nanoTime();
+        for (int slot = 0; slot < slots.length() && size.get() > minSize; slot++) {
+            T checker = slots.get(slot);
+            if (checker != null && now - idleSince.get(slot) >= idleTimeout
+                    && slots.compareAndSet(slot, checker, null)) {
+                slotOf.remove(checker);
+                size.decrementAndGet();
+                emptySlots.add(slot);
+                dispose(checker);
+
+                retirements.increment();
+                incrementCounter(COUNTER_CHECKER_RETIREMENT);
+                log.debug("{}(CheckerPool) disposed an idle checker [size={}]", LoggerUtils.tab(), size.get());
+            }
+        }
+    }
+
+    private void dispose(T checker) {
+        if (disposer != null) {
+            disposer.accept(checker);
+        }
+    }
+
+    /**
+     * Returns the number of checkers of the pool.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of checkers in use, including the threads waiting for a checker.
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Returns the number of checkers created by the pool, excluding the initial checkers.
+     */
+    public long getCreations() {
+        return creations.sum();
+    }
+
+    /**
+     * Returns the average time in nanoseconds to create a checker, or 0 if no checker was created.
+     */
+    public long getAverageCreationTime() {
+        long n = creations.sum();
+        return n == 0 ? 0L : creationTime.sum() / n;
+    }
+
+    /**
+     * Returns the number of idle checkers disposed by the pool.
+     */
+    public long getRetirements() {
+        return retirements.sum();
+    }
+
+    /**
+     * Stops the background thread and disposes the free checkers. The checkers in use are disposed
+     * when they are released, and the threads waiting for a checker get an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (int slot = 0; slot < slots.length(); slot++) {
+            T checker = slots.get(slot);
+            if (checker != null && slots.compareAndSet(slot, checker, null)) {
+                dispose(checker);
+            }
+        }
+        for (Thread waiter; (waiter = waiters.poll()) != null; ) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CheckerPool{size=%d, inUse=%d, maxSize=%d, creations=%d, avgCreationTime=%.3f ms, retirements=%d}",
+                size(), getInUse(), maxSize, getCreations(), getAverageCreationTime() / 1e6, getRetirements());
+    }
+}
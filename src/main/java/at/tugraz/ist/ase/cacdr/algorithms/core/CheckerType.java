@@ -0,0 +1,67 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.cdrmodel.IChocoModel;
+import lombok.NonNull;
+
+/**
+ * The kinds of consistency checkers, which {@link CCManager} can hand out.
+ * The incremental and the selector checkers require a Choco model, the SAT and the BDD checkers a Boolean feature model.
+ * For other models, a {@link ChocoConsistencyChecker} is created.
+ */
+public enum CheckerType {
+    /**
+     * Posts and unposts the constraints for each check, see {@link ChocoConsistencyChecker}
+     */
+    POST_UNPOST,
+    /**
+     * Posts and unposts the difference to the last check, see {@link IncrementalConsistencyChecker}
+     */
+    INCREMENTAL,
+    /**
+     * Posts all constraints once, reified with selector variables, see {@link SelectorConsistencyChecker}
+     */
+    SELECTOR,
+    /**
+     * Solves the clauses of a Boolean feature model under assumptions, see {@link SatConsistencyChecker}
+     */
+    SAT,
+    /**
+     * Traverses the BDD of a Boolean feature model, see {@link BddConsistencyChecker}
+     */
+    BDD;
+
+    /**
+     * Returns true if the checkers of this type propagate in the first stage of a two-stage check,
+     * see {@link TwoStageCheck}, i.e., unless they fall back to a {@link ChocoConsistencyChecker}
+     */
+    public boolean canPropagate() {
+        return this != POST_UNPOST;
+    }
+
+    /**
+     * Creates a checker of this type. A selector checker changes the model for good,
+     * hence it must be created for a model which is not used otherwise, e.g., a clone.
+     */
+    public ChocoConsistencyChecker createChecker(@NonNull CDRModel diagModel) {
+        if (this == SAT || this == BDD) {
+            BooleanConsistencyChecker checker = this == SAT ? SatConsistencyChecker.create(diagModel)
+                    : BddConsistencyChecker.create(diagModel);
+            if (checker != null) {
+                return checker;
+            }
+        }
+        if (diagModel instanceof IChocoModel) {
+            switch (this) {
+                case INCREMENTAL:
+                    return new IncrementalConsistencyChecker(diagModel);
+                case SELECTOR:
+                    return new SelectorConsistencyChecker(diagModel);
+                default:
+                    break;
+            }
+        }
+        return new ChocoConsistencyChecker(diagModel);
+    }
+}
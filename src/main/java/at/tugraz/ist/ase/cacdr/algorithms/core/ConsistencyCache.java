@@ -0,0 +1,179 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * A bounded cache of the consistency of constraint sets, which survives the calls of findDiagnosis.
+ * Since the LookupTables are cleared after each diagnosis, a long-lived diagnosis engine can keep a
+ * ConsistencyCache to serve repeated consistency checks on the same model without the solver.
+ *
+ * The cache holds at most capacity entries and evicts with a cost-aware CLOCK: each entry has a credit,
+ * which is refilled on a hit and decremented when the clock hand passes it, and an entry is evicted when its credit is 0.
+ * The credit of an entry depends on the duration of its consistency check, hence expensive checks survive longer.
+ *
+ * The entries are keyed by the 128-bit fingerprints of the {@link CCKey}s, as in the {@link PersistentConsistencyStore}.
+ * Since a fingerprint only depends on the names of the constraints, not on their indexes, a cache can be shared by
+ * engines with different {@link ConstraintIndex}es, e.g., by engines on clones of a model, but not by engines of
+ * different models.
+ */
+@Slf4j
+public class ConsistencyCache {
+
+    public static final String COUNTER_CACHE_HIT = "The number of consistency cache hits";
+    public static final String COUNTER_CACHE_MISS = "The number of consistency cache misses";
+    public static final String COUNTER_CACHE_EVICTION = "The number of consistency cache evictions";
+
+    private static final int MAX_CREDIT = 4;
+
+    private record Key(long lo, long hi) {}
+
+    private static final class Entry {
+        private final Key key;
+        private final boolean consistent;
+        private final int weight; // the credit given on a hit
+        private volatile int credit;
+
+        private Entry(Key key, boolean consistent, int weight) {
+            this.key = key;
+            this.consistent = consistent;
+            this.weight = weight;
+            this.credit = weight;
+        }
+    }
+
+    @Getter
+    private final int capacity;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Entry[] clock;
+    private int size = 0; // guarded by this
+    private int hand = 0; // guarded by this
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ConsistencyCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.clock = new Entry[capacity];
+
+        log.debug("{}(ConsistencyCache) Created ConsistencyCache with [capacity={}]", LoggerUtils.tab(), capacity);
+    }
+
+    /**
+     * Returns the cached consistency of the constraint set with the given key, or null if it is not cached.
+     */
+    public Boolean get(@NonNull CCKey key) {
+        Entry entry = entries.get(new Key(key.getFingerprintLo(), key.getFingerprintHi()));
+        if (entry == null) {
+            misses.increment();
+            incrementCounter(COUNTER_CACHE_MISS);
+            return null;
+        }
+
+        entry.credit = entry.weight; // referenced, refill the credit
+        hits.increment();
+        incrementCounter(COUNTER_CACHE_HIT);
+        return entry.consistent;
+    }
+
+    /**
+     * Adds the consistency of the constraint set with the given key, evicting an entry if the cache is full.
+     * @param cost the duration of the consistency check in nanoseconds
+     */
+    public synchronized void put(@NonNull CCKey key, boolean consistent, long cost) {
+        Key k = new Key(key.getFingerprintLo(), key.getFingerprintHi());
+        if (entries.containsKey(k)) {
+            return;
+        }
+
+        int slot = size < capacity ? size++ : evict();
+        Entry entry = new Entry(k, consistent, weight(cost));
+        clock[slot] = entry;
+        entries.put(k, entry);
+    }
+
+    /**
+     * Advances the clock hand until an entry without credit is found, and removes it.
+     * @return the slot of the evicted entry
+     */
+    private int evict() {
+        while (true) {
+            Entry entry = clock[hand];
+            int slot = hand;
+            hand = (hand + 1) % capacity;
+
+            if (entry.credit <= 0) {
+                entries.remove(entry.key);
+                evictions.increment();
+                incrementCounter(COUNTER_CACHE_EVICTION);
+                return slot;
+            }
+            entry.credit--;
+        }
+    }
+
+    /**
+     * Returns the credit of a consistency check with the given duration,
+     * i.e., 1 below 1 ms, 2 below 10 ms, 3 below 100 ms, otherwise 4.
+     */
+    static int weight(long cost) {
+        int weight = 1;
+        for (long threshold = 1_000_000L; cost >= threshold && weight < MAX_CREDIT; threshold *= 10) {
+            weight++;
+        }
+        return weight;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to lookups, or 0 if there was no lookup.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        Arrays.fill(clock, null);
+        size = 0;
+        hand = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConsistencyCache{size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.3f}",
+                size(), capacity, getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+}
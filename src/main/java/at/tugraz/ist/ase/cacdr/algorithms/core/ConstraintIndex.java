@@ -0,0 +1,143 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Gives each {@link Constraint} of a diagnosis problem a dense index (0, 1, 2, ...),
+ * which is the basis of {@link ConstraintSet}s and of the canonical keys ({@link CCKey}) used by the lookup tables.
+ *
+ * The constraints are told apart by {@link Constraint#equals}, i.e., by their names, as the checkers do when they map
+ * the constraints of the main model onto the constraints of their clones. Hence, constraints with the same name
+ * share an index.
+ *
+ * Each constraint also gets a 128-bit Zobrist code (two 64-bit halves), derived from the name of the constraint.
+ * The fingerprint of a constraint set is the XOR of the codes of its constraints, hence
+ * the fingerprint of a union or a difference of disjoint sets is the XOR of the fingerprints.
+ *
+ * The index is append-only, i.e., a constraint keeps its index for the lifetime of the index,
+ * and it is safe to be used by the main thread, the lookahead workers and the checker workers at the same time.
+ */
+@Slf4j
+public class ConstraintIndex {
+
+    private final ConcurrentMap<Constraint, Integer> indexes = new ConcurrentHashMap<>();
+    private volatile Constraint[] constraints = new Constraint[64];
+    private volatile long[] codesLo = new long[64];
+    private volatile long[] codesHi = new long[64];
+    private volatile int size = 0;
+
+    @SafeVarargs
+    public ConstraintIndex(@NonNull Collection<Constraint>... constraintSets) {
+        for (Collection<Constraint> constraints : constraintSets) {
+            constraints.forEach(this::indexOf);
+        }
+
+        log.debug("{}(ConstraintIndex) Created ConstraintIndex for [size={}]", LoggerUtils.tab(), size());
+    }
+
+    /**
+     * Returns the index of the given constraint. An unknown constraint gets the next free index.
+     */
+    public int indexOf(@NonNull Constraint c) {
+        Integer idx = indexes.get(c);
+        if (idx != null) {
+            return idx;
+        }
+        return register(c);
+    }
+
+    /**
+     * Returns the index of the given constraint, or -1 if the constraint is not indexed.
+     */
+    public int indexOfIfPresent(@NonNull Constraint c) {
+        return indexes.getOrDefault(c, -1);
+    }
+
+    /**
+     * Returns the constraint with the given index.
+     */
+    public Constraint get(int idx) {
+        return constraints[idx];
+    }
+
+    /**
+     * Returns the number of indexed constraints.
+     */
+    public int size() {
+        return size;
+    }
+
+    private synchronized int register(Constraint c) {
+        Integer idx = indexes.get(c);
+        if (idx != null) { // registered by another thread in the meantime
+            return idx;
+        }
+
+        int newIdx = size;
+        if (newIdx == constraints.length) {
+            codesLo = Arrays.copyOf(codesLo, newIdx * 2);
+            codesHi = Arrays.copyOf(codesHi, newIdx * 2);
+            constraints = Arrays.copyOf(constraints, newIdx * 2);
+        }
+        codesLo[newIdx] = zobrist(c.getName(), SEED_LO);
+        codesHi[newIdx] = zobrist(c.getName(), SEED_HI);
+        constraints[newIdx] = c;
+        size = newIdx + 1;
+        indexes.put(c, newIdx);
+        return newIdx;
+    }
+
+    /**
+     * Computes the canonical key of a constraint set.
+     */
+    public CCKey keyOf(@NonNull Collection<Constraint> C) {
+        if (C instanceof ConstraintSet cs && cs.getIndex() == this) {
+            return cs.key();
+        }
+        return ConstraintSet.of(this, C).key();
+    }
+
+    /**
+     * Returns the lower 64 bits of the Zobrist code of the constraint with the given index.
+     */
+    long codeLo(int idx) {
+        return codesLo[idx];
+    }
+
+    /**
+     * Returns the upper 64 bits of the Zobrist code of the constraint with the given index.
+     */
+    long codeHi(int idx) {
+        return codesHi[idx];
+    }
+
+    private static final long SEED_LO = 0x9E3779B97F4A7C15L;
+    private static final long SEED_HI = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Derives a pseudo-random 64-bit code from the name of a constraint, so that a constraint
+     * gets the same code in every run (FNV-1a over the name, spread by the finalizer of SplitMix64).
+     */
+    static long zobrist(@NonNull String name, long seed) {
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix64(h + seed);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
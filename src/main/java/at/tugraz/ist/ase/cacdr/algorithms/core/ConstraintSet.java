@@ -0,0 +1,411 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.*;
+
+/**
+ * An immutable, order-preserving set of constraints.
+ *
+ * Each constraint is represented by its dense index in a {@link ConstraintIndex}, and the membership
+ * is stored as a long[] bitset. Hence, union, difference and subset tests
+ * are word-parallel operations instead of walking the constraint objects.
+ * Each set also carries the Zobrist fingerprint of its constraints, which is maintained incrementally
+ * by union, difference and splitting, so that the canonical key of a set is available in O(1).
+ * The iteration order is the order in which the constraints were added,
+ * e.g., the union of B and C iterates over the constraints of B first, then over the constraints of C.
+ *
+ * A set is a range [from, to) over an ordered array of indexes, which is shared with the set it has been
+ * split from. Hence, {@link #leftHalf()} and {@link #rightHalf()} do not copy the constraints,
+ * and the bitset of a half is only built when it is needed. The prefix XORs of the codes over the shared array
+ * are built on the first split, so that the fingerprint of each half is the XOR of two prefixes.
+ *
+ * {@link #union} and {@link #difference} are lazy, they only compute the bitset and the fingerprint
+ * of the result word by word, and keep the sets they have been built from. The iteration order is only
+ * materialized when the result is iterated or split, e.g., B U C is not copied when its key is found in the lookup table.
+ */
+public final class ConstraintSet extends AbstractSet<Constraint> {
+
+    @Getter
+    private final ConstraintIndex index;
+    private volatile int[] order; // indexes of the constraints in the iteration order, shared between the halves
+    private final int from; // the range of this set in order
+    private final int to;
+    // the parts of a lazy set, which is first U second, or the constraints of first in bits if second is null
+    private final ConstraintSet first;
+    private final ConstraintSet second;
+    private final long fingerprintLo; // XOR of the Zobrist codes of the constraints
+    private final long fingerprintHi;
+
+    private volatile long[] bits; // membership bitset, lazily built for the halves
+    private volatile long[] prefixes; // prefix XORs of the codes over order, shared between the halves
+
+    // lazily computed, benign races
+    private CCKey key;
+    private int hashCode;
+
+    private ConstraintSet(ConstraintIndex index, int[] order, int from, int to, long[] bits,
+                          long fingerprintLo, long fingerprintHi, long[] prefixes) {
+        this.index = index;
+        this.order = order;
+        this.from = from;
+        this.to = to;
+        this.bits = bits;
+        this.fingerprintLo = fingerprintLo;
+        this.fingerprintHi = fingerprintHi;
+        this.prefixes = prefixes;
+        this.first = null;
+        this.second = null;
+    }
+
+    private ConstraintSet(ConstraintIndex index, int size, long[] bits, long fingerprintLo, long fingerprintHi,
+                          ConstraintSet first, ConstraintSet second) {
+        this.index = index;
+        this.from = 0;
+        this.to = size;
+        this.bits = bits;
+        this.fingerprintLo = fingerprintLo;
+        this.fingerprintHi = fingerprintHi;
+        this.first = first;
+        this.second = second;
+    }
+
+    private ConstraintSet(ConstraintIndex index, int[] order, long[] bits, long fingerprintLo, long fingerprintHi) {
+        this(index, order, 0, order.length, bits, fingerprintLo, fingerprintHi, null);
+    }
+
+    public static ConstraintSet empty(@NonNull ConstraintIndex index) {
+        return new ConstraintSet(index, new int[0], new long[0], 0L, 0L);
+    }
+
+    /**
+     * Returns a ConstraintSet containing the given constraints, in the iteration order of the given collection.
+     */
+    public static ConstraintSet of(@NonNull ConstraintIndex index, @NonNull Collection<Constraint> C) {
+        if (C instanceof ConstraintSet cs && cs.index == index) {
+            return cs;
+        }
+
+        int[] order = new int[C.size()];
+        long[] bits = new long[words(index.size())];
+        long lo = 0L;
+        long hi = 0L;
+        int n = 0;
+        for (Constraint c : C) {
+            int idx = index.indexOf(c);
+            int w = idx >>> 6;
+            if (w >= bits.length) { // the constraint has been indexed after allocating the bitset
+                bits = Arrays.copyOf(bits, w + 1);
+            }
+            if ((bits[w] & (1L << idx)) == 0) {
+                bits[w] |= 1L << idx;
+                order[n++] = idx;
+                lo ^= index.codeLo(idx);
+                hi ^= index.codeHi(idx);
+            }
+        }
+
+        return new ConstraintSet(index, n == order.length ? order : Arrays.copyOf(order, n), bits, lo, hi);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return to == from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Constraint c)) {
+            return false;
+        }
+        int idx = index.indexOfIfPresent(c);
+        return idx >= 0 && containsIndex(idx);
+    }
+
+    boolean containsIndex(int idx) {
+        long[] b = bits();
+        int w = idx >>> 6;
+        return w < b.length && (b[w] & (1L << idx)) != 0;
+    }
+
+    @Override
+    public boolean containsAll(@NonNull Collection<?> C) {
+        if (C instanceof ConstraintSet cs && cs.index == index) {
+            return cs.isSubsetOf(this);
+        }
+        return super.containsAll(C);
+    }
+
+    /**
+     * Returns true if all constraints of this set belong to the given set.
+     */
+    public boolean isSubsetOf(@NonNull ConstraintSet other) {
+        if (size() > other.size()) {
+            return false;
+        }
+
+        long[] a = bits();
+        long[] b = other.bits();
+        for (int w = 0; w < a.length; w++) {
+            long bw = w < b.length ? b[w] : 0L;
+            if ((a[w] & ~bw) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of constraints which belong to exactly one of the two sets,
+     * i.e., the Hamming distance of the bitsets.
+     */
+    public int distance(@NonNull ConstraintSet other) {
+        long[] a = bits();
+        long[] b = other.bits();
+        int distance = 0;
+        for (int w = 0; w < Math.max(a.length, b.length); w++) {
+            long aw = w < a.length ? a[w] : 0L;
+            long bw = w < b.length ? b[w] : 0L;
+            distance += Long.bitCount(aw ^ bw);
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the union of this set and the given set.
+     * The constraints of this set come first in the iteration order.
+     */
+    public ConstraintSet union(@NonNull ConstraintSet other) {
+        if (other.isEmpty()) return this;
+        if (isEmpty()) return other;
+
+        long[] a = bits();
+        long[] b = other.bits();
+        long[] newBits = Arrays.copyOf(a, Math.max(Math.max(a.length, b.length), words(index.size())));
+        boolean disjoint = true;
+        for (int w = 0; w < b.length; w++) {
+            disjoint &= w >= a.length || (a[w] & b[w]) == 0;
+            newBits[w] |= b[w];
+        }
+
+        // the constraints of the other set which are not in this set
+        ConstraintSet rest = disjoint ? other : other.difference(this);
+        if (rest.isEmpty()) { // other is a subset of this
+            return this;
+        }
+        return new ConstraintSet(index, size() + rest.size(), newBits,
+                fingerprintLo ^ rest.fingerprintLo, fingerprintHi ^ rest.fingerprintHi, this, rest);
+    }
+
+    /**
+     * Returns the constraints of this set which do not belong to the given set.
+     */
+    public ConstraintSet difference(@NonNull ConstraintSet other) {
+        if (isEmpty() || other.isEmpty()) return this;
+
+        long[] a = bits();
+        long[] b = other.bits();
+        long[] newBits = null;
+        int removed = 0;
+        long lo = fingerprintLo;
+        long hi = fingerprintHi;
+        for (int w = 0; w < Math.min(a.length, b.length); w++) {
+            long common = a[w] & b[w];
+            if (common != 0) {
+                if (newBits == null) {
+                    newBits = a.clone();
+                }
+                newBits[w] &= ~common;
+                removed += Long.bitCount(common);
+                for (; common != 0; common &= common - 1) { // remove the codes of the common constraints
+                    int idx = (w << 6) + Long.numberOfTrailingZeros(common);
+                    lo ^= index.codeLo(idx);
+                    hi ^= index.codeHi(idx);
+                }
+            }
+        }
+
+        if (newBits == null) { // disjoint sets
+            return this;
+        }
+        if (removed == size()) {
+            return empty(index);
+        }
+        return new ConstraintSet(index, size() - removed, newBits, lo, hi, this, null);
+    }
+
+    /**
+     * Returns the first k = n/2 constraints of this set, i.e., C1 = {c1..ck} of Split(C, C1, C2).
+     * The returned set shares the constraints with this set.
+     */
+    public ConstraintSet leftHalf() {
+        int mid = from + size() / 2;
+        long[] p = prefixes();
+        return new ConstraintSet(index, order(), from, mid, null,
+                p[2 * mid] ^ p[2 * from], p[2 * mid + 1] ^ p[2 * from + 1], p);
+    }
+
+    /**
+     * Returns the last n - k constraints of this set, i.e., C2 = {ck+1..cn} of Split(C, C1, C2).
+     * The returned set shares the constraints with this set.
+     */
+    public ConstraintSet rightHalf() {
+        int mid = from + size() / 2;
+        long[] p = prefixes();
+        return new ConstraintSet(index, order(), mid, to, null,
+                p[2 * to] ^ p[2 * mid], p[2 * to + 1] ^ p[2 * mid + 1], p);
+    }
+
+    /**
+     * Returns the prefix XORs of the codes over order, i.e., the Lo and Hi XORs of order[0..i) at 2i and 2i + 1,
+     * which are built once per order array and passed on to the halves.
+     */
+    private long[] prefixes() {
+        long[] p = prefixes;
+        if (p == null) {
+            int[] o = order();
+            p = new long[2 * o.length + 2];
+            for (int i = 0; i < o.length; i++) {
+                p[2 * i + 2] = p[2 * i] ^ index.codeLo(o[i]);
+                p[2 * i + 3] = p[2 * i + 1] ^ index.codeHi(o[i]);
+            }
+            prefixes = p;
+        }
+        return p;
+    }
+
+    private long[] bits() {
+        long[] b = bits;
+        if (b == null) { // a half, whose order is never lazy
+            b = new long[words(index.size())];
+            for (int i = from; i < to; i++) {
+                int idx = order[i];
+                b[idx >>> 6] |= 1L << idx;
+            }
+            bits = b;
+        }
+        return b;
+    }
+
+    /**
+     * Returns the indexes of the constraints in the iteration order, which are materialized for a lazy set
+     * by walking its parts without recursion, since B U C is usually a deep chain of unions.
+     */
+    private int[] order() {
+        int[] o = order;
+        if (o == null) {
+            o = new int[size()];
+            int n = 0;
+            Deque<ConstraintSet> parts = new ArrayDeque<>();
+            parts.push(this);
+            while (!parts.isEmpty()) {
+                ConstraintSet cs = parts.pop();
+                int[] co = cs.order;
+                if (co != null) {
+                    System.arraycopy(co, cs.from, o, n, cs.size());
+                    n += cs.size();
+                } else if (cs.second != null) {
+                    parts.push(cs.second);
+                    parts.push(cs.first);
+                } else { // the constraints of first which are kept in the bitset of the difference
+                    int[] fo = cs.first.order();
+                    for (int i = cs.first.from; i < cs.first.to; i++) {
+                        if (cs.containsIndex(fo[i])) {
+                            o[n++] = fo[i];
+                        }
+                    }
+                }
+            }
+            order = o;
+        }
+        return o;
+    }
+
+    /**
+     * Returns the indexes of the constraints in ascending order.
+     */
+    int[] sortedIndexes() {
+        long[] b = bits();
+        int[] indexes = new int[size()];
+        int n = 0;
+        for (int w = 0; w < b.length; w++) {
+            long word = b[w];
+            while (word != 0) {
+                indexes[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns the canonical key of this set, which reuses the cached fingerprint and the bitset of this set.
+     */
+    public CCKey key() {
+        CCKey k = key;
+        if (k == null) {
+            k = key = new CCKey(bits(), fingerprintLo, fingerprintHi);
+        }
+        return k;
+    }
+
+    @Override
+    public Iterator<Constraint> iterator() {
+        return new Iterator<>() {
+            private final int[] indexes = order();
+            private int cursor = from;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < to;
+            }
+
+            @Override
+            public Constraint next() {
+                if (cursor >= to) {
+                    throw new NoSuchElementException();
+                }
+                return index.get(indexes[cursor++]);
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o instanceof ConstraintSet cs && cs.index == index) {
+            return size() == cs.size()
+                    && fingerprintLo == cs.fingerprintLo && fingerprintHi == cs.fingerprintHi
+                    && CCKey.sameBits(bits(), cs.bits());
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * The hash code as defined by {@link Set#hashCode()}, so that a ConstraintSet is equal to
+     * any other {@link Set} with the same constraints.
+     */
+    @Override
+    public int hashCode() {
+        int h = hashCode;
+        if (h == 0 && !isEmpty()) {
+            int[] o = order();
+            for (int i = from; i < to; i++) {
+                h += index.get(o[i]).hashCode();
+            }
+            hashCode = h;
+        }
+        return h;
+    }
+
+    private static int words(int numBits) {
+        return (numBits + 63) >>> 6;
+    }
+}
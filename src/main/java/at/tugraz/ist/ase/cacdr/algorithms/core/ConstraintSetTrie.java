@@ -0,0 +1,229 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent set-trie, which indexes {@link ConstraintSet}s by their sorted constraint indexes
+ * and answers subset and superset queries without scanning all stored sets.
+ *
+ * The lookup tables use two tries, one for the constraint sets known to be consistent and one for
+ * the constraint sets known to be inconsistent, to find a consistent superset or an inconsistent subset
+ * of a constraint set. Sets can be added and removed concurrently with queries.
+ * Adding, removing and pruning synchronize on the nodes, the queries do not lock.
+ *
+ * @param <V> the type of the values associated with the constraint sets
+ */
+public class ConstraintSetTrie<V> {
+
+    private static final class Node<V> {
+        private final ConcurrentSkipListMap<Integer, Node<V>> children = new ConcurrentSkipListMap<>();
+        private volatile V value; // not null if a stored set ends at this node
+        private boolean pruned; // removed from its parent, guarded by the node
+    }
+
+    private record Frame<V>(Node<V> node, int pos) {}
+
+    private volatile Node<V> root = new Node<>();
+
+    /**
+     * Adds the given constraint set with the associated value.
+     */
+    public void put(@NonNull ConstraintSet C, @NonNull V value) {
+        int[] q = C.sortedIndexes();
+        while (!tryPut(q, value)) {
+            Thread.onSpinWait(); // a node on the path has been pruned concurrently, retry from the root
+        }
+    }
+
+    private boolean tryPut(int[] q, V value) {
+        Node<V> node = root;
+        for (int idx : q) {
+            synchronized (node) {
+                if (node.pruned) {
+                    return false;
+                }
+                node = node.children.computeIfAbsent(idx, k -> new Node<>());
+            }
+        }
+        synchronized (node) {
+            if (node.pruned) {
+                return false;
+            }
+            node.value = value;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given constraint set if it is associated with the given value,
+     * and prunes the nodes which no longer lead to a stored set.
+     */
+    public void remove(@NonNull ConstraintSet C, @NonNull V value) {
+        int[] q = C.sortedIndexes();
+        @SuppressWarnings("unchecked")
+        Node<V>[] path = new Node[q.length + 1];
+        path[0] = root;
+        for (int i = 0; i < q.length; i++) {
+            path[i + 1] = path[i].children.get(q[i]);
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+
+        Node<V> node = path[q.length];
+        synchronized (node) {
+            if (node.value != value) { // another value is stored for the set
+                return;
+            }
+            node.value = null;
+        }
+
+        for (int i = q.length; i > 0; i--) {
+            node = path[i];
+            synchronized (node) {
+                if (node.pruned || node.value != null || !node.children.isEmpty()) {
+                    return;
+                }
+                node.pruned = true;
+                path[i - 1].children.remove(q[i - 1], node);
+            }
+        }
+    }
+
+    /**
+     * Returns true if no constraint set is stored.
+     */
+    public boolean isEmpty() {
+        Node<V> r = root;
+        return r.value == null && r.children.isEmpty();
+    }
+
+    /**
+     * Returns the value of a stored set which is a subset of C, or null if there is no such set.
+     */
+    public V findSubsetOf(@NonNull ConstraintSet C) {
+        return visitSubsetsOf(C, value -> true);
+    }
+
+    /**
+     * Performs the given action for the values of all stored sets which are subsets of C.
+     */
+    public void forEachSubsetOf(@NonNull ConstraintSet C, @NonNull Consumer<V> action) {
+        visitSubsetsOf(C, value -> {
+            action.accept(value);
+            return false;
+        });
+    }
+
+    /**
+     * Returns the value of a stored set which is a superset of C, or null if there is no such set.
+     */
+    public V findSupersetOf(@NonNull ConstraintSet C) {
+        return visitSupersetsOf(C, value -> true);
+    }
+
+    /**
+     * Performs the given action for the values of all stored sets which are supersets of C.
+     */
+    public void forEachSupersetOf(@NonNull ConstraintSet C, @NonNull Consumer<V> action) {
+        visitSupersetsOf(C, value -> {
+            action.accept(value);
+            return false;
+        });
+    }
+
+    /**
+     * Visits the values of the stored subsets of C until the visitor returns true.
+     * @return the value for which the visitor returned true, or null
+     */
+    private V visitSubsetsOf(ConstraintSet C, Predicate<V> visitor) {
+        int[] q = C.sortedIndexes();
+        Deque<Frame<V>> stack = new ArrayDeque<>();
+        stack.push(new Frame<>(root, 0));
+
+        while (!stack.isEmpty()) {
+            Frame<V> frame = stack.pop();
+            Node<V> node = frame.node();
+            V value = node.value;
+            if (value != null && visitor.test(value)) {
+                return value;
+            }
+            // follow only the constraints of C after the ones on the path,
+            // skipping alternately to the next child and to the next constraint of C
+            int i = frame.pos();
+            while (i < q.length) {
+                Map.Entry<Integer, Node<V>> child = node.children.ceilingEntry(q[i]);
+                if (child == null) {
+                    break;
+                }
+                int idx = child.getKey();
+                if (idx == q[i]) {
+                    stack.push(new Frame<>(child.getValue(), ++i));
+                } else {
+                    i = Arrays.binarySearch(q, i + 1, q.length, idx);
+                    if (i < 0) {
+                        i = -i - 1;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits the values of the stored supersets of C until the visitor returns true.
+     * @return the value for which the visitor returned true, or null
+     */
+    private V visitSupersetsOf(ConstraintSet C, Predicate<V> visitor) {
+        int[] q = C.sortedIndexes();
+        Deque<Frame<V>> stack = new ArrayDeque<>();
+        stack.push(new Frame<>(root, 0));
+
+        while (!stack.isEmpty()) {
+            Frame<V> frame = stack.pop();
+            Node<V> node = frame.node();
+            int pos = frame.pos();
+
+            if (pos == q.length) { // all constraints of C are on the path, any set below is a superset
+                V value = visitAll(node, visitor);
+                if (value != null) {
+                    return value;
+                }
+                continue;
+            }
+
+            // the next constraint of C has to be on the path, smaller constraints can be skipped
+            for (Map.Entry<Integer, Node<V>> child : node.children.headMap(q[pos], true).entrySet()) {
+                stack.push(new Frame<>(child.getValue(), child.getKey() == q[pos] ? pos + 1 : pos));
+            }
+        }
+        return null;
+    }
+
+    private V visitAll(Node<V> node, Predicate<V> visitor) {
+        Deque<Node<V>> stack = new ArrayDeque<>();
+        stack.push(node);
+
+        while (!stack.isEmpty()) {
+            Node<V> n = stack.pop();
+            V value = n.value;
+            if (value != null && visitor.test(value)) {
+                return value;
+            }
+            n.children.values().forEach(stack::push);
+        }
+        return null;
+    }
+
+    public void clear() {
+        root = new Node<>();
+    }
+}
@@ -0,0 +1,113 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import lombok.NonNull;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list of constraint sets, which holds the Δ of the lookahead, i.e., the constraint sets
+ * which are not yet considered.
+ *
+ * The list is a persistent cons-list, i.e., adding or removing the first element is O(1) and
+ * the lists of the sibling nodes of the lookahead share their tails instead of copying them.
+ */
+public final class DeltaList implements Iterable<ConstraintSet> {
+
+    private static final DeltaList EMPTY = new DeltaList(null, null, 0);
+
+    private final ConstraintSet head;
+    private final DeltaList tail;
+    private final int size;
+
+    private DeltaList(ConstraintSet head, DeltaList tail, int size) {
+        this.head = head;
+        this.tail = tail;
+        this.size = size;
+    }
+
+    public static DeltaList empty() {
+        return EMPTY;
+    }
+
+    public static DeltaList of(@NonNull ConstraintSet Δ) {
+        return EMPTY.prepend(Δ);
+    }
+
+    /**
+     * Returns a new list with the given constraint set as the first element, followed by this list.
+     */
+    public DeltaList prepend(@NonNull ConstraintSet Δ) {
+        return new DeltaList(Δ, this, size + 1);
+    }
+
+    /**
+     * Returns the first element.
+     */
+    public ConstraintSet head() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return head;
+    }
+
+    /**
+     * Returns the list without the first element.
+     */
+    public DeltaList tail() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return tail;
+    }
+
+    public ConstraintSet get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        DeltaList list = this;
+        for (; i > 0; i--) {
+            list = list.tail;
+        }
+        return list.head;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Iterator<ConstraintSet> iterator() {
+        return new Iterator<>() {
+            private DeltaList cursor = DeltaList.this;
+
+            @Override
+            public boolean hasNext() {
+                return !cursor.isEmpty();
+            }
+
+            @Override
+            public ConstraintSet next() {
+                ConstraintSet Δ = cursor.head();
+                cursor = cursor.tail;
+                return Δ;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (DeltaList list = this; !list.isEmpty(); list = list.tail) {
+            if (list != this) {
+                sb.append(", ");
+            }
+            sb.append(list.head);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,187 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.core.UserRequirement;
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * The dead, core and false-optional features of a feature model, i.e., of the constraints of an {@link FMModel}
+ * without its user requirements, together with its correct constraints.
+ *
+ * A dead feature is false and a core feature is true in all configurations. A user requirement which selects
+ * a dead feature or deselects a core feature is hence inconsistent on its own. A false-optional feature is
+ * an optional child which is true in all configurations with its parent. The parent relation is taken from
+ * the constraints consisting of the single clause (child => parent) whose parent precedes the child
+ * in the order of the variables, as the features are created by FMKB.
+ *
+ * The features are found by a {@link SatSolver} on the clauses of the {@link FMModelTemplate}, which checks each feature
+ * to be true and false unless a solution found before has already shown it. The analysis is computed once per
+ * feature model and kept for all models with the same feature model, see {@link #of}.
+ */
+@Slf4j
+public class FeatureModelAnalysis {
+
+    public static final String COUNTER_ANALYSIS_CHECKS = "The number of consistency checks of the feature model analysis";
+
+    private static final ConcurrentMap<Long, FeatureModelAnalysis> analyses = new ConcurrentHashMap<>();
+
+    /**
+     * False if the feature model has no configuration, then the features are not classified
+     */
+    @Getter
+    private final boolean consistent;
+    @Getter
+    private final Set<String> deadFeatures;
+    @Getter
+    private final Set<String> coreFeatures;
+    @Getter
+    private final Set<String> falseOptionalFeatures;
+
+    private FeatureModelAnalysis(boolean consistent, Set<String> deadFeatures, Set<String> coreFeatures,
+                                 Set<String> falseOptionalFeatures) {
+        this.consistent = consistent;
+        this.deadFeatures = Collections.unmodifiableSet(deadFeatures);
+        this.coreFeatures = Collections.unmodifiableSet(coreFeatures);
+        this.falseOptionalFeatures = Collections.unmodifiableSet(falseOptionalFeatures);
+    }
+
+    /**
+     * Returns the analysis of the feature model of the given model, which is computed on the first call
+     * for a feature model, identified by the fingerprint of its constraints.
+     * @return the analysis, or null if the template of the model cannot be encoded as clauses
+     */
+    public static FeatureModelAnalysis of(@NonNull FMModel model) {
+        FMModelTemplate template;
+        try {
+            template = model.getTemplate();
+        } catch (CloneNotSupportedException e) {
+            log.warn("{}(FeatureModelAnalysis) Cannot compile the template of {} - {}", LoggerUtils.tab(),
+                    model.getName(), e.getMessage());
+            return null;
+        }
+        int[][][] clauses = template != null ? template.getClauses() : null;
+        if (clauses == null) {
+            return null;
+        }
+
+        // the constraints of the feature model, without the user requirements
+        Set<String> requirements = new HashSet<>();
+        model.getUserRequirements().forEach(ur -> requirements.add(ur.getConstraint().getName()));
+        List<Constraint> constraints = new ArrayList<>(model.getPossiblyFaultyConstraints());
+        constraints.removeIf(c -> requirements.contains(c.getName()));
+
+        List<String> names = template.getConstraintNames();
+        List<int[][]> featureModelClauses = new ArrayList<>();
+        for (int j = 0; j < names.size(); j++) {
+            if (!requirements.contains(names.get(j))) {
+                featureModelClauses.add(clauses[j]);
+            }
+        }
+
+        long fingerprint = PersistentConsistencyStore.fingerprintOf(constraints, model.getCorrectConstraints());
+        return analyses.computeIfAbsent(fingerprint, f -> analyze(template.getVariableNames(), featureModelClauses));
+    }
+
+    /**
+     * Classifies the features, given by the names of the variables, of the given clauses,
+     * in which a literal is v + 1 for the v-th variable or -(v + 1) for its negation
+     */
+    static FeatureModelAnalysis analyze(@NonNull String[] variableNames, @NonNull List<int[][]> clauses) {
+        log.debug("{}Analyzing feature model >>> [vars={}, constraints={}]", LoggerUtils.tab(),
+                variableNames.length, clauses.size());
+
+        SatSolver solver = new SatSolver();
+        for (int v = 0; v < variableNames.length; v++) {
+            solver.newVar();
+        }
+        boolean consistent = true;
+        for (int[][] constraint : clauses) {
+            for (int[] clause : constraint) {
+                consistent &= solver.addClause(clause);
+            }
+        }
+
+        Set<String> dead = new LinkedHashSet<>();
+        Set<String> core = new LinkedHashSet<>();
+        Set<String> falseOptional = new LinkedHashSet<>();
+        boolean[] seenTrue = new boolean[variableNames.length];
+        boolean[] seenFalse = new boolean[variableNames.length];
+        if (!consistent || !solve(solver, new int[0], seenTrue, seenFalse)) {
+            log.debug("{}<<< The feature model is inconsistent", LoggerUtils.tab());
+            return new FeatureModelAnalysis(false, dead, core, falseOptional);
+        }
+
+        for (int v = 0; v < variableNames.length; v++) {
+            if (!seenTrue[v] && !solve(solver, new int[]{v + 1}, seenTrue, seenFalse)) {
+                dead.add(variableNames[v]);
+            }
+            if (!seenFalse[v] && !solve(solver, new int[]{-(v + 1)}, seenTrue, seenFalse)) {
+                core.add(variableNames[v]);
+            }
+        }
+
+        for (int[][] constraint : clauses) {
+            if (constraint.length != 1 || constraint[0].length != 2) {
+                continue;
+            }
+            int child = -Math.min(constraint[0][0], constraint[0][1]) - 1; // the clause (-child, parent)
+            int parent = Math.max(constraint[0][0], constraint[0][1]) - 1;
+            if (child < 0 || parent < 0 || parent >= child) {
+                continue;
+            }
+            String name = variableNames[child];
+            if (!core.contains(name) && !dead.contains(name) && !dead.contains(variableNames[parent])
+                    && !solve(solver, new int[]{parent + 1, -(child + 1)}, seenTrue, seenFalse)) {
+                falseOptional.add(name);
+            }
+        }
+
+        log.debug("{}<<< Analyzed feature model [dead={}, core={}, falseOptional={}]", LoggerUtils.tab(),
+                dead.size(), core.size(), falseOptional.size());
+        return new FeatureModelAnalysis(true, dead, core, falseOptional);
+    }
+
+    /**
+     * Solves the clauses under the given assumptions, and records the values of the variables in a solution
+     */
+    private static boolean solve(SatSolver solver, int[] assumptions, boolean[] seenTrue, boolean[] seenFalse) {
+        incrementCounter(COUNTER_ANALYSIS_CHECKS);
+        if (solver.solve(assumptions, CheckBudget.UNLIMITED, () -> false) != CheckOutcome.CONSISTENT) {
+            return false;
+        }
+        for (int v = 0; v < seenTrue.length; v++) {
+            if (solver.value(v + 1)) {
+                seenTrue[v] = true;
+            } else {
+                seenFalse[v] = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if assigning the given value to the feature is inconsistent with the feature model,
+     * i.e., if the feature is dead and the value is true, or the feature is core and the value is false
+     */
+    public boolean isInconsistent(@NonNull String feature, boolean value) {
+        return consistent && (value ? deadFeatures.contains(feature) : coreFeatures.contains(feature));
+    }
+
+    /**
+     * Returns true if the given user requirement is inconsistent with the feature model on its own
+     */
+    public boolean isInconsistent(@NonNull UserRequirement ur) {
+        return isInconsistent(ur.getVariable(), "true".equals(ur.getValue()));
+    }
+}
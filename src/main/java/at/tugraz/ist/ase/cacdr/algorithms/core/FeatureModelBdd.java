@@ -0,0 +1,652 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A feature model compiled into a reduced ordered binary decision diagram (BDD), which answers whether a set
+ * of constraints is consistent by a traversal of the BDD, i.e., in time linear in the size of the BDD.
+ *
+ * The BDD represents the conjunction of (s_j => the clauses of the j-th constraint) over the variables of the
+ * {@link FMModelTemplate} and a selector variable s_j for each constraint, see {@link FMModelTemplate#getClauses()}.
+ * A set of constraints is consistent if a path from the root to the true terminal exists on which the selectors
+ * of the set are true. Since a false selector never removes solutions, the other selectors are taken as false.
+ * The selector of a constraint is ordered right after the last variable of the constraint.
+ *
+ * The compilation fails if the BDD exceeds maxNodes nodes, since the BDDs of some feature models are too large.
+ * {@link #compileTo} compiles a model offline and stores the BDD in a file named by the fingerprint of the
+ * constraints of the model, see {@link PersistentConsistencyStore#fingerprintOf}, which {@link #of} loads
+ * from the directory given by {@link #setDirectory}. The BDD of a fingerprint is kept for the checkers of all
+ * models with the same constraints, e.g., the clones of a model and the models of later runs.
+ */
+@Slf4j
+public class FeatureModelBdd {
+
+    public static final int DEFAULT_MAX_NODES = 1 << 21;
+
+    private static final String FILE_EXTENSION = ".bdd";
+    private static final int MAGIC = 0x42444431; // "BDD1"
+    private static final long COMPILER_STACK_SIZE = 1L << 28; // the recursion is as deep as the number of levels
+
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+
+    private static final ConcurrentMap<Long, Optional<FeatureModelBdd>> compiled = new ConcurrentHashMap<>();
+    private static volatile Path directory = null;
+
+    @Getter
+    private final List<String> variableNames;
+    @Getter
+    private final List<String> constraintNames;
+    private final int[] levelVars; // the variable of each level, v for the v-th variable, -(j + 1) for the selector s_j
+    private final int[] levels; // the level of each node, the terminals have the level levelVars.length
+    private final int[] lows;
+    private final int[] highs;
+    private final int root;
+    /**
+     * True if the BDD has been read from a file instead of compiled
+     */
+    @Getter
+    private final boolean loaded;
+
+    private FeatureModelBdd(List<String> variableNames, List<String> constraintNames, int[] levelVars,
+                            int[] levels, int[] lows, int[] highs, int root, boolean loaded) {
+        this.variableNames = List.copyOf(variableNames);
+        this.constraintNames = List.copyOf(constraintNames);
+        this.levelVars = levelVars;
+        this.levels = levels;
+        this.lows = lows;
+        this.highs = highs;
+        this.root = root;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Sets the directory from which {@link #of} loads the BDDs stored by {@link #compileTo},
+     * and in which it stores the BDDs it compiles. If null, the BDDs are only kept in memory.
+     */
+    public static void setDirectory(Path directory) {
+        FeatureModelBdd.directory = directory;
+    }
+
+    /**
+     * Returns the BDD of the given model, which is loaded from the directory (see {@link #setDirectory})
+     * or compiled on the first call for the fingerprint of the constraints of the model.
+     * @return the BDD, or null if the model cannot be compiled within {@link #DEFAULT_MAX_NODES} nodes
+     */
+    public static FeatureModelBdd of(@NonNull FMModel model) {
+        FMModelTemplate template;
+        try {
+            template = model.getTemplate();
+        } catch (CloneNotSupportedException e) {
+            log.warn("{}(FeatureModelBdd) Cannot compile the template of {} - {}", LoggerUtils.tab(),
+                    model.getName(), e.getMessage());
+            return null;
+        }
+        return template != null ? of(model, template) : null;
+    }
+
+    static FeatureModelBdd of(@NonNull FMModel model, @NonNull FMModelTemplate template) {
+        long fingerprint = fingerprintOf(model);
+        return compiled.computeIfAbsent(fingerprint, f -> Optional.ofNullable(loadOrCompile(f, model, template)))
+                .orElse(null);
+    }
+
+    private static FeatureModelBdd loadOrCompile(long fingerprint, FMModel model, FMModelTemplate template) {
+        Path dir = directory;
+        Path file = dir != null ? fileOf(dir, fingerprint) : null;
+        if (file != null && Files.exists(file)) {
+            try {
+                FeatureModelBdd bdd = read(file);
+                if (bdd.matches(template)) {
+                    return bdd;
+                }
+                log.warn("{}(FeatureModelBdd) The BDD does not match the model {}, compiling again [file={}]",
+                        LoggerUtils.tab(), model.getName(), file);
+            } catch (IOException e) {
+                log.warn("{}(FeatureModelBdd) Cannot read the BDD of {}, compiling again - {}", LoggerUtils.tab(),
+                        model.getName(), e.getMessage());
+            }
+        }
+
+        FeatureModelBdd bdd = compile(template, DEFAULT_MAX_NODES);
+        if (bdd != null && file != null) {
+            try {
+                bdd.write(file);
+            } catch (IOException e) {
+                log.warn("{}(FeatureModelBdd) Cannot store the BDD of {} - {}", LoggerUtils.tab(),
+                        model.getName(), e.getMessage());
+            }
+        }
+        return bdd;
+    }
+
+    /**
+     * Compiles the BDD of the given model offline and stores it in the given directory, from which {@link #of}
+     * loads it in later runs. The BDD is not kept in memory.
+     * @return the BDD, or null if the model cannot be compiled within maxNodes nodes
+     * @throws IOException if the file cannot be written
+     */
+    public static FeatureModelBdd compileTo(@NonNull Path directory, @NonNull FMModel model, int maxNodes) throws IOException {
+        FMModelTemplate template;
+        try {
+            template = model.getTemplate();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException("Cannot compile the template of " + model.getName(), e);
+        }
+        if (template == null) {
+            return null;
+        }
+
+        FeatureModelBdd bdd = compile(template, maxNodes);
+        if (bdd != null) {
+            bdd.write(fileOf(directory, fingerprintOf(model)));
+        }
+        return bdd;
+    }
+
+    private static long fingerprintOf(FMModel model) {
+        return PersistentConsistencyStore.fingerprintOf(model.getPossiblyFaultyConstraints(), model.getCorrectConstraints());
+    }
+
+    private static Path fileOf(Path directory, long fingerprint) {
+        return directory.resolve(String.format("%016x", fingerprint) + FILE_EXTENSION);
+    }
+
+    private boolean matches(FMModelTemplate template) {
+        return variableNames.equals(Arrays.asList(template.getVariableNames()))
+                && constraintNames.equals(template.getConstraintNames());
+    }
+
+    /**
+     * Compiles the clauses of the given template.
+     * @return the BDD, or null if the template is not Boolean or the BDD exceeds maxNodes nodes
+     */
+    public static FeatureModelBdd compile(@NonNull FMModelTemplate template, int maxNodes) {
+        int[][][] clauses = template.getClauses();
+        if (clauses == null) {
+            return null;
+        }
+        return compile(Arrays.asList(template.getVariableNames()), template.getConstraintNames(), clauses, maxNodes);
+    }
+
+    /**
+     * Compiles the given clauses of each constraint, a literal is v + 1 for the v-th variable or -(v + 1) for its negation.
+     * The compiler runs on a thread with a large stack, since its recursion is as deep as the number of levels.
+     * @return the BDD, or null if it exceeds maxNodes nodes
+     */
+    static FeatureModelBdd compile(@NonNull List<String> variableNames, @NonNull List<String> constraintNames,
+                                   @NonNull int[][][] clauses, int maxNodes) {
+        log.debug("{}Compiling BDD >>> [vars={}, constraints={}, maxNodes={}]", LoggerUtils.tab(),
+                variableNames.size(), constraintNames.size(), maxNodes);
+
+        FeatureModelBdd[] bdd = new FeatureModelBdd[1];
+        Thread compiler = new Thread(null, () -> bdd[0] = build(variableNames, constraintNames, clauses, maxNodes),
+                "BddCompiler", COMPILER_STACK_SIZE);
+        compiler.start();
+        try {
+            compiler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        if (bdd[0] == null) {
+            log.warn("{}<<< Cannot compile BDD within {} nodes", LoggerUtils.tab(), maxNodes);
+        } else {
+            log.debug("{}<<< Compiled BDD [nodes={}]", LoggerUtils.tab(), bdd[0].size());
+        }
+        return bdd[0];
+    }
+
+    private static FeatureModelBdd build(List<String> variableNames, List<String> constraintNames,
+                                         int[][][] clauses, int maxNodes) {
+        int numVars = variableNames.size();
+        int numConstraints = clauses.length;
+
+        // the last variable of each constraint, -1 if the constraint has no variables
+        int[] last = new int[numConstraints];
+        for (int j = 0; j < numConstraints; j++) {
+            last[j] = -1;
+            for (int[] clause : clauses[j]) {
+                for (int l : clause) {
+                    last[j] = Math.max(last[j], Math.abs(l) - 1);
+                }
+            }
+        }
+        Integer[] order = new Integer[numConstraints];
+        Arrays.setAll(order, j -> j);
+        Arrays.sort(order, Comparator.comparingInt(j -> last[j]));
+
+        // the levels: each variable followed by the selectors of the constraints ending with the variable
+        int[] levelVars = new int[numVars + numConstraints];
+        int[] varLevels = new int[numVars];
+        int[] selectorLevels = new int[numConstraints];
+        int level = 0;
+        int k = 0;
+        for (int v = -1; v < numVars; v++) {
+            if (v >= 0) {
+                varLevels[v] = level;
+                levelVars[level++] = v;
+            }
+            for (; k < numConstraints && last[order[k]] == v; k++) {
+                selectorLevels[order[k]] = level;
+                levelVars[level++] = -(order[k] + 1);
+            }
+        }
+
+        Builder builder = new Builder(levelVars.length, maxNodes);
+        try {
+            int f = TRUE;
+            int live = 0;
+            for (int j : order) {
+                int cnf = TRUE;
+                for (int[] clause : clauses[j]) {
+                    cnf = builder.and(cnf, builder.clause(clause, varLevels));
+                }
+                int notSelector = builder.mk(selectorLevels[j], TRUE, FALSE);
+                f = builder.and(f, builder.or(notSelector, cnf));
+
+                if (builder.size > maxNodes && builder.size > 2 * live) { // drop the intermediate nodes
+                    f = builder.compact(f);
+                    live = builder.size;
+                }
+            }
+            f = builder.compact(f);
+            if (builder.size > maxNodes) {
+                return null;
+            }
+            return new FeatureModelBdd(variableNames, constraintNames, levelVars,
+                    Arrays.copyOf(builder.levels, builder.size), Arrays.copyOf(builder.lows, builder.size),
+                    Arrays.copyOf(builder.highs, builder.size), f, false);
+        } catch (NodeLimitExceeded e) {
+            return null;
+        }
+    }
+
+    private static final class NodeLimitExceeded extends RuntimeException {
+        NodeLimitExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Builds a BDD with a unique table and a cache of the apply operations. The nodes are numbered in the
+     * order of their creation, hence the children of a node have smaller numbers than the node.
+     */
+    private static final class Builder {
+        private static final int AND = 0;
+        private static final int OR = 1;
+        private static final int CACHE_SIZE = 1 << 18;
+
+        private final int terminalLevel;
+        private final int limit;
+        private int[] levels = new int[1024];
+        private int[] lows = new int[1024];
+        private int[] highs = new int[1024];
+        private int size = 0;
+        private int[] table = new int[2048]; // the nodes by their hash, 0 if empty, the terminals are not in the table
+        private final int[] cache = new int[4 * CACHE_SIZE]; // op, a, b, result
+
+        Builder(int terminalLevel, int maxNodes) {
+            this.terminalLevel = terminalLevel;
+            this.limit = 3 * maxNodes + 2; // including the intermediate nodes, which are dropped by compact
+            levels[FALSE] = levels[TRUE] = terminalLevel;
+            size = 2;
+            Arrays.fill(cache, -1);
+        }
+
+        int mk(int level, int low, int high) {
+            if (low == high) {
+                return low;
+            }
+            int mask = table.length - 1;
+            int h = hash(level, low, high) & mask;
+            for (int n = table[h]; n != 0; n = table[h]) {
+                if (levels[n] == level && lows[n] == low && highs[n] == high) {
+                    return n;
+                }
+                h = (h + 1) & mask;
+            }
+
+            if (size == limit) {
+                throw new NodeLimitExceeded();
+            }
+            if (size == levels.length) {
+                int capacity = Math.min(2 * levels.length, limit);
+                levels = Arrays.copyOf(levels, capacity);
+                lows = Arrays.copyOf(lows, capacity);
+                highs = Arrays.copyOf(highs, capacity);
+            }
+            int n = size++;
+            levels[n] = level;
+            lows[n] = low;
+            highs[n] = high;
+            table[h] = n;
+            if (2 * size > table.length) {
+                rehash(2 * table.length);
+            }
+            return n;
+        }
+
+        private static int hash(int level, int low, int high) {
+            int h = level * 0x9E3779B1 + low * 0x85EBCA77 + high * 0xC2B2AE3D;
+            return h ^ (h >>> 16);
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            int mask = capacity - 1;
+            for (int n = 2; n < size; n++) {
+                int h = hash(levels[n], lows[n], highs[n]) & mask;
+                while (table[h] != 0) {
+                    h = (h + 1) & mask;
+                }
+                table[h] = n;
+            }
+        }
+
+        int and(int a, int b) {
+            return apply(AND, a, b);
+        }
+
+        int or(int a, int b) {
+            return apply(OR, a, b);
+        }
+
+        private int apply(int op, int a, int b) {
+            if (op == AND) {
+                if (a == FALSE || b == FALSE) return FALSE;
+                if (a == TRUE || a == b) return b;
+                if (b == TRUE) return a;
+            } else {
+                if (a == TRUE || b == TRUE) return TRUE;
+                if (a == FALSE || a == b) return b;
+                if (b == FALSE) return a;
+            }
+            if (a > b) { // commutative
+                int t = a;
+                a = b;
+                b = t;
+            }
+
+            int slot = 4 * ((hash(op, a, b) >>> 1) & (CACHE_SIZE - 1));
+            if (cache[slot] == op && cache[slot + 1] == a && cache[slot + 2] == b) {
+                return cache[slot + 3];
+            }
+
+            int level = Math.min(levels[a], levels[b]);
+            int a0 = levels[a] == level ? lows[a] : a;
+            int a1 = levels[a] == level ? highs[a] : a;
+            int b0 = levels[b] == level ? lows[b] : b;
+            int b1 = levels[b] == level ? highs[b] : b;
+            int low = apply(op, a0, b0);
+            int high = apply(op, a1, b1);
+            int result = mk(level, low, high);
+
+            cache[slot] = op;
+            cache[slot + 1] = a;
+            cache[slot + 2] = b;
+            cache[slot + 3] = result;
+            return result;
+        }
+
+        /**
+         * Builds the disjunction of the literals of a clause
+         */
+        int clause(int[] clause, int[] varLevels) {
+            TreeMap<Integer, Integer> byLevel = new TreeMap<>();
+            for (int l : clause) {
+                Integer other = byLevel.put(varLevels[Math.abs(l) - 1], l);
+                if (other != null && other != l) { // a tautology
+                    return TRUE;
+                }
+            }
+
+            int r = FALSE; // built from the last level
+            for (Map.Entry<Integer, Integer> e : byLevel.descendingMap().entrySet()) {
+                r = e.getValue() > 0 ? mk(e.getKey(), r, TRUE) : mk(e.getKey(), TRUE, r);
+            }
+            return r;
+        }
+
+        /**
+         * Drops the nodes which are not reachable from the given root
+         * @return the new number of the root
+         */
+        int compact(int root) {
+            boolean[] reachable = new boolean[size];
+            reachable[FALSE] = reachable[TRUE] = reachable[root] = true;
+            for (int n = root; n >= 2; n--) {
+                if (reachable[n]) {
+                    reachable[lows[n]] = true;
+                    reachable[highs[n]] = true;
+                }
+            }
+
+            int[] renumbered = new int[size];
+            int newSize = 0;
+            for (int n = 0; n < size; n++) {
+                if (reachable[n]) {
+                    renumbered[n] = newSize;
+                    levels[newSize] = levels[n];
+                    lows[newSize] = renumbered[lows[n]];
+                    highs[newSize] = renumbered[highs[n]];
+                    newSize++;
+                }
+            }
+            size = newSize;
+            lows[FALSE] = lows[TRUE] = highs[FALSE] = highs[TRUE] = 0;
+            levels[FALSE] = levels[TRUE] = terminalLevel;
+
+            int capacity = table.length;
+            while (capacity > 2048 && 4 * size < capacity) {
+                capacity /= 2;
+            }
+            rehash(capacity);
+            Arrays.fill(cache, -1);
+            return renumbered[root];
+        }
+    }
+
+    /**
+     * Returns the number of nodes of the BDD, including the terminals
+     */
+    public int size() {
+        return levels.length;
+    }
+
+    /**
+     * Creates a query, which keeps the buffers of the traversal. A query must not be used by several threads at the same time.
+     */
+    public Query newQuery() {
+        return new Query();
+    }
+
+    /**
+     * Answers whether a set of constraints is consistent, by searching a path to the true terminal
+     * on which the selectors of the set are true and the other selectors are false
+     */
+    public final class Query {
+        private final int[] marks = new int[levels.length]; // marks[n] == stamp if n does not reach true in this traversal
+        private int stamp = 0;
+        private final boolean[] selected = new boolean[constraintNames.size()];
+        private final int[] path = new int[levelVars.length + 2];
+        private final byte[] branches = new byte[levelVars.length + 2]; // the child of the node taken by the path
+        private int pathLength = -1;
+
+        private Query() {}
+
+        /**
+         * Returns true if the constraints with the given indexes (in the order of {@link #getConstraintNames()})
+         * are consistent
+         */
+        public boolean isConsistent(@NonNull int[] constraints) {
+            for (int j : constraints) {
+                selected[j] = true;
+            }
+            try {
+                return traverse();
+            } finally {
+                for (int j : constraints) {
+                    selected[j] = false;
+                }
+            }
+        }
+
+        private boolean traverse() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+
+            int depth = 0;
+            path[0] = root;
+            branches[0] = -1;
+            while (depth >= 0) {
+                int n = path[depth];
+                if (n == TRUE) {
+                    pathLength = depth;
+                    return true;
+                }
+
+                int branch;
+                if (n == FALSE || marks[n] == stamp) {
+                    branch = 2;
+                } else {
+                    int v = levelVars[levels[n]];
+                    if (v >= 0) {
+                        branch = branches[depth] + 1; // the low child, then the high child
+                    } else {
+                        branch = branches[depth] < 0 ? (selected[-v - 1] ? 1 : 0) : 2;
+                    }
+                }
+
+                if (branch == 2) { // n does not reach true
+                    marks[n] = stamp;
+                    depth--;
+                    continue;
+                }
+                branches[depth] = (byte) branch;
+                path[++depth] = branch == 0 ? lows[n] : highs[n];
+                branches[depth] = -1;
+            }
+
+            pathLength = -1;
+            return false;
+        }
+
+        /**
+         * Returns the solution of the last consistent check as a bitset of the variables,
+         * the variables which are not on the path are false
+         * @return the solution, or null if the last check was inconsistent
+         */
+        public long[] getSolution() {
+            if (pathLength < 0) {
+                return null;
+            }
+            int numVars = variableNames.size();
+            long[] solution = new long[(numVars + Long.SIZE - 1) / Long.SIZE];
+            for (int d = 0; d < pathLength; d++) {
+                int v = levelVars[levels[path[d]]];
+                if (v >= 0 && branches[d] == 1) {
+                    solution[v >>> 6] |= 1L << v;
+                }
+            }
+            return solution;
+        }
+    }
+
+    /**
+     * Writes the BDD to the given file, via a temporary file which is moved to the file when complete
+     */
+    public void write(@NonNull Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            writeNames(out, variableNames);
+            writeNames(out, constraintNames);
+            for (int v : levelVars) {
+                out.writeInt(v);
+            }
+            out.writeInt(levels.length);
+            for (int n = 2; n < levels.length; n++) {
+                out.writeInt(levels[n]);
+                out.writeInt(lows[n]);
+                out.writeInt(highs[n]);
+            }
+            out.writeInt(root);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("{}(FeatureModelBdd) Stored BDD [file={}, nodes={}]", LoggerUtils.tab(), file, size());
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    /**
+     * Reads a BDD written by {@link #write}
+     */
+    public static FeatureModelBdd read(@NonNull Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a BDD of a feature model " + file);
+            }
+            List<String> variableNames = readNames(in);
+            List<String> constraintNames = readNames(in);
+            int[] levelVars = new int[variableNames.size() + constraintNames.size()];
+            for (int i = 0; i < levelVars.length; i++) {
+                levelVars[i] = in.readInt();
+            }
+            int size = in.readInt();
+            int[] levels = new int[size];
+            int[] lows = new int[size];
+            int[] highs = new int[size];
+            levels[FALSE] = levels[TRUE] = levelVars.length;
+            for (int n = 2; n < size; n++) {
+                levels[n] = in.readInt();
+                lows[n] = in.readInt();
+                highs[n] = in.readInt();
+                if (levels[n] < 0 || levels[n] >= levelVars.length || lows[n] >= n || highs[n] >= n || lows[n] < 0 || highs[n] < 0) {
+                    throw new IOException("Invalid node " + n + " in the BDD " + file);
+                }
+            }
+            int root = in.readInt();
+            if (root < 0 || root >= size) {
+                throw new IOException("Invalid root in the BDD " + file);
+            }
+
+            log.debug("{}(FeatureModelBdd) Loaded BDD [file={}, nodes={}]", LoggerUtils.tab(), file, size);
+            return new FeatureModelBdd(variableNames, constraintNames, levelVars, levels, lows, highs, root, true);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+}
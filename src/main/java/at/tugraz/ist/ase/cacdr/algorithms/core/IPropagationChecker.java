@@ -0,0 +1,19 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+
+import java.util.Collection;
+
+/**
+ * A consistency checker which can run the first stage of a two-stage check, i.e., the propagation
+ * of a constraint set without search, see {@link TwoStageCheck}.
+ */
+public interface IPropagationChecker {
+
+    /**
+     * Propagates the constraints of C to a fixpoint, without search. The state of the solver is restored afterwards.
+     * @return INCONSISTENT if the propagation fails, otherwise UNKNOWN
+     */
+    CheckOutcome propagate(@NonNull Collection<Constraint> C);
+}
@@ -0,0 +1,169 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.cdrmodel.IChocoModel;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link ChocoConsistencyChecker}, which keeps the constraints of the last check posted and
+ * only posts and unposts the difference to the next check. Since consecutive checks of FastDiag
+ * differ by a few constraints, the solver model is changed much less than by posting and unposting
+ * the whole constraint set for each check.
+ *
+ * The incremental mode is used for {@link ConstraintSet}s, other collections are checked by
+ * {@link ChocoConsistencyChecker} after unposting the constraints of the last check.
+ * {@link #distance} tells {@link CCManager} how far the posted constraints are from the next check.
+ * A propagation-only check ({@link #propagate}) posts the difference as well, so the search of the
+ * second stage starts without changing the model.
+ */
+@Slf4j
+public class IncrementalConsistencyChecker extends ChocoConsistencyChecker implements IPropagationChecker {
+
+    public static final String COUNTER_POSTED_CONSTRAINTS = "The number of constraints posted by incremental checkers";
+    public static final String COUNTER_UNPOSTED_CONSTRAINTS = "The number of constraints unposted by incremental checkers";
+
+    private final Model model;
+    private final Map<Constraint, List<org.chocosolver.solver.constraints.Constraint>> chocoConstraints = new HashMap<>();
+
+    private volatile ConstraintSet posted = null; // the constraints of the last check, null if nothing is posted
+
+    public IncrementalConsistencyChecker(@NonNull CDRModel diagModel) {
+        super(diagModel);
+        checkArgument(diagModel instanceof IChocoModel, "An incremental checker requires a Choco model");
+
+        this.model = ((IChocoModel) diagModel).getModel();
+        for (Constraint c : diagModel.getCorrectConstraints()) {
+            chocoConstraints.put(c, c.getChocoConstraints());
+        }
+        for (Constraint c : diagModel.getPossiblyFaultyConstraints()) {
+            chocoConstraints.put(c, c.getChocoConstraints());
+        }
+    }
+
+    /**
+     * Returns the number of constraints to post or unpost to check the given set
+     */
+    public int distance(@NonNull ConstraintSet C) {
+        ConstraintSet P = posted;
+        if (P == null) {
+            return C.size();
+        }
+        return P.getIndex() == C.getIndex() ? P.distance(C) : P.size() + C.size();
+    }
+
+    @Override
+    public boolean isConsistent(@NonNull Collection<Constraint> C) {
+        if (!(C instanceof ConstraintSet cs)) {
+            unpostAll();
+            return super.isConsistent(C);
+        }
+
+        ConstraintSet P = posted;
+        if (P != null && P.getIndex() != cs.getIndex()) {
+            unpostAll();
+            P = null;
+        }
+
+        start(TIMER_SOLVER);
+        try {
+            update(P, cs);
+
+            Solver solver = model.getSolver();
+            boolean consistent = solver.solve();
+            solver.reset();
+            return consistent;
+        } catch (RuntimeException e) {
+            unpostAll(); // the posted constraints are unknown
+            throw e;
+        } finally {
+            stop(TIMER_SOLVER);
+        }
+    }
+
+    /**
+     * Posts the difference of C to the posted constraints and propagates, the constraints of C stay posted.
+     * Other collections than {@link ConstraintSet}s are not propagated.
+     */
+    @Override
+    public CheckOutcome propagate(@NonNull Collection<Constraint> C) {
+        if (!(C instanceof ConstraintSet cs)) {
+            return CheckOutcome.UNKNOWN;
+        }
+
+        ConstraintSet P = posted;
+        if (P != null && P.getIndex() != cs.getIndex()) {
+            unpostAll();
+            P = null;
+        }
+
+        try {
+            update(P, cs);
+            return TwoStageCheck.propagatePosted(model);
+        } catch (RuntimeException e) {
+            unpostAll(); // the posted constraints are unknown
+            throw e;
+        }
+    }
+
+    /**
+     * Posts and unposts the difference of the posted constraints P to C
+     */
+    private void update(ConstraintSet P, ConstraintSet cs) {
+        posted = null; // unknown until the model is updated
+        ConstraintSet toUnpost = P == null ? ConstraintSet.empty(cs.getIndex()) : P.difference(cs);
+        ConstraintSet toPost = P == null ? cs : cs.difference(P);
+
+        toUnpost.forEach(c -> model.unpost(chocoConstraintsOf(c)));
+        toPost.forEach(c -> model.post(chocoConstraintsOf(c)));
+        posted = cs;
+
+        incrementCounter(COUNTER_UNPOSTED_CONSTRAINTS, toUnpost.size());
+        incrementCounter(COUNTER_POSTED_CONSTRAINTS, toPost.size());
+        log.trace("{}(IncrementalConsistencyChecker) updated the model [posted={}, unposted={}]", LoggerUtils.tab(),
+                toPost.size(), toUnpost.size());
+    }
+
+    private org.chocosolver.solver.constraints.Constraint[] chocoConstraintsOf(Constraint c) {
+        List<org.chocosolver.solver.constraints.Constraint> cstrs = chocoConstraints.get(c);
+        if (cstrs == null) {
+            throw new IllegalArgumentException("The constraint " + c + " does not belong to the model of the checker");
+        }
+        return cstrs.toArray(new org.chocosolver.solver.constraints.Constraint[0]);
+    }
+
+    /**
+     * Unposts all constraints, e.g., before a non-incremental check
+     */
+    public void unpostAll() {
+        posted = null;
+        for (List<org.chocosolver.solver.constraints.Constraint> cstrs : chocoConstraints.values()) {
+            for (org.chocosolver.solver.constraints.Constraint cstr : cstrs) {
+                if (cstr.getStatus() == org.chocosolver.solver.constraints.Constraint.Status.POSTED) {
+                    model.unpost(cstr);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        unpostAll();
+        chocoConstraints.clear();
+        super.dispose();
+    }
+}
@@ -0,0 +1,331 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * A persistent store of the consistency of constraint sets, which lets warm reruns of an evaluation
+ * skip the consistency checks done by previous runs on the same model.
+ *
+ * Each model has its own append-only file, named by the fingerprint of the names and the contents of the constraints
+ * of the model (see {@link #fingerprintOf}), hence a model whose constraints have been edited gets a new store.
+ * A record consists of the 128-bit Zobrist fingerprint of a constraint set (see {@link ConstraintIndex}),
+ * which only depends on the names of the constraints and is hence stable across runs, and a meta word
+ * holding the consistency and a checksum of the record. The records end at the first invalid record.
+ *
+ * The file is mapped by a {@link MappedByteBuffer} with room for further records, i.e., a lookup reads the consistency
+ * directly from the mapped record, and an append writes the record into the mapping. The mapping is only replaced
+ * when the records outgrow it, and then by a mapping of twice the size. The records put by the checker threads are
+ * collected and appended in batches of {@link #BATCH_SIZE} under an exclusive {@link FileLock}, hence several
+ * evaluation processes on one host can share a store. The collected records are appended by {@link #flush}
+ * and {@link #close} at the latest. Records appended by other processes become visible on the next miss.
+ * Within a process, a store should be opened once and shared by the engines.
+ */
+@Slf4j
+public class PersistentConsistencyStore implements Closeable {
+
+    public static final String COUNTER_STORE_HIT = "The number of persistent store hits";
+    public static final String COUNTER_STORE_MISS = "The number of persistent store misses";
+    public static final String COUNTER_STORE_APPEND = "The number of persistent store appends";
+
+    public static final int BATCH_SIZE = 64;
+
+    private static final String FILE_EXTENSION = ".ccs";
+    private static final int MAGIC = 0x43435331; // "CCS1"
+    static final int HEADER_SIZE = 16; // magic, unused, model fingerprint
+    static final int RECORD_SIZE = 24; // fingerprintLo, fingerprintHi, meta
+    private static final int INITIAL_CAPACITY = HEADER_SIZE + 4096 * RECORD_SIZE;
+    private static final long VALID = 1L << 63; // set in every written meta word
+    private static final long CONSISTENT = 1L;
+
+    /**
+     * The 128-bit key of a constraint set
+     */
+    private record Key(long lo, long hi) {}
+
+    @Getter
+    private final Path file;
+    @Getter
+    private final long modelFingerprint;
+    private final FileChannel channel;
+
+    private volatile MappedByteBuffer mapped; // null after close
+    private final ConcurrentMap<Key, Integer> offsets = new ConcurrentHashMap<>(); // record offsets in the file
+    private int scanned = HEADER_SIZE; // guarded by this, the end of the records
+
+    private final ConcurrentMap<Key, Boolean> pending = new ConcurrentHashMap<>(); // put, but not appended yet
+    private final AtomicInteger numPending = new AtomicInteger();
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private PersistentConsistencyStore(Path file, long modelFingerprint, FileChannel channel) {
+        this.file = file;
+        this.modelFingerprint = modelFingerprint;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens (or creates) the store of the model with the given fingerprint in the given directory.
+     */
+    public static PersistentConsistencyStore open(@NonNull Path directory, long modelFingerprint) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("%016x", modelFingerprint) + FILE_EXTENSION);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        PersistentConsistencyStore store = new PersistentConsistencyStore(file, modelFingerprint, channel);
+        try {
+            store.initialize();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        log.debug("{}(PersistentConsistencyStore) Opened store [file={}, records={}]", LoggerUtils.tab(), file, store.size());
+        return store;
+    }
+
+    /**
+     * Writes the header of a new file, or checks the header of an existing file, and maps the file.
+     * An incomplete record left by a crashed process is overwritten by the next append.
+     */
+    private void initialize() throws IOException {
+        try (FileLock ignored = channel.lock()) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(0).putLong(modelFingerprint).flip();
+                channel.write(header, 0);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getLong(8) != modelFingerprint) {
+                    throw new IOException("Not a consistency store of the model " + file);
+                }
+            }
+
+            synchronized (this) {
+                map(Math.max(INITIAL_CAPACITY, channel.size()));
+                scan();
+            }
+        }
+    }
+
+    /**
+     * Returns the stored consistency of the given constraint set, or null if it is not stored or the store is closed.
+     */
+    public Boolean get(@NonNull CCKey key) {
+        MappedByteBuffer buffer = mapped;
+        if (buffer == null) {
+            return null;
+        }
+
+        Key k = new Key(key.getFingerprintLo(), key.getFingerprintHi());
+        Boolean consistency = pending.get(k);
+        Integer offset = offsets.get(k);
+        if (consistency == null && offset == null) {
+            offset = scanAndGet(k); // appended by another process in the meantime?
+        }
+        if (consistency == null && offset == null) {
+            incrementCounter(COUNTER_STORE_MISS);
+            return null;
+        }
+
+        incrementCounter(COUNTER_STORE_HIT);
+        if (consistency != null) {
+            return consistency;
+        }
+        buffer = mapped; // the record could be beyond the previous mapping
+        return buffer != null ? (buffer.getLong(offset + 16) & CONSISTENT) != 0 : null;
+    }
+
+    private synchronized Integer scanAndGet(Key k) {
+        try {
+            if (mapped != null) {
+                scan();
+            }
+        } catch (IOException e) {
+            log.warn("{}(PersistentConsistencyStore) Cannot read [file={}] - {}", LoggerUtils.tab(), file, e.getMessage());
+        }
+        return offsets.get(k);
+    }
+
+    /**
+     * Stores the consistency of the given constraint set, if it is not stored yet. The record is appended
+     * with the next batch, i.e., by the thread which puts the {@link #BATCH_SIZE}-th record of the batch,
+     * unless another thread is appending.
+     */
+    public void put(@NonNull CCKey key, boolean consistent) {
+        Key k = new Key(key.getFingerprintLo(), key.getFingerprintHi());
+        if (mapped == null || offsets.containsKey(k) || pending.putIfAbsent(k, consistent) != null) {
+            return;
+        }
+        if (numPending.incrementAndGet() >= BATCH_SIZE && appendLock.tryLock()) {
+            try {
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends the records which have been put but not appended yet.
+     */
+    public void flush() {
+        appendLock.lock();
+        try {
+            append();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the pending records under the lock of the file. Called with the appendLock held.
+     */
+    private void append() {
+        if (pending.isEmpty() || mapped == null) {
+            return;
+        }
+
+        try (FileLock ignored = channel.lock()) {
+            synchronized (this) {
+                scan(); // the records of other processes
+                int appended = 0;
+                for (Map.Entry<Key, Boolean> entry : pending.entrySet()) {
+                    Key k = entry.getKey();
+                    if (!offsets.containsKey(k)) {
+                        if (scanned + RECORD_SIZE > mapped.capacity()) {
+                            map(2L * mapped.capacity());
+                        }
+                        // the meta word is written last, hence a torn record is invalid
+                        mapped.putLong(scanned, k.lo());
+                        mapped.putLong(scanned + 8, k.hi());
+                        mapped.putLong(scanned + 16, meta(k.lo(), k.hi(), entry.getValue()));
+                        offsets.put(k, scanned);
+                        scanned += RECORD_SIZE;
+                        appended++;
+                    }
+                    pending.remove(k);
+                    numPending.decrementAndGet();
+                }
+                incrementCounter(COUNTER_STORE_APPEND, appended);
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            log.warn("{}(PersistentConsistencyStore) Cannot append to [file={}] - {}", LoggerUtils.tab(), file, e.getMessage());
+        }
+    }
+
+    /**
+     * Indexes the records appended since the last scan, and maps the file again if another process
+     * has grown it beyond the mapping. Stops at the first invalid record, i.e., at the end of the records
+     * or at a record which is still being written.
+     */
+    private void scan() throws IOException {
+        MappedByteBuffer buffer = mapped;
+        int offset = scanned;
+        while (true) {
+            if (offset + RECORD_SIZE > buffer.capacity()) {
+                if (channel.size() <= buffer.capacity()) {
+                    break;
+                }
+                buffer = map(channel.size());
+            }
+            long lo = buffer.getLong(offset);
+            long hi = buffer.getLong(offset + 8);
+            long meta = buffer.getLong(offset + 16);
+            if (meta != meta(lo, hi, (meta & CONSISTENT) != 0)) {
+                break;
+            }
+            offsets.putIfAbsent(new Key(lo, hi), offset);
+            offset += RECORD_SIZE;
+        }
+        scanned = offset;
+    }
+
+    /**
+     * Maps the first capacity bytes of the file, which grows the file if it is smaller
+     */
+    private MappedByteBuffer map(long capacity) throws IOException {
+        capacity = Math.min(capacity, Integer.MAX_VALUE);
+        if (mapped != null && capacity <= mapped.capacity()) {
+            throw new IOException("The consistency store is too large " + file);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        mapped = buffer; // published before the offsets of the new records
+        log.debug("{}(PersistentConsistencyStore) Mapped store [file={}, capacity={}]", LoggerUtils.tab(), file, capacity);
+        return buffer;
+    }
+
+    private static long meta(long lo, long hi, boolean consistent) {
+        long checksum = (lo ^ Long.rotateLeft(hi, 29)) * 0x9E3779B97F4A7C15L;
+        checksum ^= checksum >>> 31;
+        return VALID | (checksum & ~VALID & ~CONSISTENT) | (consistent ? CONSISTENT : 0L);
+    }
+
+    /**
+     * Returns the number of stored constraint sets, including the ones not appended yet.
+     */
+    public int size() {
+        return offsets.size() + numPending.get();
+    }
+
+    /**
+     * Appends the pending records and closes the file. A closed store neither finds nor stores constraint sets.
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            append();
+            synchronized (this) {
+                mapped = null;
+                channel.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Computes the fingerprint of a model from the names and the Choco constraints of its constraints,
+     * independent of their order. Since the codes of the constraints are added, the codes of constraints
+     * with the same name do not cancel out.
+     */
+    @SafeVarargs
+    public static long fingerprintOf(@NonNull Collection<Constraint>... constraintSets) {
+        long fingerprint = 0L;
+        long count = 0L;
+        for (Collection<Constraint> constraints : constraintSets) {
+            for (Constraint c : constraints) {
+                String content = c.getName() + "\n" + c.getChocoConstraints();
+                fingerprint += ConstraintIndex.zobrist(content, MODEL_SEED);
+                count++;
+            }
+        }
+        return fingerprint ^ ConstraintIndex.zobrist(Long.toString(count), MODEL_SEED);
+    }
+
+    private static final long MODEL_SEED = 0x632BE59BD9B4E019L;
+}
@@ -0,0 +1,122 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * QuickXPlain on {@link ConstraintSet}s, which reduces an inconsistent set to a minimal conflict,
+ * i.e., a subset which is inconsistent and whose proper subsets are consistent (w.r.t. the background).
+ *
+ * // Func QuickXPlain(C, B) : CS
+ * // if isEmpty(C) return Φ
+ * // else return QX(Φ, C, B)
+ *
+ * // Func QX(D, C, B) : CS
+ * // if D != Φ and inconsistent(B) return Φ
+ * // if |C| = 1 return C
+ * // Split(C, C1, C2)
+ * // D2 = QX(C1, C2, B U C1)
+ * // D1 = QX(D2, C1, B U D2)
+ * // return D1 U D2
+ *
+ * The consistency checks are limited to maxChecks. If the limit is reached or a check is unknown, no conflict is found.
+ */
+@Slf4j
+public class QuickXPlain {
+
+    public static final String COUNTER_QUICKXPLAIN_CHECKS = "The number of consistency checks of QuickXPlain";
+
+    /**
+     * Checks the consistency of a constraint set
+     */
+    @FunctionalInterface
+    public interface Checker {
+        CheckOutcome check(ConstraintSet S) throws InterruptedException;
+    }
+
+    private static final class Aborted extends Exception {
+        Aborted() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Checker checker;
+    private final int maxChecks;
+    private int numChecks;
+
+    public QuickXPlain(@NonNull Checker checker, int maxChecks) {
+        this.checker = checker;
+        this.maxChecks = maxChecks;
+    }
+
+    /**
+     * Returns a minimal conflict of C w.r.t. B, together with B, i.e., an inconsistent subset of B U C.
+     * B U C must be inconsistent, and B should be consistent.
+     * @return the conflict, or null if the checks were aborted
+     * @throws InterruptedException if interrupted while waiting for a checker
+     */
+    public ConstraintSet findConflict(@NonNull ConstraintSet C, @NonNull ConstraintSet B) throws InterruptedException {
+        numChecks = 0;
+        if (C.isEmpty()) {
+            return B;
+        }
+
+        try {
+            ConstraintSet conflict = B.union(qx(ConstraintSet.empty(C.getIndex()), C, B));
+            log.debug("{}(QuickXPlain) found a conflict [size={}, checks={}]", LoggerUtils.tab(),
+                    conflict.size(), numChecks);
+            return conflict;
+        } catch (Aborted e) {
+            log.debug("{}(QuickXPlain) aborted [checks={}]", LoggerUtils.tab(), numChecks);
+            return null;
+        }
+    }
+
+    private ConstraintSet qx(ConstraintSet D, ConstraintSet C, ConstraintSet B) throws InterruptedException, Aborted {
+        // if D != Φ and inconsistent(B) return Φ
+        if (!D.isEmpty() && !isConsistent(B)) {
+            return ConstraintSet.empty(C.getIndex());
+        }
+
+        // if |C| = 1 return C
+        if (C.size() == 1) {
+            return C;
+        }
+
+        // Split(C, C1, C2)
+        ConstraintSet C1 = C.leftHalf();
+        ConstraintSet C2 = C.rightHalf();
+
+        // D2 = QX(C1, C2, B U C1)
+        ConstraintSet D2 = qx(C1, C2, B.union(C1));
+        // D1 = QX(D2, C1, B U D2)
+        ConstraintSet D1 = qx(D2, C1, B.union(D2));
+
+        // return D1 U D2
+        return D1.union(D2);
+    }
+
+    private boolean isConsistent(ConstraintSet S) throws InterruptedException, Aborted {
+        if (numChecks >= maxChecks) {
+            throw new Aborted();
+        }
+        numChecks++;
+        incrementCounter(COUNTER_QUICKXPLAIN_CHECKS);
+
+        Boolean consistent = checker.check(S).toConsistency();
+        if (consistent == null) {
+            throw new Aborted();
+        }
+        return consistent;
+    }
+
+    /**
+     * Returns the number of consistency checks of the last call of findConflict
+     */
+    public int getNumChecks() {
+        return numChecks;
+    }
+}
@@ -0,0 +1,132 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
+import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
+
+/**
+ * A consistency checker for Boolean feature models, which checks with a {@link SatSolver} instead of Choco.
+ *
+ * The constraints of the {@link FMModelTemplate} are encoded as clauses once, and each clause of a constraint
+ * is extended by the negation of a selector variable of the constraint (selector => clause). A check of a set S
+ * solves the clauses under the assumptions that the selectors of S are true, the other selectors are left free.
+ * Since the clauses never change, the learned clauses of the solver are kept for all checks of the checker.
+ *
+ * The checker is created by {@link #create}, which returns null if the model is not an {@link FMModel} whose
+ * template can be encoded as clauses.
+ */
+@Slf4j
+public class SatConsistencyChecker extends BooleanConsistencyChecker {
+
+    public static final String COUNTER_SAT_CHECKS = "The number of consistency checks of SAT checkers";
+    public static final String COUNTER_SAT_CONFLICTS = "The number of conflicts of SAT checkers";
+
+    private final SatSolver solver = new SatSolver();
+    private final int numVars; // the variables of the template, the selectors follow
+
+    private SatConsistencyChecker(@NonNull CDRModel diagModel, List<Constraint> constraints, int numVars, int[][][] clauses) {
+        super(diagModel, constraints);
+        this.numVars = numVars;
+
+        for (int v = 0; v < numVars; v++) {
+            solver.newVar();
+        }
+        for (int j = 0; j < constraints.size(); j++) {
+            int selector = solver.newVar(); // numVars + 1 + j
+            for (int[] clause : clauses[j]) {
+                int[] guarded = new int[clause.length + 1];
+                System.arraycopy(clause, 0, guarded, 0, clause.length);
+                guarded[clause.length] = -selector;
+                solver.addClause(guarded);
+            }
+        }
+        log.debug("{}(SatConsistencyChecker) encoded the constraints [vars={}, clauses={}]", LoggerUtils.tab(),
+                solver.numVars(), solver.getNumClauses());
+    }
+
+    /**
+     * Creates a SAT checker for the given model.
+     * @return the checker, or null if the model is not an {@link FMModel} whose template can be encoded as clauses
+     */
+    public static SatConsistencyChecker create(@NonNull CDRModel diagModel) {
+        FMModelTemplate template = templateOf(diagModel);
+        int[][][] clauses = template != null ? template.getClauses() : null;
+        if (clauses == null) {
+            return null;
+        }
+
+        List<Constraint> constraints = constraintsOf(diagModel, template);
+        if (constraints == null) {
+            return null;
+        }
+        return new SatConsistencyChecker(diagModel, constraints, template.getVariableNames().length, clauses);
+    }
+
+    /**
+     * Checks the consistency of C within the given budget, i.e., the fail limit is the number of conflicts
+     * and the node limit the number of decisions of the solver.
+     * @param cancelled tells whether the result of the check can no longer be used
+     * @return the outcome, UNKNOWN if the budget is exhausted or the check was cancelled
+     */
+    @Override
+    public CheckOutcome check(@NonNull Collection<Constraint> C, @NonNull CheckBudget budget,
+                              @NonNull BooleanSupplier cancelled) {
+        int[] assumptions = assumptionsOf(C);
+
+        long conflicts = solver.getNumConflicts();
+        start(TIMER_SOLVER);
+        try {
+            return solver.solve(assumptions, budget, cancelled);
+        } finally {
+            stop(TIMER_SOLVER);
+            incrementCounter(COUNTER_SAT_CHECKS);
+            incrementCounter(COUNTER_SAT_CONFLICTS, (int) (solver.getNumConflicts() - conflicts));
+        }
+    }
+
+    /**
+     * Assigns the selectors of C to true and runs the unit propagation, without decisions
+     */
+    @Override
+    public CheckOutcome propagate(@NonNull Collection<Constraint> C) {
+        return solver.propagate(assumptionsOf(C));
+    }
+
+    private int[] assumptionsOf(Collection<Constraint> C) {
+        int[] assumptions = new int[C.size()];
+        int i = 0;
+        for (Constraint c : C) {
+            assumptions[i++] = numVars + 1 + indexOf(c);
+        }
+        return assumptions;
+    }
+
+    @Override
+    public long[] getSolution() {
+        long[] solution = new long[(numVars + Long.SIZE - 1) / Long.SIZE];
+        for (int v = 0; v < numVars; v++) {
+            if (solver.value(v + 1)) {
+                solution[v >>> 6] |= 1L << v;
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * Returns the number of learned clauses kept by the solver
+     */
+    public int getNumLearnts() {
+        return solver.numLearnts();
+    }
+}
@@ -0,0 +1,745 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A small incremental CDCL SAT solver for the clauses of Boolean feature models.
+ *
+ * The solver uses two watched literals, VSIDS with phase saving, first-UIP learning, Luby restarts and
+ * a reduction of the learned clauses by their LBD. A call of {@link #solve} takes assumption literals, which are
+ * decided first, in the manner of MiniSat. Since the learned clauses are implied by the clauses of the solver,
+ * they are kept across the calls, i.e., later checks profit from the conflicts of the earlier ones.
+ *
+ * Literals are given as in DIMACS, i.e., v or -v for the variable v >= 1. The solver is not thread-safe.
+ */
+public class SatSolver {
+
+    private static final int RESTART_UNIT = 100; // conflicts
+    private static final int MIN_LEARNTS = 1000;
+    private static final int CHECK_INTERVAL = 256; // conflicts and decisions between two checks of the stop conditions
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+
+    /**
+     * A clause, the first two literals are watched. The first literal of a reason clause is the implied literal.
+     */
+    private static final class Clause {
+        final int[] lits;
+        final boolean learnt;
+        int lbd;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    private int numVars = 0;
+
+    // per variable (index v - 1), a literal is 2 * (v - 1) + sign, where sign 1 is the negation
+    private byte[] values = new byte[0]; // -1 unassigned, 0 false, 1 true
+    private int[] levels = new int[0];
+    private Clause[] reasons = new Clause[0];
+    private boolean[] phases = new boolean[0];
+    private boolean[] seen = new boolean[0];
+    private double[] activities = new double[0];
+    private List<List<Clause>> watches = new ArrayList<>(); // per literal, the clauses watching it
+    private final VarHeap heap = new VarHeap();
+
+    private int[] trail = new int[0];
+    private int trailSize = 0;
+    private int qhead = 0;
+    private final IntList trailLimits = new IntList(); // the trail size at the start of each decision level
+
+    private final List<Clause> learnts = new ArrayList<>();
+    private double maxLearnts = MIN_LEARNTS;
+    private double varInc = 1.0;
+    private double clauseInc = 1.0;
+    private boolean ok = true; // false if the clauses are unsatisfiable
+
+    private boolean[] model = new boolean[0];
+
+    @Getter
+    private int numClauses = 0;
+    @Getter
+    private long numConflicts = 0;
+    @Getter
+    private long numDecisions = 0;
+    @Getter
+    private long numPropagations = 0;
+    private int untilCheck = 0; // conflicts and decisions until the next check of the stop conditions
+
+    /**
+     * Creates a new variable
+     * @return the variable, i.e., its positive literal
+     */
+    public int newVar() {
+        int v = numVars++;
+        if (v == values.length) {
+            int capacity = Math.max(16, values.length * 2);
+            values = Arrays.copyOf(values, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+            phases = Arrays.copyOf(phases, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            activities = Arrays.copyOf(activities, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+        }
+        values[v] = -1;
+        watches.add(new ArrayList<>());
+        watches.add(new ArrayList<>());
+        heap.insert(v);
+        return v + 1;
+    }
+
+    /**
+     * Returns the number of variables
+     */
+    public int numVars() {
+        return numVars;
+    }
+
+    /**
+     * Returns the number of the kept learned clauses
+     */
+    public int numLearnts() {
+        return learnts.size();
+    }
+
+    /**
+     * Adds a clause, whose variables must have been created.
+     * @return false if the clauses became unsatisfiable
+     */
+    public boolean addClause(@NonNull int... clause) {
+        if (!ok) {
+            return false;
+        }
+
+        // simplify by the assignments of level 0, drop duplicated literals and tautologies
+        int[] lits = new int[clause.length];
+        int size = 0;
+        for (int l : clause) {
+            int lit = toLit(l);
+            int value = litValue(lit);
+            if (value == 1) {
+                return true; // satisfied
+            }
+            if (value == 0) {
+                continue;
+            }
+            boolean skip = false;
+            for (int i = 0; i < size; i++) {
+                if (lits[i] == lit) {
+                    skip = true;
+                } else if (lits[i] == (lit ^ 1)) {
+                    return true; // tautology
+                }
+            }
+            if (!skip) {
+                lits[size++] = lit;
+            }
+        }
+
+        numClauses++;
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            enqueue(lits[0], null);
+            ok = propagate() == null;
+        } else {
+            attach(new Clause(Arrays.copyOf(lits, size), false));
+        }
+        maxLearnts = Math.max(maxLearnts, numClauses / 3.0);
+        return ok;
+    }
+
+    /**
+     * Solves the clauses under the given assumption literals.
+     * @param budget the limits of the search, the fail limit is the number of conflicts, the node limit the number of decisions
+     * @param stopped tells whether the search should be stopped
+     * @return CONSISTENT if a model is found, see {@link #value}, INCONSISTENT if the clauses are unsatisfiable
+     * under the assumptions, UNKNOWN if the search was stopped
+     */
+    public CheckOutcome solve(@NonNull int[] assumptions, @NonNull CheckBudget budget, @NonNull BooleanSupplier stopped) {
+        if (!ok) {
+            return CheckOutcome.INCONSISTENT;
+        }
+
+        int[] assumed = new int[assumptions.length];
+        for (int i = 0; i < assumptions.length; i++) {
+            assumed[i] = toLit(assumptions[i]);
+        }
+        long deadline = budget.timeLimit() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.timeLimit()) : 0L;
+        long conflictLimit = budget.failLimit() > 0 ? numConflicts + budget.failLimit() : Long.MAX_VALUE;
+        long decisionLimit = budget.nodeLimit() > 0 ? numDecisions + budget.nodeLimit() : Long.MAX_VALUE;
+        untilCheck = 0; // the stop conditions are checked before the first decision
+
+        try {
+            for (int restart = 1; ; restart++) {
+                CheckOutcome outcome = search(assumed, luby(restart) * RESTART_UNIT,
+                        deadline, conflictLimit, decisionLimit, stopped);
+                if (outcome != null) {
+                    return outcome;
+                }
+            }
+        } finally {
+            cancelUntil(0);
+        }
+    }
+
+    /**
+     * Assigns the assumption literals one after the other and propagates them, without decisions.
+     * @return INCONSISTENT if the unit propagation fails, otherwise UNKNOWN
+     */
+    public CheckOutcome propagate(@NonNull int[] assumptions) {
+        if (!ok) {
+            return CheckOutcome.INCONSISTENT;
+        }
+
+        try {
+            for (int assumption : assumptions) {
+                int p = toLit(assumption);
+                int value = litValue(p);
+                if (value == 0) {
+                    return CheckOutcome.INCONSISTENT;
+                }
+                if (value < 0) {
+                    trailLimits.add(trailSize);
+                    enqueue(p, null);
+                    if (propagate() != null) {
+                        return CheckOutcome.INCONSISTENT;
+                    }
+                }
+            }
+            return CheckOutcome.UNKNOWN;
+        } finally {
+            cancelUntil(0);
+        }
+    }
+
+    /**
+     * Searches until a model or an inconsistency is found, or the number of conflicts reaches maxConflicts.
+     * @return the outcome, or null for a restart
+     */
+    private CheckOutcome search(int[] assumptions, long maxConflicts, long deadline, long conflictLimit,
+                                long decisionLimit, BooleanSupplier stopped) {
+        long conflicts = 0;
+        IntList learnt = new IntList();
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                numConflicts++;
+                conflicts++;
+                untilCheck--;
+                if (decisionLevel() == 0) {
+                    ok = false;
+                    return CheckOutcome.INCONSISTENT;
+                }
+
+                int backtrackLevel = analyze(conflict, learnt);
+                cancelUntil(backtrackLevel);
+                if (learnt.size() == 1) {
+                    enqueue(learnt.get(0), null);
+                } else {
+                    Clause clause = new Clause(learnt.toArray(), true);
+                    clause.lbd = lbd(clause.lits);
+                    bumpClause(clause);
+                    attach(clause);
+                    learnts.add(clause);
+                    enqueue(clause.lits[0], clause);
+                }
+                varInc /= VAR_DECAY;
+                clauseInc /= CLAUSE_DECAY;
+                continue;
+            }
+
+            if (untilCheck <= 0) {
+                // a countdown, since a run of conflicts may skip any multiple of the interval
+                untilCheck = CHECK_INTERVAL;
+                if (isStopped(deadline, stopped)) {
+                    return CheckOutcome.UNKNOWN;
+                }
+            }
+            if (numConflicts >= conflictLimit || numDecisions >= decisionLimit) {
+                return CheckOutcome.UNKNOWN;
+            }
+            if (conflicts >= maxConflicts) {
+                cancelUntil(0);
+                return null; // restart
+            }
+            if (learnts.size() - trailSize >= maxLearnts) {
+                reduceLearnts();
+            }
+
+            // decide the next assumption, or a literal by VSIDS
+            int next = -1;
+            while (decisionLevel() < assumptions.length) {
+                int p = assumptions[decisionLevel()];
+                int value = litValue(p);
+                if (value == 1) {
+                    trailLimits.add(trailSize); // a dummy level, the assumption holds already
+                } else if (value == 0) {
+                    return CheckOutcome.INCONSISTENT;
+                } else {
+                    next = p;
+                    break;
+                }
+            }
+            if (next == -1) {
+                next = pickBranchLiteral();
+                if (next == -1) {
+                    saveModel();
+                    return CheckOutcome.CONSISTENT;
+                }
+            }
+            numDecisions++;
+            untilCheck--;
+            trailLimits.add(trailSize);
+            enqueue(next, null);
+        }
+    }
+
+    private static boolean isStopped(long deadline, BooleanSupplier stopped) {
+        return (deadline != 0L && System.nanoTime() - deadline >= 0) || stopped.getAsBoolean();
+    }
+
+    /**
+     * Returns the value of the given variable in the last model
+     */
+    public boolean value(int var) {
+        return model[var - 1];
+    }
+
+    private void saveModel() {
+        if (model.length < numVars) {
+            model = new boolean[numVars];
+        }
+        for (int v = 0; v < numVars; v++) {
+            model[v] = values[v] == 1;
+        }
+    }
+
+    private int toLit(int l) {
+        if (l == 0 || Math.abs(l) > numVars) {
+            throw new IllegalArgumentException("The variable of the literal " + l + " does not exist");
+        }
+        return l > 0 ? 2 * (l - 1) : 2 * (-l - 1) + 1;
+    }
+
+    /**
+     * Returns the value of a literal, -1 if unassigned
+     */
+    private int litValue(int lit) {
+        int value = values[lit >> 1];
+        return value < 0 ? -1 : value ^ (lit & 1);
+    }
+
+    private int decisionLevel() {
+        return trailLimits.size();
+    }
+
+    private void enqueue(int lit, Clause reason) {
+        int v = lit >> 1;
+        values[v] = (byte) ((lit & 1) ^ 1);
+        levels[v] = decisionLevel();
+        reasons[v] = reason;
+        trail[trailSize++] = lit;
+    }
+
+    private void attach(Clause clause) {
+        watches.get(clause.lits[0]).add(clause);
+        watches.get(clause.lits[1]).add(clause);
+    }
+
+    /**
+     * Propagates the enqueued literals
+     * @return a conflicting clause, or null
+     */
+    private Clause propagate() {
+        while (qhead < trailSize) {
+            int falseLit = trail[qhead++] ^ 1;
+            numPropagations++;
+            List<Clause> ws = watches.get(falseLit);
+            int n = ws.size();
+            int i = 0;
+            int j = 0;
+            while (i < n) {
+                Clause clause = ws.get(i++);
+                if (clause.deleted) {
+                    continue; // drop the watch
+                }
+                int[] lits = clause.lits;
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (litValue(lits[0]) == 1) {
+                    ws.set(j++, clause);
+                    continue;
+                }
+
+                // look for a new literal to watch
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (litValue(lits[k]) != 0) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watches.get(lits[1]).add(clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+
+                ws.set(j++, clause);
+                if (litValue(lits[0]) == 0) { // conflict
+                    while (i < n) {
+                        ws.set(j++, ws.get(i++));
+                    }
+                    ws.subList(j, n).clear();
+                    qhead = trailSize;
+                    return clause;
+                }
+                enqueue(lits[0], clause);
+            }
+            ws.subList(j, n).clear();
+        }
+        return null;
+    }
+
+    /**
+     * Analyzes a conflict and computes the first-UIP clause, whose first literal is the asserting one
+     * and whose second literal has the highest level of the others
+     * @return the level to backtrack to
+     */
+    private int analyze(Clause conflict, IntList learnt) {
+        learnt.clear();
+        learnt.add(-1); // the asserting literal
+
+        int pathCount = 0;
+        int p = -1;
+        int index = trailSize - 1;
+        Clause clause = conflict;
+        do {
+            if (clause.learnt) {
+                bumpClause(clause);
+            }
+            for (int k = p == -1 ? 0 : 1; k < clause.lits.length; k++) {
+                int q = clause.lits[k];
+                int v = q >> 1;
+                if (!seen[v] && levels[v] > 0) {
+                    seen[v] = true;
+                    bumpVar(v);
+                    if (levels[v] >= decisionLevel()) {
+                        pathCount++;
+                    } else {
+                        learnt.add(q);
+                    }
+                }
+            }
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            p = trail[index--];
+            clause = reasons[p >> 1];
+            seen[p >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt.set(0, p ^ 1);
+
+        // remove the literals implied by the other literals of the clause
+        int[] lits = learnt.toArray();
+        int size = 1;
+        for (int k = 1; k < lits.length; k++) {
+            if (!isRedundant(lits[k])) {
+                learnt.set(size++, lits[k]);
+            }
+        }
+        learnt.truncate(size);
+        for (int k = 1; k < lits.length; k++) {
+            seen[lits[k] >> 1] = false;
+        }
+
+        // the second literal has the backtrack level
+        int backtrackLevel = 0;
+        if (learnt.size() > 1) {
+            int max = 1;
+            for (int k = 2; k < learnt.size(); k++) {
+                if (levels[learnt.get(k) >> 1] > levels[learnt.get(max) >> 1]) {
+                    max = k;
+                }
+            }
+            int q = learnt.get(max);
+            learnt.set(max, learnt.get(1));
+            learnt.set(1, q);
+            backtrackLevel = levels[q >> 1];
+        }
+        return backtrackLevel;
+    }
+
+    /**
+     * Returns true if the reason of the literal only contains literals of the learned clause or of level 0
+     */
+    private boolean isRedundant(int lit) {
+        Clause reason = reasons[lit >> 1];
+        if (reason == null) {
+            return false;
+        }
+        for (int k = 1; k < reason.lits.length; k++) {
+            int v = reason.lits[k] >> 1;
+            if (!seen[v] && levels[v] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lbd(int[] lits) {
+        IntList distinct = new IntList();
+        for (int lit : lits) {
+            int level = levels[lit >> 1];
+            if (!distinct.contains(level)) {
+                distinct.add(level);
+            }
+        }
+        return distinct.size();
+    }
+
+    private void cancelUntil(int level) {
+        if (decisionLevel() <= level) {
+            return;
+        }
+        int limit = trailLimits.get(level);
+        for (int i = trailSize - 1; i >= limit; i--) {
+            int v = trail[i] >> 1;
+            phases[v] = values[v] == 1;
+            values[v] = -1;
+            reasons[v] = null;
+            if (!heap.contains(v)) {
+                heap.insert(v);
+            }
+        }
+        trailSize = limit;
+        qhead = limit;
+        trailLimits.truncate(level);
+    }
+
+    private int pickBranchLiteral() {
+        while (!heap.isEmpty()) {
+            int v = heap.removeMax();
+            if (values[v] < 0) {
+                return 2 * v + (phases[v] ? 0 : 1);
+            }
+        }
+        return -1;
+    }
+
+    private void bumpVar(int v) {
+        activities[v] += varInc;
+        if (activities[v] > 1e100) {
+            for (int i = 0; i < numVars; i++) {
+                activities[i] *= 1e-100;
+            }
+            varInc *= 1e-100;
+        }
+        if (heap.contains(v)) {
+            heap.increased(v);
+        }
+    }
+
+    private void bumpClause(Clause clause) {
+        clause.activity += clauseInc;
+        if (clause.activity > 1e20) {
+            for (Clause c : learnts) {
+                c.activity *= 1e-20;
+            }
+            clauseInc *= 1e-20;
+        }
+    }
+
+    /**
+     * Removes half of the learned clauses, the ones with the highest LBD and the lowest activity first.
+     * Binary clauses, clauses with an LBD of 2 and reasons are kept.
+     */
+    private void reduceLearnts() {
+        learnts.sort(Comparator.<Clause>comparingInt(c -> c.lbd).thenComparingDouble(c -> -c.activity));
+        int half = learnts.size() / 2;
+        int j = 0;
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            if (i >= half && clause.lits.length > 2 && clause.lbd > 2 && !isLocked(clause)) {
+                clause.deleted = true; // the watches are dropped by the propagation
+            } else {
+                learnts.set(j++, clause);
+            }
+        }
+        learnts.subList(j, learnts.size()).clear();
+        maxLearnts *= 1.1;
+    }
+
+    private boolean isLocked(Clause clause) {
+        int v = clause.lits[0] >> 1;
+        return reasons[v] == clause && values[v] >= 0;
+    }
+
+    /**
+     * The Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     */
+    static long luby(int i) {
+        int k = 1;
+        while ((1L << k) - 1 < i) {
+            k++;
+        }
+        while ((1L << k) - 1 != i) {
+            i -= (int) ((1L << (k - 1)) - 1);
+            k = 1;
+            while ((1L << k) - 1 < i) {
+                k++;
+            }
+        }
+        return 1L << (k - 1);
+    }
+
+    /**
+     * A growable list of ints
+     */
+    private static final class IntList {
+        private int[] data = new int[16];
+        private int size = 0;
+
+        void add(int x) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = x;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+
+        void set(int i, int x) {
+            data[i] = x;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void truncate(int newSize) {
+            size = newSize;
+        }
+
+        boolean contains(int x) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] == x) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * A binary max-heap of the variables by their activities
+     */
+    private final class VarHeap {
+        private int[] heap = new int[16];
+        private int[] positions = new int[0]; // -1 if not in the heap
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int v) {
+            return v < positions.length && positions[v] >= 0;
+        }
+
+        void insert(int v) {
+            if (v >= positions.length) {
+                int old = positions.length;
+                positions = Arrays.copyOf(positions, Math.max(v + 1, old * 2));
+                Arrays.fill(positions, old, positions.length, -1);
+            }
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            heap[size] = v;
+            positions[v] = size;
+            up(size++);
+        }
+
+        void increased(int v) {
+            up(positions[v]);
+        }
+
+        int removeMax() {
+            int v = heap[0];
+            positions[v] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                positions[heap[0]] = 0;
+                down(0);
+            }
+            return v;
+        }
+
+        private void up(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (activities[heap[parent]] >= activities[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                positions[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+
+        private void down(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && activities[heap[child + 1]] > activities[heap[child]]) {
+                    child++;
+                }
+                if (activities[heap[child]] <= activities[v]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                positions[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.cdrmodel.IChocoModel;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.chocosolver.memory.IEnvironment;
+import org.chocosolver.solver.Cause;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.BoolVar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link ChocoConsistencyChecker}, which posts all constraints of the model once, each one implied by
+ * a selector variable (selector = true => constraint). A check of a set S only fixes the selectors,
+ * i.e., the selectors of S to true and the others to false, in a new world of the Choco environment,
+ * which is popped after the check. Hence, no constraint is posted or unposted after the construction.
+ *
+ * The propagation work is shared across checks by snapshots: B is propagated to a fixpoint once, in a world which
+ * is kept, and each consistent set S of a check is kept as well, i.e., the world in which the selectors of S are
+ * fixed to true and propagated (before the search). A check starts from the deepest snapshot whose constraints
+ * are part of the check and pops the others. Since FastDiag and the lookahead extend B with consistent
+ * subsets of C, most checks start from a snapshot.
+ *
+ * A propagation-only check ({@link #propagate}) fixes the selectors of S to true, starting from a snapshot as well.
+ *
+ * Since the constraints are posted for good, the checker needs a model of its own, e.g., a clone.
+ */
+@Slf4j
+public class SelectorConsistencyChecker extends ChocoConsistencyChecker implements IPropagationChecker {
+
+    public static final String COUNTER_SELECTOR_CHECKS = "The number of consistency checks of selector checkers";
+    public static final String COUNTER_SNAPSHOT_HITS = "The number of selector checks starting from a snapshot";
+
+    private static final int MAX_SNAPSHOTS = 64;
+
+    /**
+     * A world of the Choco environment, in which the selectors of the added constraints are fixed to true
+     * and propagated, on top of the worlds of the previous snapshots
+     * @param world the world index before the snapshot was pushed
+     */
+    private record Snapshot(int world, Set<Constraint> added) {}
+
+    private final Model model;
+    private final IEnvironment environment;
+    private final Map<Constraint, BoolVar> selectors = new LinkedHashMap<>();
+    private final List<Snapshot> snapshots = new ArrayList<>(); // nested, the first one is B
+
+    public SelectorConsistencyChecker(@NonNull CDRModel diagModel) {
+        super(diagModel);
+        checkArgument(diagModel instanceof IChocoModel, "A selector checker requires a Choco model");
+
+        this.model = ((IChocoModel) diagModel).getModel();
+        this.environment = model.getEnvironment();
+        for (Constraint c : diagModel.getCorrectConstraints()) {
+            addSelector(c);
+        }
+        for (Constraint c : diagModel.getPossiblyFaultyConstraints()) {
+            addSelector(c);
+        }
+
+        // the snapshot of B, which is part of every check
+        check(diagModel.getCorrectConstraints());
+        log.debug("{}(SelectorConsistencyChecker) posted the constraints [selectors={}, snapshots={}]", LoggerUtils.tab(),
+                selectors.size(), snapshots.size());
+    }
+
+    private void addSelector(Constraint c) {
+        if (selectors.containsKey(c)) {
+            return;
+        }
+        BoolVar selector = model.boolVar("selector_" + selectors.size());
+        for (org.chocosolver.solver.constraints.Constraint cstr : c.getChocoConstraints()) {
+            cstr.impliedBy(selector);
+        }
+        selectors.put(c, selector);
+    }
+
+    @Override
+    public boolean isConsistent(@NonNull Collection<Constraint> C) {
+        Set<Constraint> S = toSet(C);
+
+        start(TIMER_SOLVER);
+        try {
+            boolean consistent = check(S);
+            incrementCounter(COUNTER_SELECTOR_CHECKS);
+            return consistent;
+        } finally {
+            stop(TIMER_SOLVER);
+        }
+    }
+
+    /**
+     * Fixes the selectors of C to true and propagates, starting from the deepest snapshot whose constraints are in C.
+     * The world of the propagation is popped afterwards.
+     */
+    @Override
+    public CheckOutcome propagate(@NonNull Collection<Constraint> C) {
+        Set<Constraint> added = restoreSnapshot(toSet(C));
+
+        int world = environment.getWorldIndex();
+        environment.worldPush();
+        try {
+            return fixAndPropagate(added, 1) ? CheckOutcome.UNKNOWN : CheckOutcome.INCONSISTENT;
+        } finally {
+            environment.worldPopUntil(world);
+        }
+    }
+
+    private Set<Constraint> toSet(Collection<Constraint> C) {
+        Set<Constraint> S = C instanceof Set<Constraint> set ? set : new HashSet<>(C);
+        for (Constraint c : S) {
+            if (!selectors.containsKey(c)) {
+                throw new IllegalArgumentException("The constraint " + c + " does not belong to the model of the checker");
+            }
+        }
+        return S;
+    }
+
+    /**
+     * Goes back to the deepest snapshot whose constraints are in S
+     * @return the constraints of S which are not part of the snapshots
+     */
+    private Set<Constraint> restoreSnapshot(Set<Constraint> S) {
+        int level = 0;
+        while (level < snapshots.size() && S.containsAll(snapshots.get(level).added())) {
+            level++;
+        }
+        popSnapshots(level);
+        if (level > 0) {
+            incrementCounter(COUNTER_SNAPSHOT_HITS);
+        }
+
+        Set<Constraint> added = new HashSet<>(S);
+        snapshots.forEach(snapshot -> added.removeAll(snapshot.added()));
+        return added;
+    }
+
+    /**
+     * Checks S, starting from the deepest snapshot whose constraints are in S, and keeps S as a new snapshot if consistent
+     */
+    private boolean check(Set<Constraint> S) {
+        Solver solver = model.getSolver();
+
+        // go back to the deepest snapshot whose constraints are in S
+        Set<Constraint> added = restoreSnapshot(S);
+
+        // fix the selectors of the other constraints of S to true, and propagate
+
+        int world = environment.getWorldIndex();
+        environment.worldPush();
+        if (!fixAndPropagate(added, 1)) {
+            environment.worldPopUntil(world);
+            return false;
+        }
+
+        // fix the selectors of the constraints not in S to false, and solve
+        int candidateWorld = environment.getWorldIndex();
+        environment.worldPush();
+        boolean consistent;
+        try {
+            List<Constraint> removed = new ArrayList<>();
+            for (Constraint c : selectors.keySet()) {
+                if (!S.contains(c)) {
+                    removed.add(c);
+                }
+            }
+            consistent = fixAndPropagate(removed, 0) && solver.solve();
+            solver.reset();
+        } finally {
+            environment.worldPopUntil(candidateWorld);
+        }
+
+        if (consistent && !added.isEmpty() && snapshots.size() < MAX_SNAPSHOTS) {
+            snapshots.add(new Snapshot(world, added)); // S is consistent, keep its fixpoint
+        } else {
+            environment.worldPopUntil(world);
+        }
+
+        return consistent;
+    }
+
+    /**
+     * Fixes the selectors of the given constraints to the given value and propagates
+     * @return false if the propagation fails
+     */
+    private boolean fixAndPropagate(Collection<Constraint> constraints, int value) {
+        try {
+            for (Constraint c : constraints) {
+                selectors.get(c).instantiateTo(value, Cause.Null);
+            }
+            model.getSolver().propagate();
+            return true;
+        } catch (ContradictionException e) {
+            model.getSolver().getEngine().flush();
+            return false;
+        }
+    }
+
+    /**
+     * Pops the snapshots from the given level on
+     */
+    private void popSnapshots(int level) {
+        if (level < snapshots.size()) {
+            environment.worldPopUntil(snapshots.get(level).world());
+            snapshots.subList(level, snapshots.size()).clear();
+        }
+    }
+
+    /**
+     * Returns the number of snapshots, i.e., of the nested consistent sets whose fixpoints are kept
+     */
+    public int getNumSnapshots() {
+        return snapshots.size();
+    }
+
+    /**
+     * Returns the number of selector variables, i.e., of the constraints of the model
+     */
+    public int getNumSelectors() {
+        return selectors.size();
+    }
+
+    @Override
+    public void dispose() {
+        popSnapshots(0);
+        selectors.clear();
+        super.dispose();
+    }
+}
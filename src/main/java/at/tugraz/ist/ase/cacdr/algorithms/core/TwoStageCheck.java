@@ -0,0 +1,68 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.chocosolver.memory.IEnvironment;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.exception.ContradictionException;
+
+import java.util.Collection;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * The first stage of a two-stage consistency check, which only propagates the constraints. Many constraint sets
+ * checked by FastDiag are refuted by propagation alone, i.e., the propagation wipes out a domain, and the
+ * second stage, the full search, is only needed if the propagation does not decide.
+ *
+ * Only the checkers implementing {@link IPropagationChecker} propagate, since only they know which Choco constraints
+ * of their model belong to a constraint of C. For the other checkers, the first stage does not decide.
+ */
+@UtilityClass
+@Slf4j
+public class TwoStageCheck {
+
+    public static final String COUNTER_PROPAGATION_CHECKS = "The number of propagation-only checks";
+    public static final String COUNTER_RESOLVED_BY_PROPAGATION = "The number of consistency checks resolved by propagation";
+    public static final String COUNTER_RESOLVED_BY_SEARCH = "The number of consistency checks resolved by search";
+
+    /**
+     * Runs the first stage of a check of C on the given checker
+     * @return INCONSISTENT if the propagation fails, otherwise UNKNOWN, always UNKNOWN if the checker
+     * is no {@link IPropagationChecker}
+     */
+    public CheckOutcome propagate(@NonNull ChocoConsistencyChecker checker, @NonNull Collection<Constraint> C) {
+        if (!(checker instanceof IPropagationChecker propagationChecker)) {
+            return CheckOutcome.UNKNOWN;
+        }
+        incrementCounter(COUNTER_PROPAGATION_CHECKS);
+
+        CheckOutcome outcome = propagationChecker.propagate(C);
+        log.trace("{}(TwoStageCheck) propagated [C={}, outcome={}]", LoggerUtils.tab(), C, outcome);
+        return outcome;
+    }
+
+    /**
+     * Propagates the posted constraints of the model in a new world of the environment, which is popped afterwards
+     * @return INCONSISTENT if the propagation fails, otherwise UNKNOWN
+     */
+    public CheckOutcome propagatePosted(@NonNull Model model) {
+        IEnvironment environment = model.getEnvironment();
+        int world = environment.getWorldIndex();
+        environment.worldPush();
+        try {
+            model.getSolver().propagate();
+            return CheckOutcome.UNKNOWN;
+        } catch (ContradictionException e) {
+            model.getSolver().getEngine().flush();
+            return CheckOutcome.INCONSISTENT;
+        } finally {
+            environment.worldPopUntil(world);
+        }
+    }
+
+}
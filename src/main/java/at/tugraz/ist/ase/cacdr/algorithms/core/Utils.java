@@ -4,6 +4,8 @@ import at.tugraz.ist.ase.common.LoggerUtils;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
@@ -31,6 +33,25 @@ public class Utils {
         }
     }
 
+    /**
+     * Runs the given task on a new daemon thread.
+     * @return a future, which completes with the result of the task
+     */
+    public <T> CompletableFuture<T> supplyInBackground(String name, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                log.error("{}(supplyInBackground) {} failed - {}", LoggerUtils.tab(), name, e.getMessage());
+                future.completeExceptionally(e);
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+        return future;
+    }
+
 //    public void printLookupTable(String message, @NonNull ConcurrentMap<Integer, ConsistencyCheckResult> lookupTable) {
 //        if (log.isTraceEnabled()) {
 //            final StringBuilder sb = new StringBuilder(message);
@@ -0,0 +1,61 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic consistency checks, which warm up the checkers of a diagnosis engine,
+ * i.e., the code paths of the solver are JIT-compiled before the first diagnosis.
+ */
+@UtilityClass
+@Slf4j
+public class WarmUp {
+
+    /**
+     * Generates numChecks consistency checks shaped like the ones of FastDiag,
+     * i.e., B with the halves of C, descending alternately into the left and the right half.
+     */
+    public List<ConstraintSet> syntheticChecks(@NonNull ConstraintSet C, @NonNull ConstraintSet B, int numChecks) {
+        List<ConstraintSet> checks = new ArrayList<>(numChecks);
+
+        ConstraintSet S = C;
+        for (int i = 0; i < numChecks; i++) {
+            checks.add(B.union(S));
+
+            if (S.size() <= 1) {
+                S = C; // start again with the whole C
+            } else {
+                S = i % 2 == 0 ? S.leftHalf() : S.rightHalf();
+            }
+        }
+        return checks;
+    }
+
+    /**
+     * Runs the given consistency checks on the given checker.
+     */
+    public void run(@NonNull ChocoConsistencyChecker checker, @NonNull List<? extends Collection<Constraint>> checks) {
+        long first = 0;
+        long last = 0;
+        for (Collection<Constraint> check : checks) {
+            long startTime = System.nanoTime();
+            checker.isConsistent(check);
+            last = System.nanoTime() - startTime;
+            if (first == 0) {
+                first = last;
+            }
+        }
+
+        log.debug("{}(WarmUp) warmed up [checker={}, checks={}, first={} ms, last={} ms]", LoggerUtils.tab(),
+                checker.hashCode(), checks.size(), TimeUnit.NANOSECONDS.toMillis(first), TimeUnit.NANOSECONDS.toMillis(last));
+    }
+}
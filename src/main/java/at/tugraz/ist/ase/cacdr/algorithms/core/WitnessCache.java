@@ -0,0 +1,126 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
+
+/**
+ * A cache of witnesses, i.e., of solutions found by consistent checks, which proves the consistency of
+ * a constraint set without solving if a witness satisfies all its constraints.
+ *
+ * A witness is stored in a compact form: the solution as a bitset of the values of the Boolean variables,
+ * and the {@link ConstraintSet} of all constraints satisfied by the solution, which is evaluated once when the
+ * witness is added. Hence, a lookup is a bitwise subset test per witness. In feature-model diagnosis, a solution
+ * of B with a few user requirements also satisfies many other user requirements, so a witness covers many checks.
+ *
+ * The cache holds the last capacity witnesses and is safe to be used by several threads.
+ */
+@Slf4j
+public class WitnessCache {
+
+    public static final String COUNTER_WITNESS_HITS = "The number of consistency checks answered by a witness";
+    public static final String COUNTER_WITNESSES = "The number of witnesses added to the cache";
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * A stored solution and the constraints it satisfies
+     */
+    public record Witness(long[] solution, ConstraintSet satisfied) {}
+
+    private final ConstraintIndex index;
+    @Getter
+    private final String[] variableNames;
+    private final Function<long[], Collection<Constraint>> evaluator;
+
+    private final AtomicReferenceArray<Witness> witnesses;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param variableNames the names of the Boolean variables, bit i of a solution is the value of the i-th variable
+     * @param evaluator returns the constraints satisfied by a solution
+     */
+    public WitnessCache(@NonNull ConstraintIndex index, @NonNull String[] variableNames,
+                        @NonNull Function<long[], Collection<Constraint>> evaluator) {
+        this(index, variableNames, evaluator, DEFAULT_CAPACITY);
+    }
+
+    public WitnessCache(@NonNull ConstraintIndex index, @NonNull String[] variableNames,
+                        @NonNull Function<long[], Collection<Constraint>> evaluator, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.index = index;
+        this.variableNames = variableNames.clone();
+        this.evaluator = evaluator;
+        this.witnesses = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Returns true if a witness satisfies all constraints of C, i.e., C is consistent
+     */
+    public boolean covers(@NonNull ConstraintSet C) {
+        if (C.getIndex() != index) {
+            return false;
+        }
+        for (int i = 0; i < witnesses.length(); i++) {
+            Witness w = witnesses.get(i);
+            if (w != null && C.isSubsetOf(w.satisfied())) {
+                incrementCounter(COUNTER_WITNESS_HITS);
+                log.trace("{}(WitnessCache) covered [C={}]", LoggerUtils.tab(), C);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the given solution and adds it as a witness, unless an existing witness satisfies
+     * at least the same constraints.
+     */
+    public void add(@NonNull long[] solution) {
+        ConstraintSet satisfied = ConstraintSet.of(index, evaluator.apply(solution));
+        if (satisfied.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < witnesses.length(); i++) {
+            Witness w = witnesses.get(i);
+            if (w != null && satisfied.isSubsetOf(w.satisfied())) {
+                return; // dominated
+            }
+        }
+
+        int slot = Math.floorMod(next.getAndIncrement(), witnesses.length());
+        witnesses.set(slot, new Witness(solution, satisfied));
+        incrementCounter(COUNTER_WITNESSES);
+        log.trace("{}(WitnessCache) added a witness [satisfied={}]", LoggerUtils.tab(), satisfied.size());
+    }
+
+    /**
+     * Returns the number of witnesses
+     */
+    public int size() {
+        int n = 0;
+        for (int i = 0; i < witnesses.length(); i++) {
+            if (witnesses.get(i) != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public void clear() {
+        for (int i = 0; i < witnesses.length(); i++) {
+            witnesses.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import lombok.NonNull;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.Variable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the solution found by the solver of a checker as a bitset of the values of the given Boolean variables,
+ * so that it can be added to a {@link WitnessCache}. The recorder is armed before each check.
+ */
+public class WitnessRecorder implements IMonitorSolution {
+
+    private final Solver solver;
+    private final IntVar[] vars; // null if the model has no variable of the name
+
+    private long[] solution = null;
+
+    public WitnessRecorder(@NonNull Model model, @NonNull String[] variableNames) {
+        this.solver = model.getSolver();
+
+        Map<String, IntVar> byName = new HashMap<>();
+        for (Variable v : model.getVars()) {
+            if ((v.getTypeAndKind() & Variable.VIEW) == 0 && v instanceof IntVar intVar) {
+                byName.put(v.getName(), intVar);
+            }
+        }
+        vars = new IntVar[variableNames.length];
+        for (int i = 0; i < variableNames.length; i++) {
+            vars[i] = byName.get(variableNames[i]);
+        }
+    }
+
+    /**
+     * Prepares the recorder for the next check. The monitor is plugged again,
+     * since resetting the solver may have removed it.
+     */
+    public void arm() {
+        solution = null;
+        solver.unplugMonitor(this);
+        solver.plugMonitor(this);
+    }
+
+    @Override
+    public void onSolution() {
+        long[] bits = new long[(vars.length + 63) >>> 6];
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i] == null) {
+                return; // not a complete solution of the variables
+            }
+            if (vars[i].getValue() == 1) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        solution = bits;
+    }
+
+    /**
+     * Returns the solution of the last check and forgets it, or null if no solution was found
+     */
+    public long[] take() {
+        long[] s = solution;
+        solution = null;
+        return s;
+    }
+}
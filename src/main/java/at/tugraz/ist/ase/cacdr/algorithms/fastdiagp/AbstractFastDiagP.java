@@ -1,17 +1,29 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.IncrementalConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.algorithms.core.SelectorConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.algorithms.core.WarmUp;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.LookupTable;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
 import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.common.LoggerUtils;
 import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ForkJoinPool;
 
+import static at.tugraz.ist.ase.cacdr.algorithms.core.Utils.supplyInBackground;
+
 @Slf4j
 public abstract class AbstractFastDiagP {
     public static final String COUNTER_LOOKUP = "The number of lookups";
@@ -25,12 +37,26 @@ public abstract class AbstractFastDiagP {
     public static final String COUNTER_CONSISTENCYCHECKWORKER_CREATION = "The number of consistency check worker creation";
     public static final String COUNTER_MATCH_LOOKAHEAD = "The number of match lookahead";
 
+    /**
+     * The checker of the main thread, set by {@link #awaitReadiness()}
+     */
     protected ChocoConsistencyChecker checker;
     protected CDRModel cdrModel;
+    /**
+     * The model of the checker of the main thread, i.e., cdrModel or a clone of it, set with the main checker
+     */
+    protected CDRModel checkerModel;
+
+    protected final CheckerType checkerType;
 
     protected int maxLevel = 1;
 
-    protected LookupTable lookupTable = new LookupTable();
+    /**
+     * Dense indexes of the constraints of the model, used to build the canonical keys of the lookup tables
+     */
+    protected ConstraintIndex constraintIndex;
+
+    protected LookupTable lookupTable;
     // shouldn't use hashcode here, because it is not unique for this Collection<Constraint>
     protected final ConcurrentLinkedQueue<Collection<Constraint>> lookAheadTable = new ConcurrentLinkedQueue<>();
 
@@ -39,12 +65,107 @@ public abstract class AbstractFastDiagP {
     protected int lookAheadPoolSize = 1;
     protected int checkerPoolSize = 4;
 
+    /**
+     * The checker of the main thread and the {@link CCManager}, which are created in the background,
+     * so that the constructor does not wait for the clones, the selectors or the compilation of the clauses or the BDD
+     */
+    protected final CompletableFuture<ChocoConsistencyChecker> mainCheckerReady;
+    protected final CompletableFuture<CCManager> ccManagerReady;
+    /**
+     * Completes when the main checker and the CCManager are created and the warm-ups are done
+     */
+    protected CompletableFuture<Void> readiness;
+
     public AbstractFastDiagP(@NonNull CDRModel diagModel, int lookAheadPoolSize, int checkerPoolSize, int maxLevel) {
+        this(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST);
+    }
+
+    /**
+     * @param checkerType the type of the checkers, e.g., {@link IncrementalConsistencyChecker}s
+     *                    or {@link SelectorConsistencyChecker}s
+     */
+    public AbstractFastDiagP(@NonNull CDRModel diagModel, int lookAheadPoolSize, int checkerPoolSize, int maxLevel,
+                             @NonNull CheckerType checkerType) {
         cdrModel = diagModel;
-        this.checker = new ChocoConsistencyChecker(cdrModel);
+        this.checkerType = checkerType;
+        this.constraintIndex = new ConstraintIndex(cdrModel.getCorrectConstraints(), cdrModel.getPossiblyFaultyConstraints());
+        this.lookupTable = new LookupTable(constraintIndex);
         this.lookAheadPoolSize = Math.max(lookAheadPoolSize, this.lookAheadPoolSize);
         this.checkerPoolSize = Math.max(checkerPoolSize, this.checkerPoolSize);
         this.maxLevel = Math.max(maxLevel, this.maxLevel);
+
+        // create the main checker and a list of ChocoConsistencyCheckers
+        mainCheckerReady = supplyInBackground("main checker", () -> createMainChecker(checkerType));
+        ccManagerReady = supplyInBackground("CCManager", () -> new CCManager(checkerPoolSize, checkerType, cdrModel));
+        readiness = CompletableFuture.allOf(mainCheckerReady, ccManagerReady);
+    }
+
+    /**
+     * Creates the checker of the main thread, in the background. A selector checker changes its model for good,
+     * hence it gets a clone of the model.
+     */
+    private ChocoConsistencyChecker createMainChecker(CheckerType checkerType) {
+        checkerModel = cdrModel;
+        if (checkerType != CheckerType.SELECTOR) {
+            return checkerType.createChecker(checkerModel);
+        }
+        try {
+            checkerModel = (CDRModel) cdrModel.clone();
+            return checkerType.createChecker(checkerModel);
+        } catch (CloneNotSupportedException e) {
+            log.warn("{}(AbstractFastDiagP) Cannot clone the model for the selector checker - {}", LoggerUtils.tab(), e.getMessage());
+            return new ChocoConsistencyChecker(cdrModel);
+        }
+    }
+
+    /**
+     * Warms up the engine in the background, i.e., runs numChecks synthetic consistency checks on the main checker
+     * and on each checker of the CCManager, so that the first diagnosis does not run on cold code paths of the solver.
+     * findDiagnosis waits for the warm-up. Since the checks are counted by the performance counters,
+     * the counters should be reset after the warm-up.
+     * @return a future, which completes when the engine is ready
+     */
+    public synchronized CompletableFuture<Void> warmUp(int numChecks) {
+        List<ConstraintSet> checks = WarmUp.syntheticChecks(
+                ConstraintSet.of(constraintIndex, cdrModel.getPossiblyFaultyConstraints()),
+                ConstraintSet.of(constraintIndex, cdrModel.getCorrectConstraints()), numChecks);
+
+        readiness = readiness.thenCompose(ignored -> CompletableFuture.allOf(
+                supplyInBackground("warm-up", () -> {
+                    WarmUp.run(mainCheckerReady.join(), checks);
+                    return null;
+                }),
+                supplyInBackground("warm-up CCManager", () -> {
+                    ccManagerReady.join().warmUp(checks);
+                    return null;
+                })));
+        return readiness;
+    }
+
+    /**
+     * Returns a future, which completes when the engine is ready to find diagnoses
+     */
+    public synchronized CompletableFuture<Void> getReadiness() {
+        return readiness;
+    }
+
+    /**
+     * Waits until the engine is ready, and sets the main checker
+     * @return the CCManager
+     */
+    protected CCManager awaitReadiness() {
+        getReadiness().join();
+        checker = mainCheckerReady.join();
+        return ccManagerReady.join();
+    }
+
+    /**
+     * Waits until the main checker is created, e.g., to attach a monitor to the model of the main checker
+     * @return the model of the main checker
+     */
+    protected CDRModel awaitCheckerModel() {
+        mainCheckerReady.join();
+        return checkerModel;
     }
 
     /**
@@ -67,10 +188,12 @@ public abstract class AbstractFastDiagP {
             checkerPool.shutdown();
         }
         lookupTable.clear();
+        ccManagerReady.thenAccept(CCManager::dispose);
+        mainCheckerReady.thenAccept(ChocoConsistencyChecker::dispose);
 
-        this.checker.dispose();
         this.checker = null;
 
         this.cdrModel = null;
+        this.checkerModel = null;
     }
 }
@@ -1,26 +1,29 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConsistencyCache;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.DeltaList;
+import at.tugraz.ist.ase.cacdr.algorithms.core.PersistentConsistencyStore;
+import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4.LookAheadNodeV4;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4.LookAheadWorkerV4;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4.LookupTableV4;
 import at.tugraz.ist.ase.cdrmodel.CDRModel;
 import at.tugraz.ist.ase.common.LoggerUtils;
 import at.tugraz.ist.ase.kb.core.Constraint;
-import com.google.common.collect.Sets;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.core.Utils.*;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.*;
-import static at.tugraz.ist.ase.common.ConstraintUtils.split;
 
 /**
  * Implementation of FastDiagP algorithm.
@@ -36,19 +39,22 @@ public class FastDiagPV4 extends AbstractFastDiagP {
 
     protected CCManager ccManager;
 
-    protected LookupTableV4 lookupTable = new LookupTableV4();
+    protected LookupTableV4 lookupTable;
 
 //    protected ConcurrentMap<Set<Constraint>, LookAheadNodeV3> lookupNode = new ConcurrentHashMap<>();
 
     public FastDiagPV4(@NonNull CDRModel diagModel, int lookAheadPoolSize, int checkerPoolSize, int maxLevel) {
-        super(diagModel,  lookAheadPoolSize, checkerPoolSize, maxLevel);
+        this(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST);
+    }
 
-        // create a list of ChocoConsistencyCheckers
-        try {
-            ccManager = new CCManager(checkerPoolSize, cdrModel);
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * @param checkerType the type of the checkers, e.g., INCREMENTAL to only post and unpost the difference between
+     *                    consecutive checks
+     */
+    public FastDiagPV4(@NonNull CDRModel diagModel, int lookAheadPoolSize, int checkerPoolSize, int maxLevel,
+                       @NonNull CheckerType checkerType) {
+        super(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel, checkerType);
+        lookupTable = new LookupTableV4(constraintIndex);
     }
 
     protected void dispose() {
@@ -56,6 +62,23 @@ public class FastDiagPV4 extends AbstractFastDiagP {
         this.ccManager = null;
     }
 
+    /**
+     * Enables a cache of consistencies, which persists across the calls of findDiagnosis,
+     * or disables it if the given cache is null.
+     */
+    public void setConsistencyCache(ConsistencyCache consistencyCache) {
+        lookupTable.setConsistencyCache(consistencyCache);
+    }
+
+    /**
+     * Enables a persistent store of consistencies, which is consulted before scheduling a consistency check,
+     * or disables it if the given store is null. The store has to be opened for the model of this engine
+     * and is closed by the caller.
+     */
+    public void setConsistencyStore(PersistentConsistencyStore consistencyStore) {
+        lookupTable.setConsistencyStore(consistencyStore);
+    }
+
     /**
      * This function will activate FastDiag algorithm if there exists at least one constraint,
      * which induces an inconsistency in B. Otherwise, it returns an empty set.
@@ -76,6 +99,11 @@ public class FastDiagPV4 extends AbstractFastDiagP {
         Set<Constraint> diag = null;
 
         try {
+            ccManager = awaitReadiness(); // the checkers and the warm-up
+
+            ConstraintSet cs = ConstraintSet.of(constraintIndex, C);
+            ConstraintSet bs = ConstraintSet.of(constraintIndex, B);
+
             lookAheadPool = new ForkJoinPool(lookAheadPoolSize);
             checkerPool = new ForkJoinPool(checkerPoolSize);
 
@@ -85,7 +113,7 @@ public class FastDiagPV4 extends AbstractFastDiagP {
 //            Set<Constraint> BwithC = Sets.union(B, C);
 
             // if isEmpty(C) or consistent(B U C) return Φ
-            if (C.isEmpty() || isConsistent(C, B, Collections.emptyList())) {// checker.isConsistent(BwithC)) {
+            if (cs.isEmpty() || isConsistent(cs, bs, DeltaList.empty())) {// checker.isConsistent(BwithC)) {
 
                 LoggerUtils.outdent();
                 log.debug("{}(findDiagnosis) <<< No diagnosis found", LoggerUtils.tab());
@@ -94,11 +122,11 @@ public class FastDiagPV4 extends AbstractFastDiagP {
             } else { // else return C \ FD(C, B, Φ)
                 incrementCounter(COUNTER_FASTDIAGPV4_CALLS);
                 start(TIMER_FASTDIAGPV4);
-                Set<Constraint> mss = fd(Collections.emptySet(), C, B);
+                ConstraintSet mss = fd(ConstraintSet.empty(constraintIndex), cs, bs);
                 stop(TIMER_FASTDIAGPV4);
 
                 incrementCounter(COUNTER_DIFFERENT_OPERATOR);
-                diag = Sets.difference(C, mss);
+                diag = cs.difference(mss);
 
                 LoggerUtils.outdent();
                 log.debug("{}(findDiagnosis) <<< Found diagnosis [diag={}]", LoggerUtils.tab(), diag);
@@ -115,8 +143,14 @@ public class FastDiagPV4 extends AbstractFastDiagP {
             }
 
             lookupTable.clear();
+            if (lookupTable.getConsistencyCache() != null) {
+                log.debug("{}(findDiagnosis) [consistencyCache={}]", LoggerUtils.tab(), lookupTable.getConsistencyCache());
+            }
             shutdownAndAwaitTermination(lookAheadPool, "lookAheadPool");
             shutdownAndAwaitTermination(checkerPool, "checkerPool");
+            if (lookupTable.getConsistencyStore() != null) {
+                lookupTable.getConsistencyStore().flush(); // the last batch of this diagnosis
+            }
         }
 
         return diag;
@@ -140,13 +174,13 @@ public class FastDiagPV4 extends AbstractFastDiagP {
      * @param B a background knowledge
      * @return a maximal satisfiable subset MSS of C U B.
      */
-    private Set<Constraint> fd(Set<Constraint> Δ, Set<Constraint> C, Set<Constraint> B) {
+    private ConstraintSet fd(ConstraintSet Δ, ConstraintSet C, ConstraintSet B) {
         log.debug("{}(fd) FD [Δ={}, C={}, B={}] >>>", LoggerUtils.tab(), Δ, C, B);
         LoggerUtils.indent();
 
         // if Δ != Φ and consistent(B U C) return C;
         if (!Δ.isEmpty()) {
-            if (isConsistent(C, B, Collections.singletonList(Δ))) {
+            if (isConsistent(C, B, DeltaList.of(Δ))) {
                 LoggerUtils.outdent();
                 log.debug("{}(fd) <<< return [{}]", LoggerUtils.tab(), C);
 
@@ -160,45 +194,46 @@ public class FastDiagPV4 extends AbstractFastDiagP {
             LoggerUtils.outdent();
             log.debug("{}(fd) <<< return Φ", LoggerUtils.tab());
 
-            return Collections.emptySet();
+            return ConstraintSet.empty(constraintIndex);
         }
 
         // C1 = {c1..ck}; C2 = {ck+1..cn};
-        Set<Constraint> C1 = new LinkedHashSet<>();
-        Set<Constraint> C2 = new LinkedHashSet<>();
-        split(C, C1, C2);
+        ConstraintSet C1 = C.leftHalf();
+        ConstraintSet C2 = C.rightHalf();
         log.trace("{}(fd) Split C into [C1={}, C2={}]", LoggerUtils.tab(), C1, C2);
 
         // Δ1 = FD(C2, C1, B);
         incrementCounter(COUNTER_LEFT_BRANCH_CALLS);
         incrementCounter(COUNTER_FASTDIAGPV4_CALLS);
-        Set<Constraint> Δ1 = fd(C2, C1, B);
+        ConstraintSet Δ1 = fd(C2, C1, B);
 
         // Δ2 = FD(C1 - Δ1, C2, B U Δ1);
-        Set<Constraint> BwithΔ1 = Sets.union(B, Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
-        Set<Constraint> C1withoutΔ1 = Sets.difference(C1, Δ1); incrementCounter(COUNTER_DIFFERENT_OPERATOR);
+        ConstraintSet BwithΔ1 = B.union(Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
+        ConstraintSet C1withoutΔ1 = C1.difference(Δ1); incrementCounter(COUNTER_DIFFERENT_OPERATOR);
         incrementCounter(COUNTER_RIGHT_BRANCH_CALLS);
         incrementCounter(COUNTER_FASTDIAGPV4_CALLS);
-        Set<Constraint> Δ2 = fd(C1withoutΔ1, C2, BwithΔ1);
+        ConstraintSet Δ2 = fd(C1withoutΔ1, C2, BwithΔ1);
 
         LoggerUtils.outdent();
         log.debug("{}(fd) <<< return [Δ1={} ∪ Δ2={}]", LoggerUtils.tab(), Δ1, Δ2);
 
         // return Δ1 ∪ Δ2;
         incrementCounter(COUNTER_UNION_OPERATOR);
-        return Sets.union(Δ1, Δ2);
+        return Δ1.union(Δ2);
     }
 
     private boolean firstTime = true;
     @SneakyThrows
-    private boolean isConsistent(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ) {
+    private boolean isConsistent(ConstraintSet C, ConstraintSet B, DeltaList Δ) {
         log.debug("{}(isConsistent) Checking the consistency of [C={}, B={}, Δ={}] >>>", LoggerUtils.tab(), C, B, Δ);
         LoggerUtils.indent();
 
-        Set<Constraint> BwithC = Sets.union(B, C); incrementCounter(COUNTER_UNION_OPERATOR);
+        ConstraintSet BwithC = B.union(C); incrementCounter(COUNTER_UNION_OPERATOR);
+
+        CCKey key = BwithC.key();
 
         Boolean consistent;
-        if (!lookupTable.contains(BwithC.hashCode())) {
+        if (!lookupTable.contains(key)) {
             log.debug("{}(isConsistent) Not found ConsistencyCheckResultV3 for [BwithC={}]", LoggerUtils.tab(), BwithC);
             incrementCounter(COUNTER_NOT_EXISTCC);
 
@@ -212,9 +247,13 @@ public class FastDiagPV4 extends AbstractFastDiagP {
             lookAheadPool.execute(lookAheadWorker);
             incrementCounter(COUNTER_LOOKAHEAD);
 
-            log.debug("{}(isConsistent) Checking consistency for [BwithC={}]", LoggerUtils.tab(), BwithC);
-            consistent = checker.isConsistent(BwithC);
-            incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+            consistent = lookupTable.getKnownConsistency(key);
+            if (consistent == null) {
+                consistent = getAlternativeConsistency(BwithC);
+            }
+            if (consistent == null) {
+                consistent = checkOnMainThread(BwithC);
+            }
 
 //            ConsistencyCheckResultV3 result = new ConsistencyCheckResultV3(BwithC);
 //            result.setConsistency(consistent, Thread.currentThread().getId());
@@ -223,12 +262,22 @@ public class FastDiagPV4 extends AbstractFastDiagP {
             incrementCounter(COUNTER_EXISTCC);
             log.debug("{}(isConsistent) Found a ConsistencyCheckResultV3 for [BwithC={}]", LoggerUtils.tab(), BwithC);
 
-            consistent = lookupTable.getConsistency(BwithC.hashCode());
+            consistent = lookupTable.getConsistency(key);
 
             if (consistent == null) {
-                log.debug("{}(isConsistent) Checking consistency for [BwithC={}]", LoggerUtils.tab(), BwithC);
-                consistent = checker.isConsistent(BwithC);
-                incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+                consistent = getAlternativeConsistency(BwithC);
+            }
+            if (consistent == null) {
+                // take over the consistency check if no worker has started it yet
+                boolean claimed = lookupTable.claim(key);
+                consistent = checkOnMainThread(BwithC);
+
+                if (claimed) {
+                    LookAheadNodeV4 node = lookupTable.get(key);
+                    if (node.setConsistency(consistent)) {
+                        lookupTable.putDone(node);
+                    }
+                }
             }
         }
 
@@ -243,4 +292,35 @@ public class FastDiagPV4 extends AbstractFastDiagP {
 
         return consistent;
     }
+
+    /**
+     * Checks the consistency of B U C on the main thread and adds its duration to the estimation of the check time.
+     */
+    private boolean checkOnMainThread(ConstraintSet BwithC) {
+        log.debug("{}(isConsistent) Checking consistency for [BwithC={}]", LoggerUtils.tab(), BwithC);
+        long startTime = System.nanoTime();
+        boolean consistent = checker.isConsistent(BwithC);
+        long checkTime = System.nanoTime() - startTime;
+        lookupTable.getCheckTimeEstimator().record(checkTime);
+        lookupTable.recordConsistency(BwithC.key(), consistent, checkTime);
+        incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+        return consistent;
+    }
+
+    /**
+     * Returns the consistency of B U C if it is implied by a done consistency check,
+     * i.e., by a consistent superset or an inconsistent subset of B U C. Otherwise, returns null.
+     */
+    private Boolean getAlternativeConsistency(ConstraintSet BwithC) {
+        incrementCounter(COUNTER_LOOKUP_ALTERNATIVE);
+        LookAheadNodeV4 alternative = lookupTable.getAlternativeSet(BwithC);
+
+        if (alternative == null) {
+            return null;
+        }
+
+        incrementCounter(COUNTER_EXIST_ALTERNATIVE);
+        log.debug("{}(isConsistent) Using consistency from [alternative={}]", LoggerUtils.tab(), alternative.getCC());
+        return alternative.getConsistency();
+    }
 }
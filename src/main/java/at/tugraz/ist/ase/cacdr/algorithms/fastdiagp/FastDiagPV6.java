@@ -1,26 +1,46 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.BooleanConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckBudget;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckOutcome;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConsistencyCache;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.DeltaList;
+import at.tugraz.ist.ase.cacdr.algorithms.core.FeatureModelAnalysis;
+import at.tugraz.ist.ase.cacdr.algorithms.core.PersistentConsistencyStore;
+import at.tugraz.ist.ase.cacdr.algorithms.core.TwoStageCheck;
+import at.tugraz.ist.ase.cacdr.algorithms.core.WitnessCache;
+import at.tugraz.ist.ase.cacdr.algorithms.core.WitnessRecorder;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.ConsistencyCheckResultV6;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookAheadWorkerV6;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookupTableV6;
+import at.tugraz.ist.ase.cacdr.core.UserRequirement;
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
 import at.tugraz.ist.ase.cdrmodel.CDRModel;
+import at.tugraz.ist.ase.cdrmodel.IChocoModel;
 import at.tugraz.ist.ase.common.LoggerUtils;
 import at.tugraz.ist.ase.kb.core.Constraint;
-import com.google.common.collect.Sets;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.core.Utils.*;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.*;
-import static at.tugraz.ist.ase.common.ConstraintUtils.split;
 
 /**
  * Implementation of FastDiagP algorithm.
@@ -35,20 +55,31 @@ public class FastDiagPV6 extends AbstractFastDiagP {
     // for evaluation
     public static final String TIMER_FASTDIAGPV6 = "Timer for FastDiagP V6";
     public static final String COUNTER_FASTDIAGPV6_CALLS = "The number of FastDiagP V6 calls";
+    public static final String COUNTER_DECIDED_BY_ANALYSIS = "The number of user requirements added to the diagnosis by the feature model analysis";
 
     protected CCManager ccManager;
 
-    protected LookupTableV6 lookupTable = new LookupTableV6();
+    protected LookupTableV6 lookupTable;
+
+    private boolean conflictExtraction = false;
+    private boolean twoStageChecks = false;
+    private boolean featureModelAnalysis = false;
+
+    private WitnessRecorder mainRecorder = null; // records the solutions of the main checker for the witness cache
 
     public FastDiagPV6(@NonNull CDRModel diagModel, int lookAheadPoolSize, int checkerPoolSize, int maxLevel) {
-        super(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel);
+        this(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST);
+    }
 
-        // create a list of ChocoConsistencyCheckers
-        try {
-            ccManager = new CCManager(checkerPoolSize, cdrModel);
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * @param checkerType the type of the checkers, e.g., INCREMENTAL to only post and unpost the difference between
+     *                    consecutive checks, SELECTOR to check by fixing selector variables instead of posting and
+     *                    unposting constraints, or SAT to solve the clauses of a feature model
+     */
+    public FastDiagPV6(@NonNull CDRModel diagModel, int lookAheadPoolSize, int checkerPoolSize, int maxLevel,
+                       @NonNull CheckerType checkerType) {
+        super(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel, checkerType);
+        lookupTable = new LookupTableV6(constraintIndex);
     }
 
     protected void dispose() {
@@ -56,6 +87,110 @@ public class FastDiagPV6 extends AbstractFastDiagP {
         this.ccManager = null;
     }
 
+    /**
+     * Enables a cache of consistencies, which persists across the calls of findDiagnosis,
+     * or disables it if the given cache is null.
+     */
+    public void setConsistencyCache(ConsistencyCache consistencyCache) {
+        lookupTable.setConsistencyCache(consistencyCache);
+    }
+
+    /**
+     * Sets the time and fail/node limits of the speculative consistency checks of the workers. A check which
+     * exceeds its budget, or whose result can no longer be used, is stopped and its checker is released at once.
+     * The consistency of a stopped check is unknown, and the main thread checks it itself if needed.
+     */
+    public void setCheckBudget(@NonNull CheckBudget checkBudget) {
+        lookupTable.setCheckBudget(checkBudget);
+    }
+
+    /**
+     * Enables a cache of the solutions of consistent checks (witnesses), which proves the consistency of a constraint set
+     * without solving if a stored solution satisfies all its constraints. The constraints are evaluated on the tables
+     * of the {@link FMModelTemplate}, hence the cache requires an {@link FMModel} with Boolean variables
+     * and unique constraint names.
+     * @return true if the cache is enabled
+     */
+    @SneakyThrows
+    public boolean enableWitnessCache() {
+        if (!(cdrModel instanceof FMModel fmModel) || !(awaitCheckerModel() instanceof IChocoModel chocoModel)) {
+            return false;
+        }
+        FMModelTemplate template = fmModel.getTemplate();
+        if (template == null || !template.isBoolean()) {
+            return false;
+        }
+
+        // the constraints of the model in the order of the template, a witness satisfies a constraint by its name,
+        // hence the names have to be unique
+        Map<String, Constraint> byName = new HashMap<>();
+        List<Constraint> all = new ArrayList<>(cdrModel.getPossiblyFaultyConstraints());
+        all.addAll(cdrModel.getCorrectConstraints());
+        for (Constraint c : all) {
+            if (byName.putIfAbsent(c.getName(), c) != null) {
+                log.warn("{}(FastDiagPV6) Cannot enable the witness cache, the constraint name {} is not unique",
+                        LoggerUtils.tab(), c.getName());
+                return false;
+            }
+        }
+        if (new HashSet<>(template.getConstraintNames()).size() < template.getConstraintNames().size()) {
+            log.warn("{}(FastDiagPV6) Cannot enable the witness cache, the constraint names of the template are not unique",
+                    LoggerUtils.tab());
+            return false;
+        }
+        Constraint[] constraints = template.getConstraintNames().stream().map(byName::get).toArray(Constraint[]::new);
+
+        WitnessCache witnessCache = new WitnessCache(constraintIndex, template.getVariableNames(), solution -> {
+            List<Constraint> satisfied = new ArrayList<>();
+            template.evaluate(solution).stream()
+                    .filter(j -> constraints[j] != null)
+                    .forEach(j -> satisfied.add(constraints[j]));
+            return satisfied;
+        });
+        mainRecorder = new WitnessRecorder(chocoModel.getModel(), witnessCache.getVariableNames());
+        lookupTable.setWitnessCache(witnessCache);
+        return true;
+    }
+
+    /**
+     * Enables or disables the extraction of conflicts. A worker which finds a constraint set inconsistent reduces it
+     * to a minimal conflict by QuickXPlain on the free checkers, and each consistency check of a superset of a known
+     * conflict is resolved as inconsistent without solving.
+     */
+    public void setConflictExtraction(boolean conflictExtraction) {
+        this.conflictExtraction = conflictExtraction;
+    }
+
+    /**
+     * Enables or disables two-stage consistency checks, i.e., the constraints of a check are propagated first,
+     * and the search is skipped if the propagation fails. With the plain POST_UNPOST checkers, nothing is propagated,
+     * see {@link TwoStageCheck}, hence the propagation levels are not used.
+     * @param propagationLevels the number of levels below the maximal level of the lookahead, on which the constraint
+     *                          sets are only propagated instead of being checked, e.g., 2 (each level doubles the sets)
+     */
+    public void setTwoStageChecks(boolean twoStageChecks, int propagationLevels) {
+        this.twoStageChecks = twoStageChecks;
+        lookupTable.setPropagationLevels(twoStageChecks && checkerType.canPropagate() ? Math.max(0, propagationLevels) : 0);
+    }
+
+    /**
+     * Enables or disables the feature model analysis before the diagnosis, see {@link FeatureModelAnalysis}.
+     * The user requirements which select a dead feature or deselect a core feature are added to the diagnosis
+     * at once and left out of C.
+     */
+    public void setFeatureModelAnalysis(boolean featureModelAnalysis) {
+        this.featureModelAnalysis = featureModelAnalysis;
+    }
+
+    /**
+     * Enables a persistent store of consistencies, which is consulted before scheduling a consistency check,
+     * or disables it if the given store is null. The store has to be opened for the model of this engine
+     * and is closed by the caller.
+     */
+    public void setConsistencyStore(PersistentConsistencyStore consistencyStore) {
+        lookupTable.setConsistencyStore(consistencyStore);
+    }
+
     /**
      * This function will activate FastDiag algorithm if there exists at least one constraint,
      * which induces an inconsistency in B. Otherwise, it returns an empty set.
@@ -76,6 +211,20 @@ public class FastDiagPV6 extends AbstractFastDiagP {
         Set<Constraint> diag = null;
 
         try {
+            ccManager = awaitReadiness(); // the checkers and the warm-up
+            ccManager.setWitnessCache(lookupTable.getWitnessCache());
+            ccManager.setTwoStage(twoStageChecks);
+
+            ConstraintSet cs = ConstraintSet.of(constraintIndex, C);
+            ConstraintSet bs = ConstraintSet.of(constraintIndex, B);
+            // the user requirements which are inconsistent on their own are in the diagnosis anyway
+            ConstraintSet decided = ConstraintSet.of(constraintIndex,
+                    featureModelAnalysis ? findInconsistentRequirements(C, B) : Collections.emptySet());
+            if (!decided.isEmpty()) {
+                cs = cs.difference(decided);
+            }
+            lookupTable.setConflictBackground(conflictExtraction ? bs : null);
+
             lookAheadPool = new ForkJoinPool(lookAheadPoolSize);
             checkerPool = new ForkJoinPool(checkerPoolSize);
 
@@ -85,7 +234,7 @@ public class FastDiagPV6 extends AbstractFastDiagP {
 //            Set<Constraint> BwithC = Sets.union(B, C);
 
             // if isEmpty(C) or consistent(B U C) return Φ
-            if (C.isEmpty() || isConsistent(C, B, Collections.emptyList())) {// checker.isConsistent(BwithC)) {
+            if (cs.isEmpty() || isConsistent(cs, bs, DeltaList.empty())) {// checker.isConsistent(BwithC)) {
 
                 LoggerUtils.outdent();
                 log.debug("{}(findDiagnosis) <<< No diagnosis found", LoggerUtils.tab());
@@ -94,15 +243,18 @@ public class FastDiagPV6 extends AbstractFastDiagP {
             } else { // else return C \ FD(C, B, Φ)
                 incrementCounter(COUNTER_FASTDIAGPV6_CALLS);
                 start(TIMER_FASTDIAGPV6);
-                Set<Constraint> mss = fd(Collections.emptySet(), C, B);
+                ConstraintSet mss = fd(ConstraintSet.empty(constraintIndex), cs, bs);
                 stop(TIMER_FASTDIAGPV6);
 
                 incrementCounter(COUNTER_DIFFERENT_OPERATOR);
-                diag = Sets.difference(C, mss);
+                diag = cs.difference(mss);
 
                 LoggerUtils.outdent();
                 log.debug("{}(findDiagnosis) <<< Found diagnosis [diag={}]", LoggerUtils.tab(), diag);
             }
+            if (!decided.isEmpty()) {
+                diag = decided.union(ConstraintSet.of(constraintIndex, diag));
+            }
         } catch (Exception e) {
             log.error("{}(findDiagnosis) <<< Exception occurred - {}", LoggerUtils.tab(), e.getMessage());
         } finally {
@@ -111,13 +263,70 @@ public class FastDiagPV6 extends AbstractFastDiagP {
             lookupTable.print("DONE diagnosis identification");
 
             lookupTable.clear();
+            if (lookupTable.getConsistencyCache() != null) {
+                log.debug("{}(findDiagnosis) [consistencyCache={}]", LoggerUtils.tab(), lookupTable.getConsistencyCache());
+            }
             shutdownAndAwaitTermination(lookAheadPool, "lookAheadPool");
             shutdownAndAwaitTermination(checkerPool, "checkerPool");
+            if (lookupTable.getConsistencyStore() != null) {
+                lookupTable.getConsistencyStore().flush(); // the last batch of this diagnosis
+            }
         }
 
         return diag;
     }
 
+    /**
+     * Returns the user requirements in C which are inconsistent with the feature model on their own.
+     * They belong to the preferred diagnosis if C contains all constraints of the feature model before the user
+     * requirements and B is the set of correct constraints of the model, since the consistent constraints of the
+     * feature model are then kept before any user requirement. Otherwise, no user requirement is returned.
+     */
+    private Set<Constraint> findInconsistentRequirements(Set<Constraint> C, Set<Constraint> B) {
+        if (!(cdrModel instanceof FMModel fmModel) || !namesOf(B).equals(namesOf(fmModel.getCorrectConstraints()))) {
+            return Collections.emptySet();
+        }
+        FeatureModelAnalysis analysis = FeatureModelAnalysis.of(fmModel);
+        if (analysis == null || !analysis.isConsistent()) {
+            return Collections.emptySet();
+        }
+
+        Map<String, UserRequirement> requirements = new HashMap<>();
+        fmModel.getUserRequirements().forEach(ur -> requirements.put(ur.getConstraint().getName(), ur));
+        Set<String> featureModelConstraints = namesOf(fmModel.getPossiblyFaultyConstraints());
+        featureModelConstraints.removeAll(requirements.keySet());
+
+        Set<Constraint> decided = new LinkedHashSet<>();
+        boolean afterRequirement = false;
+        int numFeatureModelConstraints = 0;
+        for (Constraint c : C) {
+            UserRequirement ur = requirements.get(c.getName());
+            if (ur != null) {
+                afterRequirement = true;
+                if (analysis.isInconsistent(ur)) {
+                    decided.add(c);
+                }
+            } else if (afterRequirement || !featureModelConstraints.contains(c.getName())) {
+                return Collections.emptySet();
+            } else {
+                numFeatureModelConstraints++;
+            }
+        }
+        if (numFeatureModelConstraints != featureModelConstraints.size()) {
+            return Collections.emptySet();
+        }
+
+        incrementCounter(COUNTER_DECIDED_BY_ANALYSIS, decided.size());
+        log.debug("{}(findDiagnosis) Decided by the feature model analysis [decided={}]", LoggerUtils.tab(), decided);
+        return decided;
+    }
+
+    private static Set<String> namesOf(Collection<Constraint> constraints) {
+        Set<String> names = new HashSet<>();
+        constraints.forEach(c -> names.add(c.getName()));
+        return names;
+    }
+
     /**
      * The implementation of MSS-based FastDiag algorithm.
      * The algorithm determines a maximal satisfiable subset MSS (Γ) of C U B.
@@ -136,13 +345,13 @@ public class FastDiagPV6 extends AbstractFastDiagP {
      * @param B a background knowledge
      * @return a maximal satisfiable subset MSS of C U B.
      */
-    private Set<Constraint> fd(Set<Constraint> Δ, Set<Constraint> C, Set<Constraint> B) {
+    private ConstraintSet fd(ConstraintSet Δ, ConstraintSet C, ConstraintSet B) {
         log.debug("{}(fd) FD [Δ={}, C={}, B={}] >>>", LoggerUtils.tab(), Δ, C, B);
         LoggerUtils.indent();
 
         // if Δ != Φ and consistent(B U C) return C;
         if (!Δ.isEmpty()) {
-            if (isConsistent(C, B, Collections.singletonList(Δ))) {
+            if (isConsistent(C, B, DeltaList.of(Δ))) {
                 LoggerUtils.outdent();
                 log.debug("{}(fd) <<< return [{}]", LoggerUtils.tab(), C);
 
@@ -156,46 +365,47 @@ public class FastDiagPV6 extends AbstractFastDiagP {
             LoggerUtils.outdent();
             log.debug("{}(fd) <<< return Φ", LoggerUtils.tab());
 
-            return Collections.emptySet();
+            return ConstraintSet.empty(constraintIndex);
         }
 
         // C1 = {c1..ck}; C2 = {ck+1..cn};
-        Set<Constraint> C1 = new LinkedHashSet<>();
-        Set<Constraint> C2 = new LinkedHashSet<>();
-        split(C, C1, C2);
+        ConstraintSet C1 = C.leftHalf();
+        ConstraintSet C2 = C.rightHalf();
         log.trace("{}(fd) Split C into [C1={}, C2={}]", LoggerUtils.tab(), C1, C2);
 
         // Δ1 = FD(C2, C1, B);
         incrementCounter(COUNTER_LEFT_BRANCH_CALLS);
         incrementCounter(COUNTER_FASTDIAGPV6_CALLS);
-        Set<Constraint> Δ1 = fd(C2, C1, B);
+        ConstraintSet Δ1 = fd(C2, C1, B);
 
         // Δ2 = FD(C1 - Δ1, C2, B U Δ1);
-        Set<Constraint> BwithΔ1 = Sets.union(B, Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
-        Set<Constraint> C1withoutΔ1 = Sets.difference(C1, Δ1); incrementCounter(COUNTER_DIFFERENT_OPERATOR);
+        ConstraintSet BwithΔ1 = B.union(Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
+        ConstraintSet C1withoutΔ1 = C1.difference(Δ1); incrementCounter(COUNTER_DIFFERENT_OPERATOR);
         incrementCounter(COUNTER_RIGHT_BRANCH_CALLS);
         incrementCounter(COUNTER_FASTDIAGPV6_CALLS);
-        Set<Constraint> Δ2 = fd(C1withoutΔ1, C2, BwithΔ1);
+        ConstraintSet Δ2 = fd(C1withoutΔ1, C2, BwithΔ1);
 
         LoggerUtils.outdent();
         log.debug("{}(fd) <<< return [Δ1={} ∪ Δ2={}]", LoggerUtils.tab(), Δ1, Δ2);
 
         // return Δ1 ∪ Δ2;
         incrementCounter(COUNTER_UNION_OPERATOR);
-        return Sets.union(Δ1, Δ2);
+        return Δ1.union(Δ2);
     }
 
     boolean firstTime = true;
     @SneakyThrows
-    private boolean isConsistent(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ) {
+    private boolean isConsistent(ConstraintSet C, ConstraintSet B, DeltaList Δ) {
         log.debug("{}(isConsistent) Checking the consistency of [C={}, B={}, Δ={}] >>>", LoggerUtils.tab(), C, B, Δ);
         LoggerUtils.indent();
 
-        Set<Constraint> BwithC = Sets.union(B, C); incrementCounter(COUNTER_UNION_OPERATOR);
+        ConstraintSet BwithC = B.union(C); incrementCounter(COUNTER_UNION_OPERATOR);
+
+        CCKey key = BwithC.key();
 
         Boolean consistent;
         // check the existence of the consistency check for B U C
-        if (!lookupTable.contains(BwithC.hashCode())) {
+        if (!lookupTable.contains(key)) {
             log.debug("{}(isConsistent) Not found ConsistencyCheckResultV6 for [BwithC={}]", LoggerUtils.tab(), BwithC);
             incrementCounter(COUNTER_NOT_EXISTCC);
 
@@ -207,7 +417,8 @@ public class FastDiagPV6 extends AbstractFastDiagP {
 
             // Add to LookupTable before running the lookAhead
             ConsistencyCheckResultV6 result = new ConsistencyCheckResultV6(BwithC);
-            lookupTable.put(BwithC.hashCode(), result);
+            result.tryStart(); // checked on the main thread, the workers must not check it again
+            lookupTable.put(key, result);
 //            System.out.println("Root: " + BwithC);
 
             // Run the lookAhead
@@ -216,22 +427,36 @@ public class FastDiagPV6 extends AbstractFastDiagP {
             lookAheadPool.execute(lookAheadWorker); // run the lookAhead in the lookAheadPool
             incrementCounter(COUNTER_LOOKAHEAD);
 
-            log.debug("{}(isConsistent) Checking consistency for [BwithC={}]", LoggerUtils.tab(), BwithC);
-            consistent = checker.isConsistent(BwithC); // run the checker in the main thread
-            incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+            if (result.isDone()) { // inferred by monotonicity when putting to the LookupTable
+                consistent = result.isConsistent();
+            } else {
+                consistent = checkOnMainThread(BwithC);
 
-//            result.setConsistency(consistent, Thread.currentThread().getId());
+                if (result.setConsistency(consistent, Thread.currentThread().getId())) {
+                    lookupTable.putDone(result);
+                }
+            }
         } else {
             incrementCounter(COUNTER_EXISTCC);
             log.debug("{}(isConsistent) Found a ConsistencyCheckResultV3 for [BwithC={}]", LoggerUtils.tab(), BwithC);
 
             // Get the result of the consistency check from the lookupTable
-            consistent = lookupTable.getConsistency(BwithC.hashCode());
+            consistent = lookupTable.getConsistency(key);
 
             if (consistent == null) { // if the result is not yet available
-                log.debug("{}(isConsistent) Checking consistency for [BwithC={}]", LoggerUtils.tab(), BwithC);
-                consistent = checker.isConsistent(BwithC); // run the checker in the main thread
-                incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+                consistent = getAlternativeConsistency(BwithC);
+            }
+            if (consistent == null) {
+                // take over the consistency check if no worker has started it yet
+                boolean claimed = lookupTable.claim(key);
+                consistent = checkOnMainThread(BwithC);
+
+                if (claimed) {
+                    ConsistencyCheckResultV6 result = lookupTable.get(key);
+                    if (result.setConsistency(consistent, Thread.currentThread().getId())) {
+                        lookupTable.putDone(result);
+                    }
+                }
             }
         }
 
@@ -240,4 +465,54 @@ public class FastDiagPV6 extends AbstractFastDiagP {
 
         return consistent;
     }
+
+    /**
+     * Checks the consistency of B U C on the main thread and adds its duration to the estimation of the check time.
+     */
+    private boolean checkOnMainThread(ConstraintSet BwithC) {
+        log.debug("{}(isConsistent) Checking consistency for [BwithC={}]", LoggerUtils.tab(), BwithC);
+        WitnessCache witnessCache = lookupTable.getWitnessCache();
+        if (witnessCache != null && mainRecorder != null) {
+            mainRecorder.arm();
+        }
+
+        long startTime = System.nanoTime();
+        if (twoStageChecks && TwoStageCheck.propagate(checker, BwithC) == CheckOutcome.INCONSISTENT) {
+            lookupTable.getCheckTimeEstimator().record(System.nanoTime() - startTime);
+            incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+            incrementCounter(TwoStageCheck.COUNTER_RESOLVED_BY_PROPAGATION);
+            return false;
+        }
+        boolean consistent = checker.isConsistent(BwithC); // run the checker in the main thread
+        lookupTable.getCheckTimeEstimator().record(System.nanoTime() - startTime);
+        incrementCounter(COUNTER_CONSISTENCY_CHECKS);
+        if (twoStageChecks) {
+            incrementCounter(TwoStageCheck.COUNTER_RESOLVED_BY_SEARCH);
+        }
+
+        if (consistent && witnessCache != null && mainRecorder != null) {
+            long[] solution = checker instanceof BooleanConsistencyChecker booleanChecker ? booleanChecker.getSolution() : mainRecorder.take();
+            if (solution != null) {
+                witnessCache.add(solution);
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * Returns the consistency of B U C if it is implied by a done consistency check,
+     * i.e., by a consistent superset or an inconsistent subset of B U C. Otherwise, returns null.
+     */
+    private Boolean getAlternativeConsistency(ConstraintSet BwithC) {
+        incrementCounter(COUNTER_LOOKUP_ALTERNATIVE);
+        ConsistencyCheckResultV6 alternative = lookupTable.getAlternativeSet(BwithC);
+
+        if (alternative == null) {
+            return null;
+        }
+
+        incrementCounter(COUNTER_EXIST_ALTERNATIVE);
+        log.debug("{}(isConsistent) Using consistency from [alternative={}]", LoggerUtils.tab(), alternative.getC());
+        return alternative.isConsistent();
+    }
 }
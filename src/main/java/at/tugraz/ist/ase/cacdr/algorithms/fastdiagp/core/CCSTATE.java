@@ -3,5 +3,6 @@ package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core;
 public enum CCSTATE {
     DONE,
     IN_QUEUE,
-    IN_PROGRESS
+    IN_PROGRESS,
+    UNKNOWN
 }
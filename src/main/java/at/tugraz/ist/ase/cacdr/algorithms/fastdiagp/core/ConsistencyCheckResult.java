@@ -1,21 +1,21 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
 import java.util.concurrent.Semaphore;
 
 @Slf4j
 public class ConsistencyCheckResult {
     @Getter
-    private final Set<Constraint> C;
+    private final ConstraintSet C;
     @Getter
-    private final Integer hashCode;
+    private final CCKey key;
 
     @Getter
     private boolean consistent;
@@ -29,9 +29,9 @@ public class ConsistencyCheckResult {
     @Getter @Setter
     private ConsistencyCheckWorker worker = null;
 
-    public ConsistencyCheckResult(@NonNull Set<Constraint> C) {
+    public ConsistencyCheckResult(@NonNull ConstraintSet C) {
         this.C = C;
-        this.hashCode = C.hashCode();
+        this.key = C.key();
         this.consistent = false;
         this.status = CCSTATE.IN_QUEUE;
 
@@ -1,13 +1,12 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core;
 
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
 import java.util.concurrent.RecursiveAction;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.AbstractFastDiagP.COUNTER_CONSISTENCYCHECKWORKER_CREATION;
@@ -18,14 +17,14 @@ public class ConsistencyCheckWorker extends RecursiveAction {
 
     public static final String COUNTER_CONSISTENCY_CHECKS_IN_WORKER = "The number of consistency checks performed by workers";
 
-    private final Set<Constraint> C;
+    private final ConstraintSet C;
 
     private final CCManager ccManager;
     private final LookupTable lookupTable;
 
     private final ConsistencyCheckResult ccResult;
 
-    public ConsistencyCheckWorker(@NonNull Set<Constraint> C,
+    public ConsistencyCheckWorker(@NonNull ConstraintSet C,
                                   @NonNull CCManager ccManager,
                                   @NonNull ConsistencyCheckResult result,
                                   @NonNull LookupTable lookupTable) {
@@ -76,9 +75,10 @@ public class ConsistencyCheckWorker extends RecursiveAction {
 //            }
 
             ccResult.setConsistency(consistent, threadID);
+            lookupTable.putDone(ccResult);
 
             // cancel all unnecessary tasks
-            lookupTable.cleanUpCC(ccResult.getC(), consistent);
+            lookupTable.cleanUpCC(ccResult.getC(), ccResult.getKey(), consistent);
 
             LoggerUtils.outdent();
             log.debug("{}(ConsistencyCheckWorker) Checked [CCResult={}]", LoggerUtils.tab(), ccResult);
@@ -1,7 +1,13 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSetTrie;
 import at.tugraz.ist.ase.common.LoggerUtils;
 import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
@@ -24,25 +30,45 @@ public class LookupTable {
 
     /**
      * LookupTable holds the consistency of consistency checks
-     * using a Map of <hashcode of a constraint set, the consistency of the constraint set>
+     * using a Map of <canonical key of a constraint set, the consistency of the constraint set>
      */
-    protected final ConcurrentMap<Integer, ConsistencyCheckResult> lookupTable = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<CCKey, ConsistencyCheckResult> lookupTable = new ConcurrentHashMap<>();
+
+    /**
+     * Subset/superset indexes of the done consistency checks, used to find alternatives
+     */
+    protected final ConstraintSetTrie<ConsistencyCheckResult> consistentSets = new ConstraintSetTrie<>();
+    protected final ConstraintSetTrie<ConsistencyCheckResult> inconsistentSets = new ConstraintSetTrie<>();
+
+    @Getter
+    private final ConstraintIndex index;
 
     private final Semaphore semaphore = new Semaphore(1); // already try fair=true
 
-    public boolean contains(int hashCode) {
-        return lookupTable.containsKey(hashCode);
+    public LookupTable(@NonNull ConstraintIndex index) {
+        this.index = index;
     }
 
-    public ConsistencyCheckResult get(int hashCode) {
+    /**
+     * Returns the canonical key of the given constraint set.
+     */
+    public CCKey keyOf(@NonNull Set<Constraint> C) {
+        return index.keyOf(C);
+    }
+
+    public boolean contains(CCKey key) {
+        return lookupTable.containsKey(key);
+    }
+
+    public ConsistencyCheckResult get(CCKey key) {
         start(TIMER_LOOKUP_GET);
-        ConsistencyCheckResult result = lookupTable.get(hashCode);
+        ConsistencyCheckResult result = lookupTable.get(key);
         stop(TIMER_LOOKUP_GET);
         return result;
     }
 
-    public void put(int hashCode, ConsistencyCheckResult result, boolean updateWithAlternative) {
-        lookupTable.put(hashCode, result);
+    public void put(CCKey key, ConsistencyCheckResult result, boolean updateWithAlternative) {
+        lookupTable.put(key, result);
         log.debug("{}(LookupTable-put) Put to LookupTable for [C={}]", LoggerUtils.tab(), result.getC());
 
         // update the consistency if there exists an alternative
@@ -51,6 +77,7 @@ public class LookupTable {
 
             if (alternative != null) {
                 result.setConsistency(alternative.isConsistent(), Thread.currentThread().getId());
+                putDone(result);
 //                System.out.println("Update with alternative: " + result.getC());
 
                 incrementCounter(COUNTER_EXIST_ALTERNATIVE);
@@ -66,6 +93,8 @@ public class LookupTable {
             throw new RuntimeException(e);
         }
         lookupTable.clear();
+        consistentSets.clear();
+        inconsistentSets.clear();
         semaphore.release();
     }
 
@@ -79,7 +108,7 @@ public class LookupTable {
         if (log.isTraceEnabled()) {
             final StringBuilder sb = new StringBuilder(message);
             sb.append("\n size: ").append(lookupTable.size());
-            for (Map.Entry<Integer, ConsistencyCheckResult> entry : lookupTable.entrySet()) {
+            for (Map.Entry<CCKey, ConsistencyCheckResult> entry : lookupTable.entrySet()) {
                 String key = entry.getKey().toString();
                 ConsistencyCheckResult result = entry.getValue();
                 sb.append('\n').append("key: ").append(key).append("; ").append(result);
@@ -90,47 +119,57 @@ public class LookupTable {
         semaphore.release();
     }
 
-    public ConsistencyCheckResult getAlternativeSet(Set<Constraint> C) {
+    /**
+     * Adds a done consistency check to the subset/superset indexes.
+     */
+    public void putDone(ConsistencyCheckResult result) {
+        if (result.isConsistent()) {
+            consistentSets.put(result.getC(), result);
+        } else {
+            inconsistentSets.put(result.getC(), result);
+        }
+    }
+
+    /**
+     * Returns a done consistency check which implies the consistency of C,
+     * i.e., a consistent superset or an inconsistent subset of C, or null if there is no such check.
+     */
+    public ConsistencyCheckResult getAlternativeSet(ConstraintSet C) {
         start(TIMER_LOOKUP_ALTERNATIVE);
 
-        for (ConsistencyCheckResult result : lookupTable.values()) {
-            if (result.isDone()) {
-                if (result.isConsistent() && result.getC().containsAll(C)) {
-                    incrementCounter(COUNTER_SUPERSET);
-                    log.debug("{}(LookupTable-prune) return superset [superset={}]", LoggerUtils.tab(), result.getC());
-                    stop(TIMER_LOOKUP_ALTERNATIVE);
-                    return result;
-                }
-                else if (!result.isConsistent() && C.containsAll(result.getC())) {
-                    incrementCounter(COUNTER_SUBSET);
-                    log.debug("{}(LookupTable-prune) return subset [subset={}]", LoggerUtils.tab(), result.getC());
-                    stop(TIMER_LOOKUP_ALTERNATIVE);
-                    return result;
-                }
+        ConsistencyCheckResult result = consistentSets.findSupersetOf(C);
+        if (result != null) {
+            incrementCounter(COUNTER_SUPERSET);
+            log.debug("{}(LookupTable-prune) return superset [superset={}]", LoggerUtils.tab(), result.getC());
+        } else {
+            result = inconsistentSets.findSubsetOf(C);
+            if (result != null) {
+                incrementCounter(COUNTER_SUBSET);
+                log.debug("{}(LookupTable-prune) return subset [subset={}]", LoggerUtils.tab(), result.getC());
             }
         }
+
         stop(TIMER_LOOKUP_ALTERNATIVE);
-        return null;
+        return result;
     }
 
-    public void cleanUpCC(Set<Constraint> C, boolean consistent) {
+    public void cleanUpCC(ConstraintSet C, CCKey key, boolean consistent) {
         log.debug("{}(LookupTable-prune) pruning supersets/subsets of [C={}]", LoggerUtils.tab(), C);
 
         start(TIMER_CLEANUP);
 
-        for (Map.Entry<Integer, ConsistencyCheckResult> entry : lookupTable.entrySet()) {
-            int hashCode = entry.getKey();
-
-            if (hashCode == C.hashCode()) {
+        for (Map.Entry<CCKey, ConsistencyCheckResult> entry : lookupTable.entrySet()) {
+            if (key.equals(entry.getKey())) {
                 continue;
             }
 
             ConsistencyCheckResult result = entry.getValue();
 
-            if (result.isInQueue() && ((consistent && C.containsAll(result.getC())) || (!consistent && result.getC().containsAll(C)))) {
+            if (result.isInQueue() && ((consistent && result.getC().isSubsetOf(C)) || (!consistent && C.isSubsetOf(result.getC())))) {
 
                 if ((result.getWorker() != null) && result.getWorker().cancel(false)) {
                     result.setConsistency(consistent, Thread.currentThread().getId());
+                    putDone(result);
 
                     incrementCounter(COUNTER_PRUNED_CC);
                     log.debug("{}(LookupTable-prune) cancelled [C={}]", LoggerUtils.tab(), result.getC());
@@ -1,15 +1,14 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4;
 
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
 import java.util.concurrent.RecursiveTask;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.AbstractFastDiagP.COUNTER_CONSISTENCYCHECKWORKER_CREATION;
@@ -21,24 +20,26 @@ public class ConsistencyCheckWorkerV4 extends RecursiveTask<Boolean> {
     public static final String COUNTER_CONSISTENCY_CHECKS_IN_WORKER = "The number of consistency checks performed by workers";
 
     @Getter
-    private Set<Constraint> C;
+    private ConstraintSet C;
 
     private CCManager ccManager;
 
     @Getter @Setter
     private LookAheadNodeV4 node;
 
-    public ConsistencyCheckWorkerV4(@NonNull Set<Constraint> C,
+    private LookupTableV4 lookupTable;
+
+    public ConsistencyCheckWorkerV4(@NonNull ConstraintSet C,
                                     @NonNull CCManager ccManager,
-                                    @NonNull LookAheadNodeV4 node) {
+                                    @NonNull LookAheadNodeV4 node,
+                                    @NonNull LookupTableV4 lookupTable) {
         incrementCounter(COUNTER_CONSISTENCYCHECKWORKER_CREATION);
 
         this.ccManager = ccManager;
         this.node = node;
+        this.lookupTable = lookupTable;
         this.C = C;
 
-        node.setWorker(this);
-
         log.debug("{}(ConsistencyCheckWorker) Created ConsistencyCheck for [C={}]", LoggerUtils.tab(), C);
     }
 
@@ -49,24 +50,32 @@ public class ConsistencyCheckWorkerV4 extends RecursiveTask<Boolean> {
 
         Boolean consistent = null;
         try {
-            // get a free ChocoConsistencyChecker
-            ChocoConsistencyChecker checker = ccManager.getChecker();
-
-            if (checker == null) {
-                log.error("{}(ConsistencyCheckWorker) No free ChocoConsistencyChecker for [C={}]", LoggerUtils.tab(), C);
-                throw new RuntimeException("No free ChocoConsistencyChecker for " + C);
+            if (!node.tryStart()) { // already checked or claimed by the main thread
+                consistent = node.getConsistency();
+            } else {
+                // get a free ChocoConsistencyChecker
+                ChocoConsistencyChecker checker = ccManager.getChecker(C);
+
+                if (checker == null) {
+                    log.error("{}(ConsistencyCheckWorker) No free ChocoConsistencyChecker for [C={}]", LoggerUtils.tab(), C);
+                    throw new RuntimeException("No free ChocoConsistencyChecker for " + C);
+                }
+
+                // identify the consistency of the constraint set
+                long startTime = System.nanoTime();
+                consistent = checker.isConsistent(C);
+                lookupTable.getCheckTimeEstimator().record(System.nanoTime() - startTime);
+                incrementCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
+                ccManager.releaseChecker(checker); // release the checker
+
+                if (node.setConsistency(consistent)) {
+                    lookupTable.putDone(node);
+                }
             }
-
-            // identify the consistency of the constraint set
-            consistent = checker.isConsistent(C);
-            incrementCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
-            ccManager.releaseChecker(checker); // release the checker
-
-            node.setConsistency(consistent);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
-            node.setWorker(null);
+            node.clearWorker();
             this.dispose();
         }
 
@@ -80,5 +89,6 @@ public class ConsistencyCheckWorkerV4 extends RecursiveTask<Boolean> {
         C = null;
         ccManager = null;
         node = null;
+        lookupTable = null;
     }
 }
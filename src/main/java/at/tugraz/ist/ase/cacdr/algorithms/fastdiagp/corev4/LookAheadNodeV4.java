@@ -1,21 +1,40 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.DeltaList;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.lookaheadtree.LookAheadNodeStatus;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
-import com.google.common.collect.Sets;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.Set;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
 
 @Getter
 @NoArgsConstructor
 @Slf4j
 public class LookAheadNodeV4 {
+    // the state word of the consistency check of CC, updated by CAS
+    private static final int IN_QUEUE = 0;
+    private static final int IN_PROGRESS = 1;
+    private static final int DONE_CONSISTENT = 2;
+    private static final int DONE_INCONSISTENT = 3;
+
+    private static final VarHandle STATE;
+    private static final VarHandle WORKER;
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(LookAheadNodeV4.class, "state", int.class);
+            WORKER = lookup.findVarHandle(LookAheadNodeV4.class, "worker", ConsistencyCheckWorkerV4.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private static long generatingNodeId = -1;
     private final long id = ++generatingNodeId;
 
@@ -59,27 +78,42 @@ public class LookAheadNodeV4 {
 //    private AbstractHSParameters parameters;
 
     @Getter
-    private Set<Constraint> CC;
+    private ConstraintSet CC;
+    /**
+     * The canonical key of CC
+     */
+    @Getter
+    private CCKey key;
 
     @Getter
-    private Set<Constraint> C;
+    private ConstraintSet C;
     @Getter
-    private Set<Constraint> B;
+    private ConstraintSet B;
     @Getter
-    private List<Set<Constraint>> Δ;
+    private DeltaList Δ;
 
-    @Getter @Setter
-    Boolean consistency = null;
+    /**
+     * IN_QUEUE -> IN_PROGRESS (claimed by a thread) -> DONE_CONSISTENT/DONE_INCONSISTENT
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile int state = IN_QUEUE;
 
-    @Getter @Setter
-    ConsistencyCheckWorkerV4 worker = null;
+    @Getter
+    private volatile ConsistencyCheckWorkerV4 worker = null;
 
-    private final Semaphore semaphore = new Semaphore(1);
+    /**
+     * Completed with the consistency when the consistency check is done
+     */
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+    /**
+     * The time (System.nanoTime) when a thread claimed the consistency check
+     */
+    private volatile long startTime = 0L;
 
     /**
      * Constructor for the root node.
      */
-    public static LookAheadNodeV4 createRoot(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ, Boolean consistency) {
+    public static LookAheadNodeV4 createRoot(ConstraintSet C, ConstraintSet B, DeltaList Δ, Boolean consistency) {
         generatingNodeId = -1;
 
         LookAheadNodeV4 root = new LookAheadNodeV4();
@@ -87,16 +121,17 @@ public class LookAheadNodeV4 {
 //        root.parameters = parameters;
         root.C = C;
         root.B = B;
-        root.CC = Sets.union(B, C);
+        root.CC = B.union(C);
+        root.key = root.CC.key();
 
         root.Δ = Δ;
-        root.consistency = consistency;
+        root.setConsistency(consistency);
 
         log.trace("{}Created root node with [C={}, B={}, cc={}]", LoggerUtils.tab(), C, B, consistency);
         return root;
     }
 
-    public static LookAheadNodeV4 createRoot(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ) {
+    public static LookAheadNodeV4 createRoot(ConstraintSet C, ConstraintSet B, DeltaList Δ) {
         generatingNodeId = -1;
 
         LookAheadNodeV4 root = new LookAheadNodeV4();
@@ -104,7 +139,8 @@ public class LookAheadNodeV4 {
 //        root.parameters = parameters;
         root.C = C;
         root.B = B;
-        root.CC = Sets.union(B, C);
+        root.CC = B.union(C);
+        root.key = root.CC.key();
 
         root.Δ = Δ;
 
@@ -117,7 +153,7 @@ public class LookAheadNodeV4 {
      */
     @Builder
     public LookAheadNodeV4(@NonNull LookAheadNodeV4 parent,
-                           Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ, boolean arcLabel) {
+                           ConstraintSet C, ConstraintSet B, DeltaList Δ, boolean arcLabel) {
         this.parent = parent;
 //        this.parents.add(parent);
         this.level = parent.level + 1;
@@ -125,7 +161,8 @@ public class LookAheadNodeV4 {
 
         this.C = C;
         this.B = B;
-        this.CC = Sets.union(B, C);
+        this.CC = B.union(C);
+        this.key = CC.key();
         this.Δ = Δ;
 
         parent.children.put(arcLabel, this);
@@ -133,14 +170,74 @@ public class LookAheadNodeV4 {
         log.trace("{}Created child node with [parent={}, arcLabel={}]", LoggerUtils.tab(), parent, arcLabel);
     }
 
-    protected void acquire() throws InterruptedException {
-        semaphore.acquire();
-        log.trace("{}(Node) acquired for [node={}]", LoggerUtils.tab(), this);
+    /**
+     * Returns the consistency of CC, or null if the consistency check is not done yet.
+     */
+    public Boolean getConsistency() {
+        return switch (state) {
+            case DONE_CONSISTENT -> Boolean.TRUE;
+            case DONE_INCONSISTENT -> Boolean.FALSE;
+            default -> null;
+        };
+    }
+
+    /**
+     * Sets the consistency of CC, if the consistency check is not yet done.
+     * @return true if the consistency has been set by this call
+     */
+    public boolean setConsistency(Boolean consistency) {
+        if (consistency == null) {
+            return false;
+        }
+
+        int done = consistency ? DONE_CONSISTENT : DONE_INCONSISTENT;
+        int s;
+        do {
+            s = state;
+            if (s == DONE_CONSISTENT || s == DONE_INCONSISTENT) {
+                return false;
+            }
+        } while (!STATE.compareAndSet(this, s, done));
+
+        future.complete(consistency);
+        return true;
+    }
+
+    /**
+     * Claims the consistency check of CC for the calling thread.
+     * @return true if the consistency check was in the queue, i.e., not claimed by another thread and not done
+     */
+    public boolean tryStart() {
+        if (STATE.compareAndSet(this, IN_QUEUE, IN_PROGRESS)) {
+            startTime = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isStarted() {
+        return state != IN_QUEUE;
+    }
+
+    /**
+     * Returns the time when the consistency check was claimed.
+     * A thread which has just claimed it may not have written the time yet, then the current time is returned.
+     */
+    public long getStartTime() {
+        long t = startTime;
+        return t != 0L ? t : System.nanoTime();
+    }
+
+    /**
+     * Sets the worker, if no worker has been set yet.
+     * @return true if the worker has been set by this call
+     */
+    public boolean trySetWorker(@NonNull ConsistencyCheckWorkerV4 worker) {
+        return WORKER.compareAndSet(this, null, worker);
     }
 
-    public void release() {
-        semaphore.release();
-        log.trace("{}(Node) released for [node={}]", LoggerUtils.tab(), this);
+    public void clearWorker() {
+        worker = null;
     }
 
     /**
@@ -186,7 +283,7 @@ public class LookAheadNodeV4 {
                 ", C=" + C +
                 ", B=" + B +
                 ", Δ=" + Δ +
-                ", consistency=" + consistency +
+                ", consistency=" + getConsistency() +
                 '}';
     }
 }
@@ -1,9 +1,9 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4;
 
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.DeltaList;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
-import com.google.common.collect.Sets;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -14,16 +14,15 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_UNION_OPERATOR;
-import static at.tugraz.ist.ase.common.ConstraintUtils.split;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
 
 @Slf4j
 public class LookAheadWorkerV4 extends RecursiveAction {
-    private final Set<Constraint> CC;
+    private final ConstraintSet CC;
 
-    private final Set<Constraint> C;
-    private final Set<Constraint> B;
-    private final List<Set<Constraint>> Δ;
+    private final ConstraintSet C;
+    private final ConstraintSet B;
+    private final DeltaList Δ;
     private final int maxLevel;
 
     private final LookupTableV4 lookupTable;
@@ -34,7 +33,7 @@ public class LookAheadWorkerV4 extends RecursiveAction {
     protected LookAheadNodeV4 root = null;
     protected ConcurrentLinkedQueue<LookAheadNodeV4> openNodes = new ConcurrentLinkedQueue<>();
 
-    public LookAheadWorkerV4(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ, int maxLevel,
+    public LookAheadWorkerV4(ConstraintSet C, ConstraintSet B, DeltaList Δ, int maxLevel,
                              @NonNull LookupTableV4 lookupTable,
                              @NonNull CCManager ccManager,
                              @NonNull ForkJoinPool pool) {
@@ -43,7 +42,7 @@ public class LookAheadWorkerV4 extends RecursiveAction {
         this.Δ = Δ;
         this.maxLevel = maxLevel;
 
-        this.CC = Sets.union(B, C);
+        this.CC = B.union(C);
 
         this.lookupTable = lookupTable;
         this.ccManager = ccManager;
@@ -57,7 +56,7 @@ public class LookAheadWorkerV4 extends RecursiveAction {
 //        lookAhead(C, B, Δ, level, maxLevel);
         // create the root node
         root = LookAheadNodeV4.createRoot(C, B, Δ); //incrementCounter(COUNTER_CONSTRUCTED_NODES);
-        lookupTable.put(root.getCC(), root);
+        lookupTable.put(root);
 //        try {
 //            TimeUnit.NANOSECONDS.sleep(10);
 //        } catch (InterruptedException e) {
@@ -76,24 +75,20 @@ public class LookAheadWorkerV4 extends RecursiveAction {
 
             if (!node.isRoot() && node.getArcLabel() // only take into account assumption of B U C consistent
                     && (node.getCC().size() >= (CC.size() - 2))
-                    && !lookupTable.contains(node.getCC().hashCode())
+                    && !lookupTable.contains(node.getKey())
                     && node.getLevel() >= maxLevel
                     && count < pool.getParallelism()) { //
-                lookupTable.putIfAbsent(node.getCC(), node);
+                lookupTable.putIfAbsent(node);
 
-                node = lookupTable.get(node.getCC().hashCode());
+                node = lookupTable.get(node.getKey());
 
-                try {
-                    node.acquire();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+                if (node.getWorker() == null && !node.isStarted()) { // not yet claimed by the main thread
+                    ConsistencyCheckWorkerV4 cc = new ConsistencyCheckWorkerV4(node.getCC(), ccManager, node, lookupTable);
 
-                if (node.getWorker() == null) {
-                    ConsistencyCheckWorkerV4 cc = new ConsistencyCheckWorkerV4(node.getCC(), ccManager, node);
-                    count++;
+                    if (node.trySetWorker(cc)) { // only one worker per consistency check
+                        count++;
 
-                    pool.execute(cc);
+                        pool.execute(cc);
 
 //                ConsistencyCheckResultV3 result = new ConsistencyCheckResultV3(BwithC);
 //                result.setWorker(cc);
@@ -101,10 +96,11 @@ public class LookAheadWorkerV4 extends RecursiveAction {
 
 //                    System.out.println(Thread.currentThread().getId() + " - AddCC: " + node.getCC());
 
-                    log.debug("{}(LookAheadWorker) AddCC [C={}]", LoggerUtils.tab(), node.getCC());
+                        log.debug("{}(LookAheadWorker) AddCC [C={}]", LoggerUtils.tab(), node.getCC());
+                    } else {
+                        cc.dispose();
+                    }
                 }
-
-                node.release();
             }
 
             if (node.getLevel() <= maxLevel) {
@@ -130,7 +126,7 @@ public class LookAheadWorkerV4 extends RecursiveAction {
     }
 
     // Cl, B, newΔ, level + 1, maxLevel,
-    protected List<LookAheadNodeV4> lookAhead(LookAheadNodeV4 parent, Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ) {
+    protected List<LookAheadNodeV4> lookAhead(LookAheadNodeV4 parent, ConstraintSet C, ConstraintSet B, DeltaList Δ) {
         log.debug("{}(LookAheadWorker) LookAhead for [C={}, B={}, Δ={}]", LoggerUtils.tab(), C, B, Δ);
         LoggerUtils.indent();
 
@@ -143,22 +139,18 @@ public class LookAheadWorkerV4 extends RecursiveAction {
 
         // B U C assumed consistent
 //            if (result.isInQueue() || (result.isDone() && result.isConsistent())) {
-        if (!Δ.isEmpty() && Δ.size() > 1 && Δ.get(0).size() == 1 && lookupTable.contains(Sets.union(parent.getCC(), Δ.get(0)).hashCode())) {
+        if (!Δ.isEmpty() && Δ.size() > 1 && Δ.get(0).size() == 1 && lookupTable.contains(parent.getCC().union(Δ.get(0)).key())) {
             log.debug("{}(LookAheadWorker) B U C assumed consistent - C2.3", LoggerUtils.tab());
 
-            Set<Constraint> Δ2 = Δ.get(1);
+            ConstraintSet Δ2 = Δ.get(1);
             // Split(Δ2, Δ2l, Δ2r);
-            Set<Constraint> Δ2l = new LinkedHashSet<>();
-            Set<Constraint> Δ2r = new LinkedHashSet<>();
-            split(Δ2, Δ2l, Δ2r); // split uses addAll
+            ConstraintSet Δ2l = Δ2.leftHalf();
+            ConstraintSet Δ2r = Δ2.rightHalf();
 
-            Set<Constraint> CC = Sets.union(parent.getCC(), Δ2l); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet CC = parent.getCC().union(Δ2l); incrementCounter(COUNTER_UNION_OPERATOR);
             if (CC.size() != root.getCC().size() || !CC.equals(root.getCC())) {
                 // LookAhead(Δ2l, B U C, Δ2r U (Δ \ {Δ1, Δ2})), l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
-                newΔ.remove(0);
-                newΔ.add(0, Δ2r);
+                DeltaList newΔ = Δ.tail().tail().prepend(Δ2r);
 
                 LookAheadNodeV4 node = new LookAheadNodeV4(parent, Δ2l, parent.getCC(), newΔ, true);
                 children.add(node);
@@ -170,12 +162,11 @@ public class LookAheadWorkerV4 extends RecursiveAction {
         } else if (!Δ.isEmpty() && Δ.get(0).size() == 1) {
             log.debug("{}(LookAheadWorker) B U C assumed consistent - C2.2", LoggerUtils.tab());
 
-            Set<Constraint> Δ1 = Δ.get(0);
-            Set<Constraint> CC = Sets.union(parent.getCC(), Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet Δ1 = Δ.get(0);
+            ConstraintSet CC = parent.getCC().union(Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
             if (CC.size() != root.getCC().size() || !CC.equals(root.getCC())) {
                 // LookAhead(Δ1, B U C, Φ, l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
+                DeltaList newΔ = Δ.tail();
 
                 LookAheadNodeV4 node = new LookAheadNodeV4(parent, Δ1, parent.getCC(), newΔ, true);
                 children.add(node);
@@ -188,18 +179,15 @@ public class LookAheadWorkerV4 extends RecursiveAction {
         } else if (!Δ.isEmpty() && Δ.get(0).size() > 1) {
             log.debug("{}(LookAheadWorker) B U C assumed consistent - C2.1", LoggerUtils.tab());
 
-            Set<Constraint> Δ1 = Δ.get(0);
+            ConstraintSet Δ1 = Δ.get(0);
             // Split(Δ1, Δ1l, Δ1r);
-            Set<Constraint> Δ1l = new LinkedHashSet<>();
-            Set<Constraint> Δ1r = new LinkedHashSet<>();
-            split(Δ1, Δ1l, Δ1r);
+            ConstraintSet Δ1l = Δ1.leftHalf();
+            ConstraintSet Δ1r = Δ1.rightHalf();
 
-            Set<Constraint> CC = Sets.union(parent.getCC(), Δ1l); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet CC = parent.getCC().union(Δ1l); incrementCounter(COUNTER_UNION_OPERATOR);
             if (CC.size() != root.getCC().size() || !CC.equals(root.getCC())) {
                 // LookAhead(Δ1l, B U C, Δ1r U (Δ \ {Δ1})), l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
-                newΔ.add(0, Δ1r);
+                DeltaList newΔ = Δ.tail().prepend(Δ1r);
 
                 LookAheadNodeV4 node = new LookAheadNodeV4(parent, Δ1l, parent.getCC(), newΔ, true);
                 children.add(node);
@@ -214,15 +202,13 @@ public class LookAheadWorkerV4 extends RecursiveAction {
         if (sizeC > 1) {
             log.debug("{}(LookAheadWorker) B U C assumed inconsistent - C1.1", LoggerUtils.tab());
             // Split(C, Cl, Cr);
-            Set<Constraint> Cl = new LinkedHashSet<>();
-            Set<Constraint> Cr = new LinkedHashSet<>();
-            split(C, Cl, Cr);
+            ConstraintSet Cl = C.leftHalf();
+            ConstraintSet Cr = C.rightHalf();
 
-            Set<Constraint> CC = Sets.union(B, Cl); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet CC = B.union(Cl); incrementCounter(COUNTER_UNION_OPERATOR);
             if (CC.size() != root.getCC().size() || !CC.equals(root.getCC())) {
                 // LookAhead(Cl, B, Cr U Δ, l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.add(0, Cr);
+                DeltaList newΔ = Δ.prepend(Cr);
 
                 LookAheadNodeV4 node = new LookAheadNodeV4(parent, Cl, B, newΔ, false);
                 children.add(node);
@@ -235,12 +221,11 @@ public class LookAheadWorkerV4 extends RecursiveAction {
         } else if (sizeC == 1 && !Δ.isEmpty() && Δ.get(0).size() == 1) {
             log.debug("{}(LookAheadWorker) B U C assumed inconsistent - C1.2", LoggerUtils.tab());
 
-            Set<Constraint> Δ1 = Δ.get(0);
-            Set<Constraint> CC = Sets.union(B, Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet Δ1 = Δ.get(0);
+            ConstraintSet CC = B.union(Δ1); incrementCounter(COUNTER_UNION_OPERATOR);
             if (CC.size() != root.getCC().size() || !CC.equals(root.getCC())) {
                 // LookAhead(Δ1, B, Δ \ {Δ1}, l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
+                DeltaList newΔ = Δ.tail();
 
                 LookAheadNodeV4 node = new LookAheadNodeV4(parent, Δ1, B, newΔ, false);
                 children.add(node);
@@ -253,18 +238,15 @@ public class LookAheadWorkerV4 extends RecursiveAction {
         } else if (sizeC == 1 && !Δ.isEmpty() && Δ.get(0).size() > 1) {
             log.debug("{}(LookAheadWorker) B U C assumed inconsistent - C1.3", LoggerUtils.tab());
 
-            Set<Constraint> Δ1 = Δ.get(0);
+            ConstraintSet Δ1 = Δ.get(0);
             // Split(Δ1, Δ1l, Δ1r);
-            Set<Constraint> Δ1l = new LinkedHashSet<>();
-            Set<Constraint> Δ1r = new LinkedHashSet<>();
-            split(Δ1, Δ1l, Δ1r);
+            ConstraintSet Δ1l = Δ1.leftHalf();
+            ConstraintSet Δ1r = Δ1.rightHalf();
 
-            Set<Constraint> CC = Sets.union(B, Δ1l); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet CC = B.union(Δ1l); incrementCounter(COUNTER_UNION_OPERATOR);
             if (CC.size() != root.getCC().size() || !CC.equals(root.getCC())) {
                 // LookAhead(Δ1l, B, Δ1r U (Δ \ {Δ1})), l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
-                newΔ.add(0, Δ1r);
+                DeltaList newΔ = Δ.tail().prepend(Δ1r);
 
                 LookAheadNodeV4 node = new LookAheadNodeV4(parent, Δ1l, B, newΔ, false);
                 children.add(node);
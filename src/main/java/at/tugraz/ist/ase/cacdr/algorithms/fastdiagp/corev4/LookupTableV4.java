@@ -1,19 +1,30 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev4;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckTimeEstimator;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConsistencyCache;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSetTrie;
+import at.tugraz.ist.ase.cacdr.algorithms.core.PersistentConsistencyStore;
 import at.tugraz.ist.ase.common.LoggerUtils;
 import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
 
-import static at.tugraz.ist.ase.eval.PerformanceEvaluator.start;
-import static at.tugraz.ist.ase.eval.PerformanceEvaluator.stop;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
 
 @Slf4j
 public class LookupTableV4 {
     public static final String COUNTER_PRUNED_CC = "The number of pruned consistency checks";
+    public static final String COUNTER_CLAIMED_CC = "The number of consistency checks claimed by the main thread";
+    public static final String COUNTER_WAIT_TIMEOUT = "The number of timeouts when waiting for a consistency check";
     public static final String COUNTER_SUPERSET = "The number of superset";
     public static final String COUNTER_SUBSET = "The number of subset";
     public static final String TIMER_LOOKUP_ALTERNATIVE = "The time spent in lookup alternative";
@@ -22,46 +33,175 @@ public class LookupTableV4 {
 
     /**
      * LookupTable holds the consistency of consistency checks
-     * using a Map of <hashcode of a constraint set, the consistency of the constraint set>
+     * using a Map of <canonical key of a constraint set, the consistency of the constraint set>
      */
-    protected final ConcurrentMap<Integer, LookAheadNodeV4> lookupTable = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<CCKey, LookAheadNodeV4> lookupTable = new ConcurrentHashMap<>();
+
+    /**
+     * Subset/superset indexes of the done consistency checks, used to find alternatives
+     */
+    protected final ConstraintSetTrie<LookAheadNodeV4> consistentSets = new ConstraintSetTrie<>();
+    protected final ConstraintSetTrie<LookAheadNodeV4> inconsistentSets = new ConstraintSetTrie<>();
+
+    @Getter
+    private final ConstraintIndex index;
+
+    /**
+     * Estimates the duration of a consistency check, to decide how long to wait for a running consistency check
+     */
+    @Getter
+    private final CheckTimeEstimator checkTimeEstimator = new CheckTimeEstimator();
+
+    /**
+     * Optional cache of consistencies, which outlives the LookupTable, null if not used
+     */
+    @Getter @Setter
+    private ConsistencyCache consistencyCache = null;
+    /**
+     * Optional persistent store of consistencies, which outlives the process, null if not used
+     */
+    @Getter @Setter
+    private PersistentConsistencyStore consistencyStore = null;
 
     private final Semaphore semaphore = new Semaphore(1); // already try fair=true
 
-    public boolean contains(int hashCode) {
-        return lookupTable.containsKey(hashCode);
+    public LookupTableV4(@NonNull ConstraintIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns the canonical key of the given constraint set.
+     */
+    public CCKey keyOf(@NonNull Set<Constraint> C) {
+        return index.keyOf(C);
+    }
+
+    public boolean contains(CCKey key) {
+        return lookupTable.containsKey(key);
     }
 
-    public LookAheadNodeV4 get(int hashCode) {
-        return lookupTable.get(hashCode);
+    public LookAheadNodeV4 get(CCKey key) {
+        return lookupTable.get(key);
     }
 
-    public Boolean getConsistency(int hashCode) throws ExecutionException, InterruptedException {
+    /**
+     * Returns the consistency of the given constraint set. If the consistency check is running, waits for
+     * the estimated remaining time of the check plus the estimated time of a check on the main thread.
+     * Returns null if the consistency check has not been started yet or takes longer than expected.
+     */
+    public Boolean getConsistency(CCKey key) throws ExecutionException, InterruptedException {
         start(TIMER_LOOKUP_GET);
-        LookAheadNodeV4 node = lookupTable.get(hashCode);
-        Boolean consistency = null;
-        if (node.getWorker() == null || node.getWorker().isDone()) {
-            consistency = node.getConsistency();
-        } else {
+        LookAheadNodeV4 node = lookupTable.get(key);
+        Boolean consistency = node.getConsistency();
+        if (consistency == null && node.isStarted()) { // wait for the running consistency check
+            long waitTime = checkTimeEstimator.waitTime(node.getStartTime());
             try {
-                consistency = node.getWorker().get(5, TimeUnit.MILLISECONDS);
-            } catch (RuntimeException e) {
+                consistency = node.getFuture().get(waitTime, TimeUnit.NANOSECONDS);
             } catch (TimeoutException e) {
-                log.trace("{}(LookupTable-get) Timeout when waiting for get()", LoggerUtils.tab());
+                incrementCounter(COUNTER_WAIT_TIMEOUT);
+                log.trace("{}(LookupTable-get) Timeout when waiting for get() [waitTime={}]", LoggerUtils.tab(), waitTime);
             }
         }
         stop(TIMER_LOOKUP_GET);
         return consistency;
     }
 
-    public void put(Set<Constraint> C, LookAheadNodeV4 result) {
-        lookupTable.put(C.hashCode(), result);
-        log.debug("{}(LookupTable-put) Put to LookupTable for [C={}]", LoggerUtils.tab(), C);
+    /**
+     * Claims a consistency check, which has not been started by a worker yet, for the main thread,
+     * and cancels its worker.
+     * @return true if the calling thread has to check the consistency and set the result
+     */
+    public boolean claim(CCKey key) {
+        LookAheadNodeV4 node = lookupTable.get(key);
+        if (!node.tryStart()) { // done or claimed by a worker
+            return false;
+        }
+
+        incrementCounter(COUNTER_CLAIMED_CC);
+        ConsistencyCheckWorkerV4 worker = node.getWorker();
+        if (worker != null && worker.cancel(false)) {
+            incrementCounter(COUNTER_PRUNED_CC);
+        }
+        log.debug("{}(LookupTable-claim) claimed [C={}]", LoggerUtils.tab(), node.getCC());
+        return true;
     }
 
-    public void putIfAbsent(Set<Constraint> C, LookAheadNodeV4 result) {
-        lookupTable.putIfAbsent(C.hashCode(), result);
-        log.debug("{}(LookupTable-putIfAbsent) Put to LookupTable for [C={}]", LoggerUtils.tab(), C);
+    /**
+     * Returns the consistency of the given constraint set checked in a previous diagnosis (consistency cache)
+     * or in a previous run (persistent store), or null if it is unknown.
+     */
+    public Boolean getKnownConsistency(CCKey key) {
+        Boolean consistency = consistencyCache != null ? consistencyCache.get(key) : null;
+        if (consistency == null && consistencyStore != null) {
+            consistency = consistencyStore.get(key);
+            if (consistency != null && consistencyCache != null) {
+                consistencyCache.put(key, consistency, 0L);
+            }
+        }
+        return consistency;
+    }
+
+    /**
+     * Adds the consistency of a done consistency check to the consistency cache and the persistent store, if used.
+     */
+    public void recordConsistency(CCKey key, boolean consistent, long checkTime) {
+        if (consistencyCache != null) {
+            consistencyCache.put(key, consistent, checkTime);
+        }
+        if (consistencyStore != null) {
+            consistencyStore.put(key, consistent);
+        }
+    }
+
+    public void put(LookAheadNodeV4 result) {
+        lookupTable.put(result.getKey(), result);
+        log.debug("{}(LookupTable-put) Put to LookupTable for [C={}]", LoggerUtils.tab(), result.getCC());
+    }
+
+    public void putIfAbsent(LookAheadNodeV4 result) {
+        if (lookupTable.putIfAbsent(result.getKey(), result) == null) {
+            log.debug("{}(LookupTable-putIfAbsent) Put to LookupTable for [C={}]", LoggerUtils.tab(), result.getCC());
+
+            Boolean known = getKnownConsistency(result.getKey()); // checked in a previous diagnosis or run
+            if (known != null && result.setConsistency(known)) {
+                putDone(result);
+            }
+        }
+    }
+
+    /**
+     * Adds a done consistency check to the subset/superset indexes.
+     */
+    public void putDone(LookAheadNodeV4 result) {
+        recordConsistency(result.getKey(), result.getConsistency(), System.nanoTime() - result.getStartTime());
+        if (result.getConsistency()) {
+            consistentSets.put(result.getCC(), result);
+        } else {
+            inconsistentSets.put(result.getCC(), result);
+        }
+    }
+
+    /**
+     * Returns a done consistency check which implies the consistency of C,
+     * i.e., a consistent superset or an inconsistent subset of C, or null if there is no such check.
+     */
+    public LookAheadNodeV4 getAlternativeSet(ConstraintSet C) {
+        start(TIMER_LOOKUP_ALTERNATIVE);
+
+        LookAheadNodeV4 result = consistentSets.findSupersetOf(C);
+        if (result != null) {
+            incrementCounter(COUNTER_SUPERSET);
+            log.debug("{}(LookupTable-alternative) return superset [superset={}]", LoggerUtils.tab(), result.getCC());
+        } else {
+            result = inconsistentSets.findSubsetOf(C);
+            if (result != null) {
+                incrementCounter(COUNTER_SUBSET);
+                log.debug("{}(LookupTable-alternative) return subset [subset={}]", LoggerUtils.tab(), result.getCC());
+            }
+        }
+
+        stop(TIMER_LOOKUP_ALTERNATIVE);
+        return result;
     }
 
     public void clear() {
@@ -71,6 +211,9 @@ public class LookupTableV4 {
             throw new RuntimeException(e);
         }
         lookupTable.clear();
+        consistentSets.clear();
+        inconsistentSets.clear();
+        checkTimeEstimator.reset();
         semaphore.release();
     }
 
@@ -84,7 +227,7 @@ public class LookupTableV4 {
         if (log.isTraceEnabled()) {
             final StringBuilder sb = new StringBuilder(message);
             sb.append("\n size: ").append(lookupTable.size());
-            for (Map.Entry<Integer, LookAheadNodeV4> entry : lookupTable.entrySet()) {
+            for (Map.Entry<CCKey, LookAheadNodeV4> entry : lookupTable.entrySet()) {
                 String key = entry.getKey().toString();
                 LookAheadNodeV4 result = entry.getValue();
                 sb.append('\n').append("key: ").append(key).append("; ").append(result.getC())
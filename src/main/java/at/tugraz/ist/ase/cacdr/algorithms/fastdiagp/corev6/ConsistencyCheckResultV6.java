@@ -1,81 +1,217 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.CCSTATE;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
-import java.util.concurrent.Semaphore;
-
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The result of a consistency check, shared by the main thread, the lookahead workers and the checker workers.
+ *
+ * The status and the consistency are encoded in a single state word, which moves from IN_QUEUE to IN_PROGRESS
+ * (claimed by a thread) to DONE_CONSISTENT or DONE_INCONSISTENT, and is only updated by CAS.
+ * Hence, claiming and completing a consistency check never blocks.
+ * A consistency check can also move from IN_QUEUE to DONE directly, if its consistency is inferred.
+ * A worker which was stopped by its budget or cancelled moves the consistency check from IN_PROGRESS to UNKNOWN,
+ * from which it can be claimed again, e.g., by the main thread.
+ *
+ * Each attempt to check the consistency has its own future: the one of a stopped attempt completes with null,
+ * so that its waiters give up at once, and claiming the check again installs a new future for the next attempt.
+ */
 @Slf4j
 public class ConsistencyCheckResultV6 {
+    private static final int IN_QUEUE = 0;
+    private static final int IN_PROGRESS = 1;
+    private static final int DONE_CONSISTENT = 2;
+    private static final int DONE_INCONSISTENT = 3;
+    private static final int UNKNOWN = 4;
+
+    private static final VarHandle STATE;
+    private static final VarHandle WORKER;
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(ConsistencyCheckResultV6.class, "state", int.class);
+            WORKER = lookup.findVarHandle(ConsistencyCheckResultV6.class, "worker", ConsistencyCheckWorkerV6.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     @Getter
-    private final Set<Constraint> C;
+    private final ConstraintSet C;
     @Getter
-    private final Integer hashCode;
+    private final CCKey key;
 
-    @Getter
-    private boolean consistent;
-    @Getter @Setter
-    private CCSTATE status;
-    private final Semaphore semaphore;
+    private volatile int state = IN_QUEUE;
 
     @Getter
-    private long threadId = -1;
+    private volatile long threadId = -1;
 
-    @Getter @Setter
-    private ConsistencyCheckWorkerV6 worker = null;
+    @Getter
+    private volatile ConsistencyCheckWorkerV6 worker = null;
 
-    public ConsistencyCheckResultV6(@NonNull Set<Constraint> C) {
+    /**
+     * The future of the current attempt, completed with the consistency when the consistency check is done,
+     * or with null when the attempt is stopped
+     */
+    @Getter
+    private volatile CompletableFuture<Boolean> future = new CompletableFuture<>();
+    /**
+     * The time (System.nanoTime) when a thread claimed the consistency check
+     */
+    private volatile long startTime = 0L;
+    /**
+     * True if the result can no longer be used, i.e., a running check should be stopped
+     */
+    private volatile boolean cancelled = false;
+
+    public ConsistencyCheckResultV6(@NonNull ConstraintSet C) {
         this.C = C;
-        this.hashCode = C.hashCode();
-        this.consistent = false;
-        this.status = CCSTATE.IN_QUEUE;
+        this.key = C.key();
 
-        semaphore = new Semaphore(1); // already try fair=true
         log.debug("{}(ConsistencyCheckResult) created A ConsistencyCheckResult for [C={}]", LoggerUtils.tab(), C);
     }
 
-    public void setConsistency(Boolean isConsistent, long threadId) {
-        this.consistent = isConsistent;
+    /**
+     * Claims the consistency check for the calling thread.
+     * @return true if the consistency check was in the queue or unknown, i.e., not claimed by another thread and not done
+     */
+    public boolean tryStart() {
+        if (STATE.compareAndSet(this, IN_QUEUE, IN_PROGRESS)) {
+            startTime = System.nanoTime();
+            return true;
+        }
+        if (STATE.compareAndSet(this, UNKNOWN, IN_PROGRESS)) {
+            startTime = System.nanoTime();
+            // a new attempt, the future of the stopped attempt is completed with null
+            CompletableFuture<Boolean> attempt = new CompletableFuture<>();
+            future = attempt;
+            if (isDone()) { // inferred before the new future was installed
+                attempt.complete(isConsistent());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the consistency, if the consistency check is not yet done.
+     * @return true if the consistency has been set by this call
+     */
+    public boolean setConsistency(boolean isConsistent, long threadId) {
+        int done = isConsistent ? DONE_CONSISTENT : DONE_INCONSISTENT;
+        int s;
+        do {
+            s = state;
+            if (s == DONE_CONSISTENT || s == DONE_INCONSISTENT) {
+                return false;
+            }
+        } while (!STATE.compareAndSet(this, s, done));
+
         this.threadId = threadId;
-        status = CCSTATE.DONE;
+        if (!future.complete(isConsistent)) { // the future of a stopped attempt, i.e., inferred while unknown
+            future = CompletableFuture.completedFuture(isConsistent);
+        }
 
-        log.debug("{}(ConsistencyCheckResult-setConsistency) [C={}, consistency={}, status={}]", LoggerUtils.tab(), C, consistent, status);
+        log.debug("{}(ConsistencyCheckResult-setConsistency) [C={}, consistency={}]", LoggerUtils.tab(), C, isConsistent);
+        return true;
+    }
+
+    /**
+     * Reports that the consistency check was stopped before its consistency was known.
+     * The threads waiting for this attempt get null.
+     * @return true if the consistency check was in progress
+     */
+    public boolean setUnknown() {
+        CompletableFuture<Boolean> attempt = future; // before a new attempt can install its future
+        if (!STATE.compareAndSet(this, IN_PROGRESS, UNKNOWN)) {
+            return false;
+        }
+        attempt.complete(null);
+
+        log.debug("{}(ConsistencyCheckResult-setUnknown) [C={}]", LoggerUtils.tab(), C);
+        return true;
+    }
+
+    /**
+     * Marks the result as no longer needed, so that a running check is stopped.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if a running check should be stopped, i.e., the result is cancelled or already done
+     */
+    public boolean isIrrelevant() {
+        return cancelled || isDone();
+    }
+
+    /**
+     * Sets the worker, if no worker has been set yet.
+     * @return true if the worker has been set by this call
+     */
+    public boolean trySetWorker(@NonNull ConsistencyCheckWorkerV6 worker) {
+        return WORKER.compareAndSet(this, null, worker);
+    }
+
+    public void clearWorker() {
+        worker = null;
     }
 
     public boolean isInQueue() {
-        return status == CCSTATE.IN_QUEUE;
+        return state == IN_QUEUE;
+    }
+
+    public boolean isStarted() {
+        return state != IN_QUEUE;
     }
 
     public boolean isDone() {
-        return status == CCSTATE.DONE;
+        int s = state;
+        return s == DONE_CONSISTENT || s == DONE_INCONSISTENT;
+    }
+
+    public boolean isUnknown() {
+        return state == UNKNOWN;
     }
 
-    public void putbackInQueue() {
-        status = CCSTATE.IN_QUEUE;
+    public boolean isConsistent() {
+        return state == DONE_CONSISTENT;
     }
 
-    public void acquire() throws InterruptedException {
-        semaphore.acquire();
-        log.debug("{}(ConsistencyCheckResult-acquire) acquired for [C={}]", LoggerUtils.tab(), C);
+    public CCSTATE getStatus() {
+        return switch (state) {
+            case IN_QUEUE -> CCSTATE.IN_QUEUE;
+            case IN_PROGRESS -> CCSTATE.IN_PROGRESS;
+            case UNKNOWN -> CCSTATE.UNKNOWN;
+            default -> CCSTATE.DONE;
+        };
     }
 
-    public void release() {
-        semaphore.release();
-        log.debug("{}(ConsistencyCheckResult-release) released for [C={}]", LoggerUtils.tab(), C);
+    /**
+     * Returns the time when the consistency check was claimed.
+     * A thread which has just claimed it may not have written the time yet, then the current time is returned.
+     */
+    public long getStartTime() {
+        long t = startTime;
+        return t != 0L ? t : System.nanoTime();
     }
 
     @Override
     public String toString() {
         return "ConsistencyCheckResult{" +
                 "C='" + C + '\'' +
-                ", isConsistent=" + consistent +
-                ", status=" + status +
+                ", isConsistent=" + isConsistent() +
+                ", status=" + getStatus() +
                 ", threadId=" + threadId +
                 '}';
     }
@@ -1,13 +1,14 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6;
 
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
-import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckBudget;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckOutcome;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.QuickXPlain;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
 import java.util.concurrent.RecursiveTask;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.AbstractFastDiagP.COUNTER_CONSISTENCYCHECKWORKER_CREATION;
@@ -17,24 +18,28 @@ import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
 public class ConsistencyCheckWorkerV6 extends RecursiveTask<Boolean> {
 
     public static final String COUNTER_CONSISTENCY_CHECKS_IN_WORKER = "The number of consistency checks performed by workers";
+    public static final String COUNTER_UNKNOWN_CHECKS_IN_WORKER = "The number of consistency checks stopped in workers";
 
-    private Set<Constraint> C;
+    private static final int MAX_CONFLICT_CHECKS = 32; // the consistency checks of QuickXPlain per conflict
+
+    private ConstraintSet C;
 
     private CCManager ccManager;
     private ConsistencyCheckResultV6 ccResult;
+    private LookupTableV6 lookupTable;
 
-    public ConsistencyCheckWorkerV6(@NonNull Set<Constraint> C,
+    public ConsistencyCheckWorkerV6(@NonNull ConstraintSet C,
                                     @NonNull CCManager ccManager,
-                                    @NonNull ConsistencyCheckResultV6 result) {
+                                    @NonNull ConsistencyCheckResultV6 result,
+                                    @NonNull LookupTableV6 lookupTable) {
         incrementCounter(COUNTER_CONSISTENCYCHECKWORKER_CREATION);
 
         this.ccManager = ccManager;
         this.ccResult = result;
+        this.lookupTable = lookupTable;
 
         this.C = C;
 
-        ccResult.setWorker(this);
-
         log.debug("{}(ConsistencyCheckWorker) Created ConsistencyCheck for [C={}]", LoggerUtils.tab(), C);
     }
 
@@ -45,24 +50,35 @@ public class ConsistencyCheckWorkerV6 extends RecursiveTask<Boolean> {
 
         Boolean consistent = null;
         try {
-            // get a free ChocoConsistencyChecker
-            ChocoConsistencyChecker checker = ccManager.getChecker();
-
-            if (checker == null) {
-                log.error("{}(ConsistencyCheckWorker) No free ChocoConsistencyChecker for [C={}]", LoggerUtils.tab(), C);
-                throw new RuntimeException("No free ChocoConsistencyChecker for " + C);
+            if (!ccResult.tryStart()) { // resolved by monotonicity or claimed by the main thread
+                consistent = ccResult.isDone() ? ccResult.isConsistent() : null;
+            } else {
+                // identify the consistency of the constraint set on a free checker, within the budget,
+                // the check is stopped as soon as its result can no longer be used
+                ConsistencyCheckResultV6 result = ccResult;
+                long startTime = System.nanoTime();
+                CheckOutcome outcome = ccManager.check(C, lookupTable.getCheckBudget(), result::isIrrelevant);
+                consistent = outcome.toConsistency();
+
+                if (consistent == null) { // report the unknown consistency, the main thread checks it itself
+                    incrementCounter(COUNTER_UNKNOWN_CHECKS_IN_WORKER);
+                    result.setUnknown();
+                } else {
+                    lookupTable.getCheckTimeEstimator().record(System.nanoTime() - startTime);
+                    incrementCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
+
+                    if (result.setConsistency(consistent, Thread.currentThread().getId())) {
+                        lookupTable.putDone(result);
+                    }
+                    if (!consistent) {
+                        extractConflict(C);
+                    }
+                }
             }
-
-            // identify the consistency of the constraint set
-            consistent = checker.isConsistent(C);
-            incrementCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
-            ccManager.releaseChecker(checker); // release the checker
-
-            ccResult.setConsistency(consistent, Thread.currentThread().getId());
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
-            ccResult.setWorker(null);
+            ccResult.clearWorker();
             this.dispose();
         }
 
@@ -72,9 +88,30 @@ public class ConsistencyCheckWorkerV6 extends RecursiveTask<Boolean> {
         return consistent;
     }
 
+    /**
+     * Reduces the inconsistent set C to a minimal conflict by QuickXPlain and adds it to the lookup table,
+     * if the lookup table has a conflict background and a checker is free, i.e., QuickXPlain runs on spare checkers.
+     */
+    private void extractConflict(ConstraintSet C) throws InterruptedException {
+        ConstraintSet background = lookupTable.getConflictBackground();
+        if (background == null || !ccManager.hasFreeChecker()) {
+            return;
+        }
+
+        ConstraintSet B = C.difference(C.difference(background)); // the background constraints of C
+        CheckBudget budget = lookupTable.getCheckBudget();
+        QuickXPlain quickXPlain = new QuickXPlain(S -> ccManager.check(S, budget, () -> false), MAX_CONFLICT_CHECKS);
+
+        ConstraintSet conflict = quickXPlain.findConflict(C.difference(B), B);
+        if (conflict != null && conflict.size() < C.size()) {
+            lookupTable.addConflict(conflict);
+        }
+    }
+
     public void dispose() {
         C = null;
         ccManager = null;
         ccResult = null;
+        lookupTable = null;
     }
 }
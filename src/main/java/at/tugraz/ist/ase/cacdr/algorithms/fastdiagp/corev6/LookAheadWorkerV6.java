@@ -1,30 +1,35 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
 import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckOutcome;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.DeltaList;
 import at.tugraz.ist.ase.common.LoggerUtils;
-import at.tugraz.ist.ase.kb.core.Constraint;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.SetUtils;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.AbstractFastDiagP.COUNTER_LOOKAHEAD;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.AbstractFastDiagP.COUNTER_LOOKUP;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_UNION_OPERATOR;
-import static at.tugraz.ist.ase.common.ConstraintUtils.split;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.incrementCounter;
 
+/**
+ * Generates the consistency checks which FastDiag will probably need, and schedules them up to maxLevel.
+ * On the further propagationLevels levels of the lookahead tree (see {@link LookupTableV6#getPropagationLevels()}),
+ * the constraint sets are only propagated on a free checker, which is much cheaper than solving,
+ * and the sets refuted by the propagation are added to the lookup table as inconsistent.
+ */
 @Slf4j
 public class LookAheadWorkerV6 extends RecursiveAction {
-    private final Set<Constraint> C;
-    private final Set<Constraint> B;
-    private final List<Set<Constraint>> Δ;
+    public static final String COUNTER_REFUTED_BY_PROPAGATION = "The number of speculative constraint sets refuted by propagation";
+
+    private final ConstraintSet C;
+    private final ConstraintSet B;
+    private final DeltaList Δ;
     private final int level;
     private final int maxLevel;
 
@@ -32,7 +37,7 @@ public class LookAheadWorkerV6 extends RecursiveAction {
     private final CCManager ccManager;
     private final ForkJoinPool pool;
 
-    public LookAheadWorkerV6(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ, int level, int maxLevel,
+    public LookAheadWorkerV6(ConstraintSet C, ConstraintSet B, DeltaList Δ, int level, int maxLevel,
                              @NonNull LookupTableV6 lookupTable,
                              @NonNull CCManager ccManager,
                              @NonNull ForkJoinPool pool) {
@@ -67,37 +72,36 @@ public class LookAheadWorkerV6 extends RecursiveAction {
     }
 
     // Cl, B, newΔ, level + 1, maxLevel,
-    protected void lookAhead(Set<Constraint> C, Set<Constraint> B, List<Set<Constraint>> Δ, int level, int maxLevel) {
+    protected void lookAhead(ConstraintSet C, ConstraintSet B, DeltaList Δ, int level, int maxLevel) {
         log.debug("{}(LookAheadWorker) LookAhead for [C={}, B={}, Δ={}]", LoggerUtils.tab(), C, B, Δ);
         LoggerUtils.indent();
 
-        // if l < lmax
-        if (level < maxLevel) {
+        // if l < lmax, and the levels of the propagation
+        if (level < maxLevel + lookupTable.getPropagationLevels()) {
 
             // AddCC(B U C)
-            Set<Constraint> BwithC = SetUtils.union(B, C); incrementCounter(COUNTER_UNION_OPERATOR);
+            ConstraintSet BwithC = B.union(C); incrementCounter(COUNTER_UNION_OPERATOR);
 
-            if (!lookupTable.contains(BwithC.hashCode())) {
+            CCKey key = BwithC.key();
+            if (level >= maxLevel) {
+                propagate(BwithC, key);
+            } else if (!lookupTable.contains(key)) {
                 ConsistencyCheckResultV6 result = new ConsistencyCheckResultV6(BwithC);
-                lookupTable.putIfAbsent(BwithC.hashCode(), result);
-
-                result = lookupTable.get(BwithC.hashCode()); incrementCounter(COUNTER_LOOKUP);
+                lookupTable.putIfAbsent(key, result);
 
-                try {
-                    result.acquire();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+                result = lookupTable.get(key); incrementCounter(COUNTER_LOOKUP);
 
-                if (result.getWorker() == null) {
-                    ConsistencyCheckWorkerV6 cc = new ConsistencyCheckWorkerV6(result.getC(), ccManager, result);
-                    pool.execute(cc);
+                if (result.getWorker() == null && result.isInQueue()) { // not yet resolved or claimed
+                    ConsistencyCheckWorkerV6 cc = new ConsistencyCheckWorkerV6(result.getC(), ccManager, result, lookupTable);
+                    if (result.trySetWorker(cc)) { // only one worker per consistency check
+                        pool.execute(cc);
 
-                    log.debug("{}(LookAheadWorker) AddCC [C={}]", LoggerUtils.tab(), result.getC());
+                        log.debug("{}(LookAheadWorker) AddCC [C={}]", LoggerUtils.tab(), result.getC());
 //                    System.out.println("AddCC:" + BwithC);
+                    } else {
+                        cc.dispose();
+                    }
                 }
-
-                result.release();
             }
 
             int sizeC = C.size();
@@ -107,84 +111,70 @@ public class LookAheadWorkerV6 extends RecursiveAction {
             if (sizeC > 1) {
                 log.debug("{}(LookAheadWorker) B U C assumed inconsistent - C1.1", LoggerUtils.tab());
                 // Split(C, Cl, Cr);
-                Set<Constraint> Cl = new LinkedHashSet<>();
-                Set<Constraint> Cr = new LinkedHashSet<>();
-                split(C, Cl, Cr);
+                ConstraintSet Cl = C.leftHalf();
+                ConstraintSet Cr = C.rightHalf();
 
                 // LookAhead(Cl, B, Cr U Δ, l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.add(0, Cr);
+                DeltaList newΔ = Δ.prepend(Cr);
 
                 lookAhead(Cl, B, newΔ, level + 1, maxLevel); incrementCounter(COUNTER_LOOKAHEAD);
 
             } else if (sizeC == 1 && !Δ.isEmpty() && Δ.get(0).size() == 1) {
                 log.debug("{}(LookAheadWorker) B U C assumed inconsistent - C1.2", LoggerUtils.tab());
 
-                Set<Constraint> Δ1 = Δ.get(0);
+                ConstraintSet Δ1 = Δ.get(0);
                 // LookAhead(Δ1, B, Δ \ {Δ1}, l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
+                DeltaList newΔ = Δ.tail();
 
                 lookAhead(Δ1, B, newΔ, level + 1, maxLevel); incrementCounter(COUNTER_LOOKAHEAD);
 
             } else if (sizeC == 1 && !Δ.isEmpty() && Δ.get(0).size() > 1) {
                 log.debug("{}(LookAheadWorker) B U C assumed inconsistent - C1.3", LoggerUtils.tab());
 
-                Set<Constraint> Δ1 = Δ.get(0);
+                ConstraintSet Δ1 = Δ.get(0);
                 // Split(Δ1, Δ1l, Δ1r);
-                Set<Constraint> Δ1l = new LinkedHashSet<>();
-                Set<Constraint> Δ1r = new LinkedHashSet<>();
-                split(Δ1, Δ1l, Δ1r);
+                ConstraintSet Δ1l = Δ1.leftHalf();
+                ConstraintSet Δ1r = Δ1.rightHalf();
 
                 // LookAhead(Δ1l, B, Δ1r U (Δ \ {Δ1})), l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
-                newΔ.add(0, Δ1r);
+                DeltaList newΔ = Δ.tail().prepend(Δ1r);
 
                 lookAhead(Δ1l, B, newΔ, level + 1, maxLevel); incrementCounter(COUNTER_LOOKAHEAD);
             }
 
             // B U C assumed consistent
 //            if (result.isInQueue() || (result.isDone() && result.isConsistent())) {
-            if (!Δ.isEmpty() && Δ.size() > 1 && Δ.get(0).size() == 1 && lookupTable.contains(SetUtils.union(BwithC, Δ.get(0)).hashCode())) {
+            if (!Δ.isEmpty() && Δ.size() > 1 && Δ.get(0).size() == 1 && lookupTable.contains(BwithC.union(Δ.get(0)).key())) {
                 log.debug("{}(LookAheadWorker) B U C assumed consistent - C2.3", LoggerUtils.tab());
 
-                Set<Constraint> Δ2 = Δ.get(1);
+                ConstraintSet Δ2 = Δ.get(1);
                 // Split(Δ2, Δ2l, Δ2r);
-                Set<Constraint> Δ2l = new LinkedHashSet<>();
-                Set<Constraint> Δ2r = new LinkedHashSet<>();
-                split(Δ2, Δ2l, Δ2r); // split uses addAll
+                ConstraintSet Δ2l = Δ2.leftHalf();
+                ConstraintSet Δ2r = Δ2.rightHalf();
 
                 // LookAhead(Δ2l, B U C, Δ2r U (Δ \ {Δ1, Δ2})), l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
-                newΔ.remove(0);
-                newΔ.add(0, Δ2r);
+                DeltaList newΔ = Δ.tail().tail().prepend(Δ2r);
 
                 lookAhead(Δ2l, BwithC, newΔ, level + 1, maxLevel); incrementCounter(COUNTER_LOOKAHEAD);
             } else if (!Δ.isEmpty() && Δ.get(0).size() == 1) {
                 log.debug("{}(LookAheadWorker) B U C assumed consistent - C2.2", LoggerUtils.tab());
 
-                Set<Constraint> Δ1 = Δ.get(0);
+                ConstraintSet Δ1 = Δ.get(0);
                 // LookAhead(Δ1, B U C, Φ, l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
+                DeltaList newΔ = Δ.tail();
 
                 lookAhead(Δ1, BwithC, newΔ, level + 1, maxLevel); incrementCounter(COUNTER_LOOKAHEAD);
 
             } else if (!Δ.isEmpty() && Δ.get(0).size() > 1) {
                 log.debug("{}(LookAheadWorker) B U C assumed consistent - C2.1", LoggerUtils.tab());
 
-                Set<Constraint> Δ1 = Δ.get(0);
+                ConstraintSet Δ1 = Δ.get(0);
                 // Split(Δ1, Δ1l, Δ1r);
-                Set<Constraint> Δ1l = new LinkedHashSet<>();
-                Set<Constraint> Δ1r = new LinkedHashSet<>();
-                split(Δ1, Δ1l, Δ1r);
+                ConstraintSet Δ1l = Δ1.leftHalf();
+                ConstraintSet Δ1r = Δ1.rightHalf();
 
                 // LookAhead(Δ1l, B U C, Δ1r U (Δ \ {Δ1})), l + 1);
-                List<Set<Constraint>> newΔ = new ArrayList<>(Δ);
-                newΔ.remove(0);
-                newΔ.add(0, Δ1r);
+                DeltaList newΔ = Δ.tail().prepend(Δ1r);
 
                 lookAhead(Δ1l, BwithC, newΔ, level + 1, maxLevel); incrementCounter(COUNTER_LOOKAHEAD);
             }
@@ -195,4 +185,21 @@ public class LookAheadWorkerV6 extends RecursiveAction {
 
         LoggerUtils.outdent();
     }
+
+    /**
+     * Propagates B U C on a free checker, if any, and adds it to the lookup table if the propagation fails
+     */
+    private void propagate(ConstraintSet BwithC, CCKey key) {
+        if (lookupTable.contains(key) || !ccManager.hasFreeChecker()) {
+            return;
+        }
+        try {
+            if (ccManager.propagate(BwithC) == CheckOutcome.INCONSISTENT && lookupTable.addInconsistent(BwithC)) {
+                incrementCounter(COUNTER_REFUTED_BY_PROPAGATION);
+                log.debug("{}(LookAheadWorker) refuted by propagation [C={}]", LoggerUtils.tab(), BwithC);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -1,17 +1,35 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6;
 
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckBudget;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckTimeEstimator;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConsistencyCache;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSetTrie;
+import at.tugraz.ist.ase.cacdr.algorithms.core.PersistentConsistencyStore;
+import at.tugraz.ist.ase.cacdr.algorithms.core.WitnessCache;
 import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 
-import static at.tugraz.ist.ase.eval.PerformanceEvaluator.start;
-import static at.tugraz.ist.ase.eval.PerformanceEvaluator.stop;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
 
 @Slf4j
 public class LookupTableV6 {
     public static final String COUNTER_PRUNED_CC = "The number of pruned consistency checks";
+    public static final String COUNTER_INFERRED_CC = "The number of consistency checks inferred by monotonicity";
+    public static final String COUNTER_CLAIMED_CC = "The number of consistency checks claimed by the main thread";
+    public static final String COUNTER_WAIT_TIMEOUT = "The number of timeouts when waiting for a consistency check";
+    public static final String COUNTER_UNKNOWN_CC = "The number of lookups of consistency checks stopped by a worker";
+    public static final String COUNTER_CONFLICTS = "The number of conflicts added to the lookup table";
     public static final String COUNTER_SUPERSET = "The number of superset";
     public static final String COUNTER_SUBSET = "The number of subset";
     public static final String TIMER_LOOKUP_ALTERNATIVE = "The time spent in lookup alternative";
@@ -20,19 +38,82 @@ public class LookupTableV6 {
 
     /**
      * LookupTable holds the consistency of consistency checks
-     * using a Map of <hashcode of a constraint set, the consistency of the constraint set>
+     * using a Map of <canonical key of a constraint set, the consistency of the constraint set>
      */
-    protected final ConcurrentMap<Integer, ConsistencyCheckResultV6> lookupTable = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<CCKey, ConsistencyCheckResultV6> lookupTable = new ConcurrentHashMap<>();
+
+    /**
+     * Subset/superset indexes of the done consistency checks, used to find alternatives
+     */
+    protected final ConstraintSetTrie<ConsistencyCheckResultV6> consistentSets = new ConstraintSetTrie<>();
+    protected final ConstraintSetTrie<ConsistencyCheckResultV6> inconsistentSets = new ConstraintSetTrie<>();
+    /**
+     * Index of the consistency checks which are not done yet, used to resolve them by monotonicity
+     */
+    protected final ConstraintSetTrie<ConsistencyCheckResultV6> pendingSets = new ConstraintSetTrie<>();
+
+    @Getter
+    private final ConstraintIndex index;
+
+    /**
+     * Estimates the duration of a consistency check, to decide how long to wait for a running consistency check
+     */
+    @Getter
+    private final CheckTimeEstimator checkTimeEstimator = new CheckTimeEstimator();
+
+    /**
+     * Optional cache of consistencies, which outlives the LookupTable, null if not used
+     */
+    @Getter @Setter
+    private ConsistencyCache consistencyCache = null;
+    /**
+     * Optional persistent store of consistencies, which outlives the process, null if not used
+     */
+    @Getter @Setter
+    private PersistentConsistencyStore consistencyStore = null;
+    /**
+     * Optional cache of the solutions of consistent checks, which proves consistencies without solving, null if not used
+     */
+    @Getter @Setter
+    private WitnessCache witnessCache = null;
+    /**
+     * The background of the conflicts extracted by the workers, i.e., the constraints which are part of every
+     * consistency check, or null if the workers should not extract conflicts
+     */
+    @Getter @Setter
+    private ConstraintSet conflictBackground = null;
+    /**
+     * The budget of the consistency checks of the workers
+     */
+    @Getter @Setter @NonNull
+    private CheckBudget checkBudget = CheckBudget.UNLIMITED;
+    /**
+     * The number of levels below the maximal level of the lookahead, whose constraint sets are only propagated
+     * (the first stage of a two-stage check) instead of being scheduled, 0 to stop the lookahead at the maximal level
+     */
+    @Getter @Setter
+    private int propagationLevels = 0;
 
     private final Semaphore semaphore = new Semaphore(1); // already try fair=true
 
-    public boolean contains(int hashCode) {
-        return lookupTable.containsKey(hashCode);
+    public LookupTableV6(@NonNull ConstraintIndex index) {
+        this.index = index;
     }
 
-    public ConsistencyCheckResultV6 get(int hashCode) {
+    /**
+     * Returns the canonical key of the given constraint set.
+     */
+    public CCKey keyOf(@NonNull Set<Constraint> C) {
+        return index.keyOf(C);
+    }
+
+    public boolean contains(CCKey key) {
+        return lookupTable.containsKey(key);
+    }
+
+    public ConsistencyCheckResultV6 get(CCKey key) {
         start(TIMER_LOOKUP_GET);
-        ConsistencyCheckResultV6 result = lookupTable.get(hashCode);
+        ConsistencyCheckResultV6 result = lookupTable.get(key);
         stop(TIMER_LOOKUP_GET);
         return result;
     }
@@ -40,34 +121,210 @@ public class LookupTableV6 {
     /**
      * Returns the result of the consistency check for the given constraint set.
      * Usually called after checking the existence of the consistency check using the contains function.
-     * @param hashCode - the hashcode of the constraint set
+     * If the consistency check is running, waits for the estimated remaining time of the check
+     * plus the estimated time of a check on the main thread.
+     * Returns null if the consistency check has not been started yet or takes longer than expected,
+     * i.e., the main thread should rather check the consistency itself.
+     * @param key - the canonical key of the constraint set
      */
-    public Boolean getConsistency(int hashCode) throws ExecutionException, InterruptedException {
+    public Boolean getConsistency(CCKey key) throws ExecutionException, InterruptedException {
         start(TIMER_LOOKUP_GET);
-        ConsistencyCheckResultV6 result = lookupTable.get(hashCode); // find the ConsistencyCheckResult for the given constraint set
+        ConsistencyCheckResultV6 result = lookupTable.get(key); // find the ConsistencyCheckResult for the given constraint set
         Boolean consistency = null;
-        // if the worker for the ConsistencyCheck is done, return the consistency
-        if (result.getWorker() == null || result.getWorker().isDone()) {
+        if (result.isDone()) {
             consistency = result.isConsistent();
-        } else { // if the worker for the ConsistencyCheck is not done, wait for it to finish
+        } else if (result.isUnknown()) { // stopped by its worker
+            incrementCounter(COUNTER_UNKNOWN_CC);
+            log.trace("{}(LookupTable-getConsistency) Unknown [key={}]", LoggerUtils.tab(), key);
+        } else if (result.isStarted()) { // wait for the running consistency check
+            long waitTime = checkTimeEstimator.waitTime(result.getStartTime());
             try {
-                consistency = result.getWorker().get(5, TimeUnit.MILLISECONDS);
+                consistency = result.getFuture().get(waitTime, TimeUnit.NANOSECONDS);
             } catch (TimeoutException e) {
-                log.trace("{}(LookupTable-getConsistency) [hashCode={}, consistency={}]", LoggerUtils.tab(), hashCode, consistency);
+                incrementCounter(COUNTER_WAIT_TIMEOUT);
+                log.trace("{}(LookupTable-getConsistency) Timeout [key={}, waitTime={}]", LoggerUtils.tab(), key, waitTime);
             }
         }
         stop(TIMER_LOOKUP_GET);
         return consistency;
     }
 
-    public void put(int hashCode, ConsistencyCheckResultV6 result) {
-        lookupTable.put(hashCode, result);
+    /**
+     * Claims a consistency check, which has not been started by a worker yet or was stopped by its worker,
+     * for the main thread, and cancels its worker.
+     * @return true if the calling thread has to check the consistency and set the result
+     */
+    public boolean claim(CCKey key) {
+        ConsistencyCheckResultV6 result = lookupTable.get(key);
+        if (!result.tryStart()) { // done or claimed by a worker
+            return false;
+        }
+
+        incrementCounter(COUNTER_CLAIMED_CC);
+        ConsistencyCheckWorkerV6 worker = result.getWorker();
+        if (worker != null && worker.cancel(false)) {
+            incrementCounter(COUNTER_PRUNED_CC);
+        }
+        log.debug("{}(LookupTable-claim) claimed [C={}]", LoggerUtils.tab(), result.getC());
+        return true;
+    }
+
+    /**
+     * Puts the result to the LookupTable. If the consistency of the result follows from
+     * a done consistency check, the result is resolved immediately.
+     */
+    public void put(CCKey key, ConsistencyCheckResultV6 result) {
+        lookupTable.put(key, result);
         log.debug("{}(LookupTable-put) Put to LookupTable for [C={}]", LoggerUtils.tab(), result.getC());
+
+        addPending(result);
+    }
+
+    public void putIfAbsent(CCKey key, ConsistencyCheckResultV6 result) {
+        if (lookupTable.putIfAbsent(key, result) == null) {
+            log.debug("{}(LookupTable-putIfAbsent) Put to LookupTable for [C={}]", LoggerUtils.tab(), result.getC());
+
+            addPending(result);
+        }
     }
 
-    public void putIfAbsent(int hashCode, ConsistencyCheckResultV6 result) {
-        lookupTable.putIfAbsent(hashCode, result);
-        log.debug("{}(LookupTable-putIfAbsent) Put to LookupTable for [C={}]", LoggerUtils.tab(), result.getC());
+    private void addPending(ConsistencyCheckResultV6 result) {
+        if (result.isDone()) {
+            return;
+        }
+
+        Boolean known = getKnownConsistency(result.getKey());
+        if (known == null && witnessCache != null && witnessCache.covers(result.getC())) {
+            known = true; // a stored solution satisfies all constraints
+        }
+        if (known != null) {
+            if (result.setConsistency(known, Thread.currentThread().getId())) {
+                putDone(result);
+            }
+            return;
+        }
+
+        // index first, so that a concurrently finished check either sees this result or is seen by it
+        pendingSets.put(result.getC(), result);
+
+        ConsistencyCheckResultV6 alternative = getAlternativeSet(result.getC());
+        if (alternative != null) {
+            infer(result, alternative.isConsistent());
+        }
+    }
+
+    /**
+     * Adds a done consistency check to the subset/superset indexes, and resolves the pending consistency checks
+     * whose consistency follows from it, i.e., the subsets of a consistent set and the supersets of an inconsistent set.
+     */
+    public void putDone(ConsistencyCheckResultV6 result) {
+        pendingSets.remove(result.getC(), result);
+        recordConsistency(result.getKey(), result.isConsistent(), System.nanoTime() - result.getStartTime());
+
+        if (result.isConsistent()) {
+            consistentSets.put(result.getC(), result);
+            pendingSets.forEachSubsetOf(result.getC(), pending -> infer(pending, true));
+        } else {
+            inconsistentSets.put(result.getC(), result);
+            pendingSets.forEachSupersetOf(result.getC(), pending -> infer(pending, false));
+        }
+    }
+
+    /**
+     * Adds a conflict, i.e., an inconsistent set, as a done consistency check. Hence, the conflict is part of the index
+     * of the inconsistent sets, which serves as the conflict store: each pending and each future consistency check
+     * of a superset of the conflict is resolved as inconsistent without solving.
+     */
+    public void addConflict(@NonNull ConstraintSet conflict) {
+        if (addInconsistent(conflict)) {
+            incrementCounter(COUNTER_CONFLICTS);
+            log.debug("{}(LookupTable-addConflict) [conflict={}]", LoggerUtils.tab(), conflict);
+        }
+    }
+
+    /**
+     * Adds a constraint set known to be inconsistent, e.g., refuted by propagation, as a done consistency check
+     * @return true if the set was not known to be inconsistent before
+     */
+    public boolean addInconsistent(@NonNull ConstraintSet S) {
+        ConsistencyCheckResultV6 result = new ConsistencyCheckResultV6(S);
+        ConsistencyCheckResultV6 existing = lookupTable.putIfAbsent(result.getKey(), result);
+        if (existing != null) {
+            result = existing;
+        }
+        if (result.setConsistency(false, Thread.currentThread().getId())) {
+            putDone(result);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the consistency checked in a previous diagnosis (consistency cache) or
+     * in a previous run (persistent store), or null if it is unknown.
+     */
+    private Boolean getKnownConsistency(CCKey key) {
+        Boolean consistency = consistencyCache != null ? consistencyCache.get(key) : null;
+        if (consistency == null && consistencyStore != null) {
+            consistency = consistencyStore.get(key);
+            if (consistency != null && consistencyCache != null) {
+                consistencyCache.put(key, consistency, 0L);
+            }
+        }
+        return consistency;
+    }
+
+    /**
+     * Adds the consistency of a done consistency check to the consistency cache and the persistent store, if used.
+     */
+    private void recordConsistency(CCKey key, boolean consistent, long checkTime) {
+        if (consistencyCache != null) {
+            consistencyCache.put(key, consistent, checkTime);
+        }
+        if (consistencyStore != null) {
+            consistencyStore.put(key, consistent);
+        }
+    }
+
+    /**
+     * Resolves a pending consistency check with the inferred consistency and cancels its worker if not yet started.
+     */
+    private void infer(ConsistencyCheckResultV6 pending, boolean consistent) {
+        if (pending.setConsistency(consistent, Thread.currentThread().getId())) {
+            incrementCounter(COUNTER_INFERRED_CC);
+            log.debug("{}(LookupTable-infer) inferred [C={}, consistency={}]", LoggerUtils.tab(), pending.getC(), consistent);
+
+            ConsistencyCheckWorkerV6 worker = pending.getWorker();
+            if (worker != null && worker.cancel(false)) {
+                incrementCounter(COUNTER_PRUNED_CC);
+                log.debug("{}(LookupTable-infer) cancelled [C={}]", LoggerUtils.tab(), pending.getC());
+            }
+        }
+
+        pendingSets.remove(pending.getC(), pending);
+    }
+
+    /**
+     * Returns a done consistency check which implies the consistency of C,
+     * i.e., a consistent superset or an inconsistent subset of C, or null if there is no such check.
+     */
+    public ConsistencyCheckResultV6 getAlternativeSet(ConstraintSet C) {
+        start(TIMER_LOOKUP_ALTERNATIVE);
+
+        ConsistencyCheckResultV6 result = consistentSets.findSupersetOf(C);
+        if (result != null) {
+            incrementCounter(COUNTER_SUPERSET);
+            log.debug("{}(LookupTable-alternative) return superset [superset={}]", LoggerUtils.tab(), result.getC());
+        } else {
+            result = inconsistentSets.findSubsetOf(C);
+            if (result != null) {
+                incrementCounter(COUNTER_SUBSET);
+                log.debug("{}(LookupTable-alternative) return subset [subset={}]", LoggerUtils.tab(), result.getC());
+            }
+        }
+
+        stop(TIMER_LOOKUP_ALTERNATIVE);
+        return result;
     }
 
     public void clear() {
@@ -76,7 +333,12 @@ public class LookupTableV6 {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        lookupTable.values().forEach(ConsistencyCheckResultV6::cancel); // stops the running checks
         lookupTable.clear();
+        consistentSets.clear();
+        inconsistentSets.clear();
+        pendingSets.clear();
+        checkTimeEstimator.reset();
         semaphore.release();
     }
 
@@ -94,7 +356,7 @@ public class LookupTableV6 {
         if (log.isTraceEnabled()) {
             final StringBuilder sb = new StringBuilder(message);
             sb.append("\n size: ").append(lookupTable.size());
-            for (Map.Entry<Integer, ConsistencyCheckResultV6> entry : lookupTable.entrySet()) {
+            for (Map.Entry<CCKey, ConsistencyCheckResultV6> entry : lookupTable.entrySet()) {
                 String key = entry.getKey().toString();
                 ConsistencyCheckResultV6 result = entry.getValue();
                 sb.append('\n').append("key: ").append(key).append("; ").append(result);
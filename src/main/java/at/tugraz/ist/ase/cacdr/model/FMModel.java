@@ -48,6 +48,10 @@ public class FMModel extends CDRModel implements IChocoModel {
     @Getter
     private final boolean reversedConstraintsOrder;
 
+    private final Object templateLock = new Object(); // shared with the clones
+    private FMModelTemplate template; // guarded by templateLock
+    private boolean templateCompiled = false; // guarded by templateLock
+
     /**
      * A constructor
      * On the basic of a given {@link FeatureModel}, it creates
@@ -121,6 +125,14 @@ public class FMModel extends CDRModel implements IChocoModel {
         log.debug("{}<<< Model {} initialized", LoggerUtils.tab(), getName());
     }
 
+    /**
+     * Returns the user requirements of the model, whose constraints follow the constraints of the feature model
+     * in the possibly faulty constraints, unless the order is reversed
+     */
+    public List<UserRequirement> getUserRequirements() {
+        return combination != null ? combination.getUserRequirements() : Collections.emptyList();
+    }
+
     /**
      * Translates user requirements to Choco constraints.
      */
@@ -130,7 +142,36 @@ public class FMModel extends CDRModel implements IChocoModel {
         }
     }
 
+    /**
+     * Creates a clone from the {@link FMModelTemplate} of this model, which is compiled on the first call.
+     * If the model cannot be compiled, the clone is created from the feature model.
+     * Since a template clone has no {@link FMKB}, its getFmkb() returns null.
+     */
     public Object clone() throws CloneNotSupportedException {
+        FMModelTemplate template = getTemplate();
+        if (template == null) {
+            return cloneFromFeatureModel();
+        }
+
+        FMModel clone = (FMModel) super.clone();
+
+        List<Constraint> C = new LinkedList<>();
+        List<Constraint> B = new LinkedList<>();
+        clone.fmkb = null;
+        clone.model = template.instantiate(C, B);
+
+        clone.setPossiblyFaultyConstraints(C);
+        if (isRootConstraints()) {
+            clone.setCorrectConstraints(B);
+        }
+
+        return clone;
+    }
+
+    /**
+     * Creates a clone by translating the feature model and the user requirements again.
+     */
+    public FMModel cloneFromFeatureModel() throws CloneNotSupportedException {
         FMModel clone = (FMModel) super.clone();
 
         clone.fmkb = new FMKB(featureModel, true);
@@ -141,13 +182,30 @@ public class FMModel extends CDRModel implements IChocoModel {
         return clone;
     }
 
+    /**
+     * Returns the template of this model, or null if the model cannot be compiled.
+     * The template is compiled from a private clone, since this model could be in use by a checker.
+     */
+    public FMModelTemplate getTemplate() throws CloneNotSupportedException {
+        synchronized (templateLock) {
+            if (!templateCompiled) {
+                FMModel source = cloneFromFeatureModel();
+                template = FMModelTemplate.compile(source);
+                templateCompiled = true;
+            }
+            return template;
+        }
+    }
+
     @Override
     public void dispose() {
         super.dispose();
         model = null;
         featureModel = null;
-        fmkb.dispose();
-        fmkb = null;
+        if (fmkb != null) {
+            fmkb.dispose();
+            fmkb = null;
+        }
         combination = null;
         translator = null;
     }
@@ -0,0 +1,446 @@
+package at.tugraz.ist.ase.cacdr.model;
+
+import at.tugraz.ist.ase.common.LoggerUtils;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.extension.Tuples;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.Variable;
+
+import java.util.*;
+
+/**
+ * A compiled form of an initialized {@link FMModel}, which creates the Choco model of a clone
+ * without translating the feature model and the user requirements again.
+ *
+ * Each {@link Constraint} is compiled once into the tuples of values allowed by its Choco constraints
+ * (a table), by enumerating the solutions of the Choco constraints on their variables. Since the Choco
+ * constraints of feature models only link a few Boolean variables, the tables are small. The negation of
+ * a constraint is the table of the forbidden tuples.
+ *
+ * A model can only be compiled if all its constraints are posted on plain integer variables or
+ * on negation views of them, and if the tables do not exceed MAX_TUPLES tuples.
+ * Otherwise, {@link #compile} returns null and the clones have to be created from the feature model.
+ */
+@Slf4j
+public class FMModelTemplate {
+
+    private static final int MAX_TUPLES = 1 << 12;
+    private static final int MAX_CNF_SCOPE = 12; // the maximal number of variables of a constraint encoded as clauses
+    private static final int[][][] NO_CNF = new int[0][][];
+    private static final String NOT_VIEW_PREFIX = "not("; // the name of a BoolNotView
+
+    /**
+     * A compiled constraint, i.e., the tuples allowed on the variables with the given indexes
+     */
+    private record CompiledConstraint(String name, int[] vars, int[][] tuples, boolean hasNegativeConstraints) {
+
+        /**
+         * Returns the allowed tuples of Boolean values as sorted bit codes (bit i is the value of the i-th variable
+         * of the scope), or null if the scope is too large or the values are not Boolean
+         */
+        long[] codes() {
+            if (vars.length >= Long.SIZE) {
+                return null;
+            }
+            long[] codes = new long[tuples.length];
+            for (int t = 0; t < tuples.length; t++) {
+                for (int i = 0; i < vars.length; i++) {
+                    if (tuples[t][i] < 0 || tuples[t][i] > 1) {
+                        return null;
+                    }
+                    codes[t] |= (long) tuples[t][i] << i;
+                }
+            }
+            Arrays.sort(codes);
+            return codes;
+        }
+
+        /**
+         * Encodes the table as clauses over the variables (v + 1 for the variable v, negative for its negation),
+         * i.e., the forbidden tuples are covered by cubes, and each cube is excluded by a clause.
+         * A cube is grown greedily from a forbidden tuple by freeing one variable after the other.
+         * @return the clauses, or null if the scope is too large or the values are not Boolean
+         */
+        int[][] clauses() {
+            long[] codes = codes();
+            if (codes == null || vars.length > MAX_CNF_SCOPE) {
+                return null;
+            }
+            int n = 1 << vars.length;
+            boolean[] forbidden = new boolean[n];
+            Arrays.fill(forbidden, true);
+            for (long code : codes) {
+                forbidden[(int) code] = false;
+            }
+
+            List<int[]> clauses = new ArrayList<>();
+            boolean[] covered = new boolean[n];
+            for (int t = 0; t < n; t++) {
+                if (!forbidden[t] || covered[t]) {
+                    continue;
+                }
+                int free = 0; // the mask of the free variables of the cube
+                for (int i = 0; i < vars.length; i++) {
+                    int f = free | (1 << i);
+                    if (isForbiddenCube(forbidden, t & ~f, f)) {
+                        free = f;
+                    }
+                }
+
+                int base = t & ~free;
+                for (int s = free; ; s = (s - 1) & free) {
+                    covered[base | s] = true;
+                    if (s == 0) {
+                        break;
+                    }
+                }
+                int[] clause = new int[vars.length - Integer.bitCount(free)];
+                int k = 0;
+                for (int i = 0; i < vars.length; i++) {
+                    if ((free & (1 << i)) == 0) {
+                        clause[k++] = ((base >>> i) & 1) == 1 ? -(vars[i] + 1) : vars[i] + 1;
+                    }
+                }
+                clauses.add(clause);
+            }
+            return clauses.toArray(new int[0][]);
+        }
+
+        private static boolean isForbiddenCube(boolean[] forbidden, int base, int free) {
+            for (int s = free; ; s = (s - 1) & free) {
+                if (!forbidden[base | s]) {
+                    return false;
+                }
+                if (s == 0) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Getter
+    private final String name;
+    private final String[] varNames;
+    private final int[] lbs;
+    private final int[] ubs;
+    private final List<CompiledConstraint> possiblyFaultyConstraints;
+    private final List<CompiledConstraint> correctConstraints;
+    private volatile long[][] codes; // the codes of the constraints, in the order of constraintNames(), lazily built
+    private volatile int[][][] clauses; // the clauses of the constraints, NO_CNF if not encodable, lazily built
+
+    private FMModelTemplate(String name, String[] varNames, int[] lbs, int[] ubs,
+                            List<CompiledConstraint> possiblyFaultyConstraints,
+                            List<CompiledConstraint> correctConstraints) {
+        this.name = name;
+        this.varNames = varNames;
+        this.lbs = lbs;
+        this.ubs = ubs;
+        this.possiblyFaultyConstraints = possiblyFaultyConstraints;
+        this.correctConstraints = correctConstraints;
+    }
+
+    /**
+     * Compiles the given initialized model.
+     * The Choco constraints of the model are temporarily posted, hence the model must not be used by other threads.
+     * @return the template, or null if the model cannot be compiled
+     */
+    public static FMModelTemplate compile(@NonNull FMModel source) {
+        log.debug("{}Compiling template for {} >>>", LoggerUtils.tab(), source.getName());
+        LoggerUtils.indent();
+
+        Model model = source.getModel();
+
+        // the variables, except views
+        List<IntVar> vars = new ArrayList<>();
+        Map<String, Integer> varIndex = new HashMap<>();
+        for (Variable v : model.getVars()) {
+            if ((v.getTypeAndKind() & Variable.VIEW) != 0) {
+                continue;
+            }
+            if (!(v instanceof IntVar)) {
+                return unsupported(source, "the variable " + v.getName() + " is not an integer variable");
+            }
+            if (varIndex.put(v.getName(), vars.size()) != null) {
+                return unsupported(source, "the variable name " + v.getName() + " is not unique");
+            }
+            vars.add((IntVar) v);
+        }
+
+        String[] varNames = new String[vars.size()];
+        int[] lbs = new int[vars.size()];
+        int[] ubs = new int[vars.size()];
+        for (int i = 0; i < vars.size(); i++) {
+            varNames[i] = vars.get(i).getName();
+            lbs[i] = vars.get(i).getLB();
+            ubs[i] = vars.get(i).getUB();
+        }
+
+        List<CompiledConstraint> C = new ArrayList<>();
+        for (Constraint c : source.getPossiblyFaultyConstraints()) {
+            CompiledConstraint cc = compile(model, c, varIndex, vars);
+            if (cc == null) {
+                return unsupported(source, "the constraint " + c + " cannot be compiled");
+            }
+            C.add(cc);
+        }
+
+        List<CompiledConstraint> B = new ArrayList<>();
+        for (Constraint c : source.getCorrectConstraints()) {
+            CompiledConstraint cc = compile(model, c, varIndex, vars);
+            if (cc == null) {
+                return unsupported(source, "the constraint " + c + " cannot be compiled");
+            }
+            B.add(cc);
+        }
+
+        LoggerUtils.outdent();
+        log.debug("{}<<< Compiled template for {} [vars={}, constraints={}]", LoggerUtils.tab(), source.getName(),
+                varNames.length, C.size() + B.size());
+        return new FMModelTemplate(source.getName(), varNames, lbs, ubs, C, B);
+    }
+
+    /**
+     * Enumerates the solutions of the Choco constraints of the given constraint on their variables.
+     * @return the compiled constraint, or null if it cannot be compiled
+     */
+    private static CompiledConstraint compile(Model model, Constraint c, Map<String, Integer> varIndex, List<IntVar> vars) {
+        org.chocosolver.solver.constraints.Constraint[] cstrs = c.getChocoConstraints()
+                .toArray(new org.chocosolver.solver.constraints.Constraint[0]);
+
+        // the variables of the constraint, views are replaced by their variable
+        SortedSet<Integer> scope = new TreeSet<>();
+        for (org.chocosolver.solver.constraints.Constraint cstr : cstrs) {
+            for (var propagator : cstr.getPropagators()) {
+                for (Variable v : propagator.getVars()) {
+                    Integer index = indexOf(v, varIndex);
+                    if (index == null) {
+                        return null;
+                    }
+                    scope.add(index);
+                }
+            }
+        }
+        if (scope.isEmpty()) {
+            return null;
+        }
+
+        int[] scopeVars = scope.stream().mapToInt(Integer::intValue).toArray();
+        IntVar[] scopeIntVars = Arrays.stream(scopeVars).mapToObj(vars::get).toArray(IntVar[]::new);
+
+        List<int[]> tuples = new ArrayList<>();
+        model.post(cstrs);
+        Solver solver = model.getSolver();
+        try {
+            solver.setSearch(Search.inputOrderLBSearch(scopeIntVars));
+            solver.makeCompleteStrategy(false); // the other variables are irrelevant
+            while (solver.solve()) {
+                if (tuples.size() == MAX_TUPLES) {
+                    return null;
+                }
+                int[] tuple = new int[scopeIntVars.length];
+                for (int i = 0; i < scopeIntVars.length; i++) {
+                    tuple[i] = scopeIntVars[i].getValue();
+                }
+                tuples.add(tuple);
+            }
+        } finally {
+            solver.reset();
+            model.unpost(cstrs);
+        }
+
+        return new CompiledConstraint(c.getName(), scopeVars, tuples.toArray(new int[0][]), !c.getNegChocoConstraints().isEmpty());
+    }
+
+    /**
+     * Returns the index of the given variable, or of the variable of a negation view
+     */
+    private static Integer indexOf(Variable v, Map<String, Integer> varIndex) {
+        if ((v.getTypeAndKind() & Variable.VIEW) == 0) {
+            return varIndex.get(v.getName());
+        }
+        String name = v.getName();
+        if (name.startsWith(NOT_VIEW_PREFIX) && name.endsWith(")")) {
+            return varIndex.get(name.substring(NOT_VIEW_PREFIX.length(), name.length() - 1));
+        }
+        return null;
+    }
+
+    private static FMModelTemplate unsupported(FMModel source, String reason) {
+        LoggerUtils.outdent();
+        log.warn("{}Cannot compile template for {} - {}", LoggerUtils.tab(), source.getName(), reason);
+        return null;
+    }
+
+    /**
+     * Creates a new Choco model from the template, and adds the possibly faulty constraints of the new model
+     * to C and the correct constraints to B. As done by {@link FMModel#initialize()}, the Choco constraints are not posted.
+     */
+    public Model instantiate(@NonNull List<Constraint> C, @NonNull List<Constraint> B) {
+        Model model = new Model(name);
+
+        IntVar[] vars = new IntVar[varNames.length];
+        for (int i = 0; i < varNames.length; i++) {
+            if (lbs[i] == 0 && ubs[i] == 1) {
+                vars[i] = model.boolVar(varNames[i]);
+            } else {
+                vars[i] = model.intVar(varNames[i], lbs[i], ubs[i]);
+            }
+        }
+
+        for (CompiledConstraint cc : possiblyFaultyConstraints) {
+            C.add(instantiate(model, vars, cc));
+        }
+        for (CompiledConstraint cc : correctConstraints) {
+            B.add(instantiate(model, vars, cc));
+        }
+
+        model.unpost(model.getCstrs());
+        return model;
+    }
+
+    private static Constraint instantiate(Model model, IntVar[] vars, CompiledConstraint cc) {
+        int startIdx = model.getNbCstrs();
+        table(model, vars, cc, true).post();
+        if (cc.hasNegativeConstraints()) {
+            table(model, vars, cc, false).post(); // the last one is the negative constraint
+        }
+
+        Constraint constraint = new Constraint(cc.name());
+        constraint.addChocoConstraints(model, startIdx, model.getNbCstrs() - 1, cc.hasNegativeConstraints());
+        return constraint;
+    }
+
+    /**
+     * Creates the table of the allowed (feasible = true) or the forbidden tuples
+     */
+    private static org.chocosolver.solver.constraints.Constraint table(Model model, IntVar[] vars,
+                                                                        CompiledConstraint cc, boolean feasible) {
+        if (cc.tuples().length == 0) { // no tuple allowed
+            return feasible ? model.falseConstraint() : model.trueConstraint();
+        }
+        if (cc.vars().length == 1) {
+            IntVar var = vars[cc.vars()[0]];
+            int[] values = Arrays.stream(cc.tuples()).mapToInt(t -> t[0]).toArray();
+            return feasible ? model.member(var, values) : model.notMember(var, values);
+        }
+
+        IntVar[] scope = Arrays.stream(cc.vars()).mapToObj(i -> vars[i]).toArray(IntVar[]::new);
+        Tuples tuples = new Tuples(feasible);
+        for (int[] tuple : cc.tuples()) {
+            tuples.add(tuple);
+        }
+        return model.table(scope, tuples);
+    }
+
+    /**
+     * Returns true if all variables are Boolean, i.e., a solution can be represented as a bitset
+     */
+    public boolean isBoolean() {
+        for (int i = 0; i < varNames.length; i++) {
+            if (lbs[i] < 0 || ubs[i] > 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the names of the variables, the index of a name is the bit of the variable in a solution
+     */
+    public String[] getVariableNames() {
+        return varNames.clone();
+    }
+
+    /**
+     * Returns the names of the possibly faulty constraints followed by the names of the correct constraints
+     */
+    public List<String> getConstraintNames() {
+        List<String> names = new ArrayList<>(size());
+        possiblyFaultyConstraints.forEach(cc -> names.add(cc.name()));
+        correctConstraints.forEach(cc -> names.add(cc.name()));
+        return names;
+    }
+
+    /**
+     * Evaluates the compiled constraints on a solution of the Boolean variables, whose bit i is the value
+     * of the i-th variable of {@link #getVariableNames()}.
+     * @return the set of the indexes (in the order of {@link #getConstraintNames()}) of the satisfied constraints
+     */
+    public BitSet evaluate(@NonNull long[] solution) {
+        long[][] codes = codes();
+        BitSet satisfied = new BitSet(codes.length);
+        int j = 0;
+        for (List<CompiledConstraint> constraints : List.of(possiblyFaultyConstraints, correctConstraints)) {
+            for (CompiledConstraint cc : constraints) {
+                if (codes[j] != null) {
+                    long code = 0L;
+                    for (int i = 0; i < cc.vars().length; i++) {
+                        int v = cc.vars()[i];
+                        code |= ((solution[v >>> 6] >>> v) & 1L) << i;
+                    }
+                    if (Arrays.binarySearch(codes[j], code) >= 0) {
+                        satisfied.set(j);
+                    }
+                }
+                j++;
+            }
+        }
+        return satisfied;
+    }
+
+    private long[][] codes() {
+        long[][] c = codes;
+        if (c == null) {
+            c = new long[size()][];
+            int j = 0;
+            for (CompiledConstraint cc : possiblyFaultyConstraints) {
+                c[j++] = cc.codes();
+            }
+            for (CompiledConstraint cc : correctConstraints) {
+                c[j++] = cc.codes();
+            }
+            codes = c;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the clauses of each constraint, in the order of {@link #getConstraintNames()}.
+     * A literal is v + 1 for the i-th variable of {@link #getVariableNames()}, or -(v + 1) for its negation.
+     * @return the clauses, or null if the model is not Boolean or a constraint has too many variables
+     */
+    public int[][][] getClauses() {
+        int[][][] c = clauses;
+        if (c == null) {
+            c = new int[size()][][];
+            int j = 0;
+            for (List<CompiledConstraint> constraints : List.of(possiblyFaultyConstraints, correctConstraints)) {
+                for (CompiledConstraint cc : constraints) {
+                    c[j] = cc.clauses();
+                    if (c[j++] == null) {
+                        c = NO_CNF;
+                        break;
+                    }
+                }
+                if (c == NO_CNF) {
+                    break;
+                }
+            }
+            clauses = c;
+        }
+        return c == NO_CNF ? null : c;
+    }
+
+    /**
+     * Returns the number of compiled constraints
+     */
+    public int size() {
+        return possiblyFaultyConstraints.size() + correctConstraints.size();
+    }
+}
@@ -0,0 +1,37 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckTimeEstimatorTest {
+
+    @Test
+    void testAverage() {
+        CheckTimeEstimator estimator = new CheckTimeEstimator();
+        long checkTime = TimeUnit.MILLISECONDS.toNanos(40);
+
+        for (int i = 0; i < 100; i++) {
+            estimator.record(checkTime);
+        }
+        assertTrue(Math.abs(checkTime - estimator.getAverageCheckTime()) < TimeUnit.MILLISECONDS.toNanos(1));
+
+        estimator.reset();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), estimator.getAverageCheckTime());
+    }
+
+    @Test
+    void testWaitTime() {
+        CheckTimeEstimator estimator = new CheckTimeEstimator();
+        long avg = estimator.getAverageCheckTime();
+
+        // a check started just now is expected to need the whole average time
+        long waitTime = estimator.waitTime(System.nanoTime());
+        assertTrue(waitTime > avg && waitTime <= 2 * avg);
+
+        // a check running longer than expected is waited for at most the time of a check on the main thread
+        assertEquals(avg, estimator.waitTime(System.nanoTime() - 10 * avg));
+    }
+}
@@ -0,0 +1,177 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckerPoolTest {
+
+    @Test
+    void testAffinity() throws InterruptedException {
+        CheckerPool<Object> pool = new CheckerPool<>(checkers(4));
+
+        Object checker = pool.take();
+        pool.release(checker);
+
+        // the same thread gets the same checker again
+        assertSame(checker, pool.take());
+        pool.release(checker);
+    }
+
+    @Test
+    void testTakeAll() throws InterruptedException {
+        List<Object> checkers = checkers(3);
+        CheckerPool<Object> pool = new CheckerPool<>(checkers);
+
+        Set<Object> taken = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < checkers.size(); i++) {
+            assertTrue(taken.add(pool.take()));
+        }
+        assertEquals(Set.copyOf(checkers), taken);
+
+        assertThrows(IllegalArgumentException.class, () -> pool.release(new Object()));
+    }
+
+    @Test
+    void testTakeClosest() throws InterruptedException {
+        CheckerPool<String> pool = new CheckerPool<>(List.of("a", "bb", "ccc"));
+
+        String closest = pool.takeClosest(checker -> Math.abs(checker.length() - 2));
+        assertEquals("bb", closest);
+
+        // the closest checker is in use, hence the next closest one
+        String next = pool.takeClosest(checker -> Math.abs(checker.length() - 2));
+        assertNotEquals("bb", next);
+
+        pool.release(closest);
+        pool.release(next);
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    void testWaiterParks() throws InterruptedException {
+        List<Object> checkers = checkers(2);
+        CheckerPool<Object> pool = new CheckerPool<>(checkers);
+        Object first = pool.take();
+        Object second = pool.take();
+
+        AtomicReference<Object> taken = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                taken.set(pool.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        // all checkers are in use, the waiter parks after spinning shortly
+        for (int i = 0; i < 100 && waiter.getState() != Thread.State.WAITING; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, waiter.getState());
+        assertNull(taken.get());
+
+        pool.release(second);
+        waiter.join(1000);
+        assertFalse(waiter.isAlive());
+        assertSame(second, taken.get());
+        pool.release(first);
+    }
+
+    @Test
+    void testExclusiveUse() throws InterruptedException {
+        CheckerPool<Object> pool = new CheckerPool<>(checkers(2));
+        Set<Object> inUse = ConcurrentHashMap.newKeySet();
+        AtomicBoolean shared = new AtomicBoolean(false);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        Object checker = pool.take();
+                        if (!inUse.add(checker)) {
+                            shared.set(true); // two threads hold the same checker
+                        }
+                        inUse.remove(checker);
+                        pool.release(checker);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(shared.get());
+    }
+
+    @Test
+    void testGrowAndShrink() throws InterruptedException {
+        Set<Object> disposed = ConcurrentHashMap.newKeySet();
+        CheckerPool<Object> pool = new CheckerPool<>(checkers(1), 3, Object::new, disposed::add, 50);
+
+        // all checkers are in use, the pool creates further checkers in the background
+        Object first = pool.take();
+        Object second = pool.take();
+        Object third = pool.take();
+        assertEquals(3, pool.size());
+        assertEquals(3, pool.getInUse());
+        assertEquals(2, pool.getCreations());
+        assertTrue(pool.getAverageCreationTime() >= 0);
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(0, pool.getInUse());
+
+        // the idle checkers are disposed, down to the initial size
+        for (int i = 0; i < 100 && pool.size() > pool.getMinSize(); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, pool.size());
+        assertEquals(2, pool.getRetirements());
+        assertEquals(2, disposed.size());
+
+        assertNotNull(pool.take());
+        pool.close();
+    }
+
+    @Test
+    void testClose() throws InterruptedException {
+        Set<Object> disposed = ConcurrentHashMap.newKeySet();
+        List<Object> checkers = checkers(2);
+        CheckerPool<Object> pool = new CheckerPool<>(checkers, 2, null, disposed::add, 0);
+        Object taken = pool.take();
+
+        pool.close();
+        assertEquals(1, disposed.size()); // the free checker
+        assertFalse(disposed.contains(taken));
+
+        pool.release(taken); // disposed when released after the close
+        assertEquals(Set.copyOf(checkers), disposed);
+        assertEquals(0, pool.getInUse());
+        assertThrows(IllegalStateException.class, pool::take);
+    }
+
+    private static List<Object> checkers(int n) {
+        List<Object> checkers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            checkers.add(new Object());
+        }
+        return checkers;
+    }
+}
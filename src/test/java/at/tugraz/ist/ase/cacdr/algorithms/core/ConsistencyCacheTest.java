@@ -0,0 +1,90 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistencyCacheTest {
+    private static final long CHEAP = 100_000L; // 0.1 ms
+    private static final long EXPENSIVE = 500_000_000L; // 500 ms
+
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+
+    @BeforeEach
+    void setUp() {
+        constraints = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+        index = new ConstraintIndex(constraints);
+    }
+
+    private CCKey key(int i) {
+        return ConstraintSet.of(index, constraints.subList(0, i + 1)).key();
+    }
+
+    @Test
+    void testGetAndHitRate() {
+        ConsistencyCache cache = new ConsistencyCache(4);
+        cache.put(key(0), true, CHEAP);
+        cache.put(key(1), false, CHEAP);
+
+        assertEquals(Boolean.TRUE, cache.get(key(0)));
+        assertEquals(Boolean.FALSE, cache.get(key(1)));
+        assertNull(cache.get(key(2)));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testBoundedEviction() {
+        ConsistencyCache cache = new ConsistencyCache(4);
+        for (int i = 0; i < 10; i++) {
+            cache.put(key(i), true, CHEAP);
+        }
+
+        assertEquals(4, cache.size());
+        assertEquals(6, cache.getEvictions());
+    }
+
+    @Test
+    void testExpensiveChecksSurviveLonger() {
+        ConsistencyCache cache = new ConsistencyCache(4);
+        cache.put(key(0), true, EXPENSIVE);
+        for (int i = 1; i < 8; i++) {
+            cache.put(key(i), true, CHEAP);
+        }
+
+        assertEquals(Boolean.TRUE, cache.get(key(0)));
+        assertNull(cache.get(key(1)));
+    }
+
+    @Test
+    void testOtherIndex() {
+        ConsistencyCache cache = new ConsistencyCache(4);
+        cache.put(key(2), false, CHEAP);
+
+        // another engine indexes the constraints in another order
+        List<Constraint> reversed = new ArrayList<>(constraints);
+        Collections.reverse(reversed);
+        ConstraintIndex other = new ConstraintIndex(reversed);
+
+        assertEquals(Boolean.FALSE, cache.get(ConstraintSet.of(other, constraints.subList(0, 3)).key()));
+        assertNull(cache.get(ConstraintSet.of(other, constraints.subList(0, 2)).key()));
+    }
+
+    @Test
+    void testWeight() {
+        assertEquals(1, ConsistencyCache.weight(CHEAP));
+        assertEquals(2, ConsistencyCache.weight(5_000_000L));
+        assertEquals(4, ConsistencyCache.weight(EXPENSIVE));
+    }
+}
@@ -0,0 +1,36 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstraintIndexTest {
+
+    @Test
+    void testIndexOf() {
+        Constraint c0 = new Constraint("c0");
+        Constraint c1 = new Constraint("c1");
+        ConstraintIndex index = new ConstraintIndex(List.of(c0, c1));
+
+        assertEquals(0, index.indexOf(c0));
+        assertEquals(1, index.indexOf(c1));
+        assertEquals(-1, index.indexOfIfPresent(new Constraint("c2")));
+        assertEquals(2, index.indexOf(new Constraint("c2")));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testSameName() {
+        Constraint c0 = new Constraint("c0");
+        Constraint clone = new Constraint("c0"); // e.g., the constraint of a clone of the model
+        ConstraintIndex index = new ConstraintIndex(List.of(c0, new Constraint("c1")), List.of(clone));
+
+        // the constraints are told apart by their names
+        assertEquals(2, index.size());
+        assertEquals(index.indexOf(c0), index.indexOf(clone));
+        assertEquals(ConstraintSet.of(index, List.of(c0)).key(), ConstraintSet.of(index, List.of(clone)).key());
+    }
+}
@@ -0,0 +1,135 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstraintSetTest {
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+
+    @BeforeEach
+    void setUp() {
+        constraints = new ArrayList<>();
+        for (int i = 0; i < 130; i++) { // spans three words of the bitset
+            constraints.add(new Constraint("c" + i));
+        }
+        index = new ConstraintIndex(constraints);
+    }
+
+    private ConstraintSet of(int from, int to) {
+        return ConstraintSet.of(index, constraints.subList(from, to));
+    }
+
+    @Test
+    void testUnionAndDifference() {
+        ConstraintSet B = of(0, 70);
+        ConstraintSet C = of(60, 130);
+
+        Set<Constraint> expectedUnion = Sets.union(new LinkedHashSet<>(B), new LinkedHashSet<>(C));
+        ConstraintSet union = B.union(C);
+        assertEquals(expectedUnion, union);
+        assertEquals(new ArrayList<>(expectedUnion), new ArrayList<>(union)); // B first, then C
+        assertEquals(expectedUnion.hashCode(), union.hashCode());
+
+        Set<Constraint> expectedDifference = Sets.difference(new LinkedHashSet<>(C), new LinkedHashSet<>(B));
+        ConstraintSet difference = C.difference(B);
+        assertEquals(expectedDifference, difference);
+        assertEquals(new ArrayList<>(expectedDifference), new ArrayList<>(difference));
+    }
+
+    @Test
+    void testSplit() {
+        ConstraintSet C = of(3, 10);
+
+        assertEquals(constraints.subList(3, 6), new ArrayList<>(C.leftHalf()));
+        assertEquals(constraints.subList(6, 10), new ArrayList<>(C.rightHalf()));
+        assertEquals(C, C.leftHalf().union(C.rightHalf()));
+
+        // nested halves are views on the same constraints
+        ConstraintSet C2 = C.rightHalf();
+        assertEquals(constraints.subList(6, 8), new ArrayList<>(C2.leftHalf()));
+        assertEquals(constraints.subList(8, 10), new ArrayList<>(C2.rightHalf()));
+        assertTrue(C2.rightHalf().isSubsetOf(C));
+        assertFalse(C2.rightHalf().contains(constraints.get(7)));
+        assertEquals(of(8, 10).key(), C2.rightHalf().key());
+    }
+
+    @Test
+    void testSubsetAndContains() {
+        ConstraintSet C = of(10, 100);
+
+        assertTrue(of(64, 100).isSubsetOf(C));
+        assertFalse(of(5, 20).isSubsetOf(C));
+        assertTrue(C.containsAll(of(20, 30)));
+        assertTrue(C.contains(constraints.get(64)));
+        assertFalse(C.contains(constraints.get(100)));
+        assertFalse(C.contains(new Constraint("unknown")));
+    }
+
+    @Test
+    void testDistance() {
+        ConstraintSet B = of(0, 70);
+        ConstraintSet C = of(60, 130);
+
+        assertEquals(0, B.distance(B));
+        assertEquals(120, B.distance(C)); // 60 + 60
+        assertEquals(B.distance(C), C.distance(B));
+        assertEquals(70, B.distance(ConstraintSet.empty(index)));
+        assertEquals(B.leftHalf().size(), B.distance(B.rightHalf()));
+    }
+
+    @Test
+    void testKey() {
+        ConstraintSet C1 = of(0, 50).union(of(50, 130));
+        ConstraintSet C2 = ConstraintSet.of(index, constraints);
+
+        assertEquals(C1.key(), C2.key());
+        assertNotEquals(C1.key(), of(1, 130).key());
+        assertEquals(ConstraintSet.empty(index).key(), of(5, 5).key());
+    }
+
+    @Test
+    void testIncrementalFingerprint() {
+        ConstraintSet C = of(0, 100);
+
+        // overlapping union
+        assertEquals(of(0, 130).key(), C.union(of(90, 130)).key());
+        // difference
+        assertEquals(of(0, 40).key(), C.difference(of(40, 120)).key());
+        // splitting
+        assertEquals(of(0, 50).key(), C.leftHalf().key());
+        assertEquals(of(50, 100).key(), C.rightHalf().key());
+        // the codes only depend on the names of the constraints
+        ConstraintIndex other = new ConstraintIndex(constraints.subList(60, 130));
+        assertEquals(C.key().getFingerprintLo(), ConstraintSet.of(other, C).key().getFingerprintLo());
+        assertEquals(C.key().getFingerprintHi(), ConstraintSet.of(other, C).key().getFingerprintHi());
+    }
+
+    @Test
+    void testLazyUnionAndDifference() {
+        // a deep chain of unions, as B grows in FastDiag, then a difference of it
+        ConstraintSet B = ConstraintSet.empty(index);
+        for (int i = 0; i < 130; i++) {
+            B = B.union(of(i, i + 1));
+        }
+        ConstraintSet C = B.difference(of(20, 120));
+
+        assertEquals(of(0, 130).key(), B.key());
+        assertEquals(constraints, new ArrayList<>(B));
+        assertEquals(new ArrayList<>(of(0, 20).union(of(120, 130))), new ArrayList<>(C));
+        // the halves of a lazy set
+        assertEquals(constraints.subList(0, 65), new ArrayList<>(B.leftHalf()));
+        assertEquals(of(20, 120).difference(C), of(20, 120));
+        assertEquals(constraints.subList(0, 15), new ArrayList<>(C.leftHalf()));
+        assertEquals(of(15, 20).union(of(120, 130)).key(), C.rightHalf().key());
+    }
+}
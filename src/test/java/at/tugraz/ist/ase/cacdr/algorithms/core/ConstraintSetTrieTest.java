@@ -0,0 +1,145 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstraintSetTrieTest {
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+
+    @BeforeEach
+    void setUp() {
+        constraints = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+        index = new ConstraintIndex(constraints);
+    }
+
+    private ConstraintSet of(int... idx) {
+        List<Constraint> C = new ArrayList<>();
+        for (int i : idx) {
+            C.add(constraints.get(i));
+        }
+        return ConstraintSet.of(index, C);
+    }
+
+    @Test
+    void testSubsetAndSuperset() {
+        ConstraintSetTrie<String> trie = new ConstraintSetTrie<>();
+        trie.put(of(1, 5, 9), "A");
+        trie.put(of(2, 3), "B");
+
+        assertEquals("A", trie.findSubsetOf(of(9, 0, 1, 5)));
+        assertEquals("B", trie.findSubsetOf(of(3, 2)));
+        assertNull(trie.findSubsetOf(of(1, 5, 3)));
+
+        assertEquals("A", trie.findSupersetOf(of(5, 9)));
+        assertEquals("A", trie.findSupersetOf(of(1)));
+        assertEquals("B", trie.findSupersetOf(of(3)));
+        assertNull(trie.findSupersetOf(of(1, 2)));
+
+        trie.clear();
+        assertNull(trie.findSupersetOf(of(1)));
+    }
+
+    @Test
+    void testForEachAndRemove() {
+        ConstraintSetTrie<String> trie = new ConstraintSetTrie<>();
+        trie.put(of(1, 5, 9), "A");
+        trie.put(of(1, 5), "B");
+        trie.put(of(2, 3), "C");
+
+        List<String> supersets = new ArrayList<>();
+        trie.forEachSupersetOf(of(5), supersets::add);
+        assertEquals(List.of("A", "B"), supersets.stream().sorted().toList());
+
+        List<String> subsets = new ArrayList<>();
+        trie.forEachSubsetOf(of(1, 2, 3, 5), subsets::add);
+        assertEquals(List.of("B", "C"), subsets.stream().sorted().toList());
+
+        trie.remove(of(1, 5), "other"); // another value is stored for the set
+        assertEquals("B", trie.findSubsetOf(of(1, 5)));
+        trie.remove(of(1, 5), "B");
+        assertNull(trie.findSubsetOf(of(1, 5)));
+        assertEquals("A", trie.findSupersetOf(of(1, 5)));
+
+        trie.remove(of(1, 5, 9), "A");
+        trie.remove(of(2, 3), "C");
+        assertTrue(trie.isEmpty()); // the empty nodes are pruned
+    }
+
+    @Test
+    void testConcurrentPutAndRemove() throws InterruptedException {
+        ConstraintSetTrie<ConstraintSet> trie = new ConstraintSetTrie<>();
+        Set<ConstraintSet> kept = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (int i = 20; i < 100; i++) {
+                        ConstraintSet C = of(0, 1, 10 + thread, i); // shared prefixes, distinct sets per thread
+                        trie.put(C, C);
+                        if (random.nextBoolean()) {
+                            trie.remove(C, C);
+                            kept.remove(C);
+                        } else {
+                            kept.add(C);
+                        }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (ConstraintSet C : kept) {
+            assertEquals(C, trie.findSupersetOf(C));
+            trie.remove(C, trie.findSupersetOf(C));
+        }
+        assertTrue(trie.isEmpty());
+    }
+
+    @Test
+    void testAgainstLinearScan() {
+        Random random = new Random(42);
+        ConstraintSetTrie<ConstraintSet> trie = new ConstraintSetTrie<>();
+        List<ConstraintSet> stored = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            ConstraintSet C = randomSet(random);
+            trie.put(C, C);
+            stored.add(C);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            ConstraintSet q = randomSet(random);
+
+            ConstraintSet subset = trie.findSubsetOf(q);
+            assertEquals(stored.stream().anyMatch(C -> C.isSubsetOf(q)), subset != null);
+            assertTrue(subset == null || subset.isSubsetOf(q));
+
+            ConstraintSet superset = trie.findSupersetOf(q);
+            assertEquals(stored.stream().anyMatch(q::isSubsetOf), superset != null);
+            assertTrue(superset == null || q.isSubsetOf(superset));
+        }
+    }
+
+    private ConstraintSet randomSet(Random random) {
+        int[] idx = random.ints(1 + random.nextInt(12), 0, 30).toArray();
+        return of(idx);
+    }
+}
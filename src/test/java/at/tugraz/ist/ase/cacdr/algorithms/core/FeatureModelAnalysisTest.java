@@ -0,0 +1,57 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureModelAnalysisTest {
+
+    private static final String[] FEATURES = {"r", "a", "p", "f", "c"};
+
+    /**
+     * r is the root, a is mandatory, p, f (child of p) and c are optional, p requires f, and c excludes a
+     */
+    private static List<int[][]> featureModel() {
+        List<int[][]> clauses = new ArrayList<>();
+        clauses.add(new int[][]{{1}}); // r = true
+        clauses.add(new int[][]{{-2, 1}, {-1, 2}}); // mandatory(r, a)
+        clauses.add(new int[][]{{-3, 1}}); // optional(r, p)
+        clauses.add(new int[][]{{-4, 3}}); // optional(p, f)
+        clauses.add(new int[][]{{-3, 4}}); // requires(p, f)
+        clauses.add(new int[][]{{-5, 1}}); // optional(r, c)
+        clauses.add(new int[][]{{-5, -2}}); // excludes(c, a)
+        return clauses;
+    }
+
+    @Test
+    void testAnalyze() {
+        FeatureModelAnalysis analysis = FeatureModelAnalysis.analyze(FEATURES, featureModel());
+
+        assertTrue(analysis.isConsistent());
+        assertEquals(Set.of("c"), analysis.getDeadFeatures());
+        assertEquals(Set.of("r", "a"), analysis.getCoreFeatures());
+        assertEquals(Set.of("f"), analysis.getFalseOptionalFeatures());
+
+        assertTrue(analysis.isInconsistent("c", true));
+        assertTrue(analysis.isInconsistent("a", false));
+        assertFalse(analysis.isInconsistent("c", false));
+        assertFalse(analysis.isInconsistent("p", true));
+        assertFalse(analysis.isInconsistent("f", false)); // false-optional, but not core
+    }
+
+    @Test
+    void testInconsistentFeatureModel() {
+        List<int[][]> clauses = featureModel();
+        clauses.add(new int[][]{{-1}}); // r = false
+
+        FeatureModelAnalysis analysis = FeatureModelAnalysis.analyze(FEATURES, clauses);
+
+        assertFalse(analysis.isConsistent());
+        assertTrue(analysis.getDeadFeatures().isEmpty());
+        assertFalse(analysis.isInconsistent("c", true));
+    }
+}
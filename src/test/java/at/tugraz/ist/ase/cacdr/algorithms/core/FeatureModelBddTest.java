@@ -0,0 +1,133 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureModelBddTest {
+
+    private static final int NUM_VARS = 10;
+    private static final int NUM_CONSTRAINTS = 12;
+
+    private static boolean isSatisfied(int[][] clauses, long assignment) {
+        for (int[] clause : clauses) {
+            boolean sat = false;
+            for (int l : clause) {
+                sat |= ((assignment >>> (Math.abs(l) - 1)) & 1) == 1 == l > 0;
+            }
+            if (!sat) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean bruteForce(int[][][] clauses, int[] constraints) {
+        for (long assignment = 0; assignment < 1 << NUM_VARS; assignment++) {
+            boolean sat = true;
+            for (int j : constraints) {
+                sat &= isSatisfied(clauses[j], assignment);
+            }
+            if (sat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[][][] randomClauses(Random random) {
+        int[][][] clauses = new int[NUM_CONSTRAINTS][][];
+        for (int j = 0; j < NUM_CONSTRAINTS; j++) {
+            clauses[j] = new int[1 + random.nextInt(3)][];
+            for (int c = 0; c < clauses[j].length; c++) {
+                clauses[j][c] = new int[1 + random.nextInt(3)];
+                for (int i = 0; i < clauses[j][c].length; i++) {
+                    int v = random.nextInt(NUM_VARS) + 1;
+                    clauses[j][c][i] = random.nextBoolean() ? v : -v;
+                }
+            }
+        }
+        return clauses;
+    }
+
+    private static List<String> names(String prefix, int n) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+
+    private static FeatureModelBdd compile(int[][][] clauses, int maxNodes) {
+        return FeatureModelBdd.compile(names("f", NUM_VARS), names("c", NUM_CONSTRAINTS), clauses, maxNodes);
+    }
+
+    private static int[] randomSubset(Random random) {
+        return random.ints(0, NUM_CONSTRAINTS).limit(random.nextInt(NUM_CONSTRAINTS)).distinct().toArray();
+    }
+
+    @Test
+    void testRandomModels() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            int[][][] clauses = randomClauses(random);
+            FeatureModelBdd bdd = compile(clauses, FeatureModelBdd.DEFAULT_MAX_NODES);
+            assertNotNull(bdd);
+
+            FeatureModelBdd.Query query = bdd.newQuery();
+            for (int call = 0; call < 20; call++) {
+                int[] constraints = randomSubset(random);
+                boolean expected = bruteForce(clauses, constraints);
+
+                assertEquals(expected, query.isConsistent(constraints));
+                if (expected) {
+                    long solution = query.getSolution()[0];
+                    for (int j : constraints) {
+                        assertTrue(isSatisfied(clauses[j], solution));
+                    }
+                } else {
+                    assertNull(query.getSolution());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        Random random = new Random(7);
+        int[][][] clauses = randomClauses(random);
+        FeatureModelBdd bdd = compile(clauses, FeatureModelBdd.DEFAULT_MAX_NODES);
+
+        Path file = Files.createTempDirectory("bdd").resolve("model.bdd");
+        bdd.write(file);
+        FeatureModelBdd read = FeatureModelBdd.read(file);
+
+        assertEquals(bdd.size(), read.size());
+        assertEquals(bdd.getVariableNames(), read.getVariableNames());
+        assertEquals(bdd.getConstraintNames(), read.getConstraintNames());
+        FeatureModelBdd.Query query = read.newQuery();
+        for (int call = 0; call < 100; call++) {
+            int[] constraints = randomSubset(random);
+            assertEquals(bruteForce(clauses, constraints), query.isConsistent(constraints));
+        }
+
+        Files.writeString(file, "not a BDD");
+        assertThrows(IOException.class, () -> FeatureModelBdd.read(file));
+    }
+
+    @Test
+    void testNodeLimit() {
+        int[][][] clauses = randomClauses(new Random(3));
+        FeatureModelBdd bdd = compile(clauses, FeatureModelBdd.DEFAULT_MAX_NODES);
+
+        assertNull(compile(clauses, bdd.size() - 1));
+        assertNull(compile(clauses, 4));
+    }
+}
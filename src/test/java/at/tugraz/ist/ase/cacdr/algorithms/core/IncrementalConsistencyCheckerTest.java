@@ -0,0 +1,75 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.eval.CAEvaluator;
+import at.tugraz.ist.ase.cdrmodel.test.model.TestModel4;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static at.tugraz.ist.ase.cacdr.algorithms.core.IncrementalConsistencyChecker.COUNTER_POSTED_CONSTRAINTS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.IncrementalConsistencyChecker.COUNTER_UNPOSTED_CONSTRAINTS;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.getCounter;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalConsistencyCheckerTest {
+
+    @Test
+    void testPostsTheDifference() {
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+        // the plain checker gets a model of its own, since the incremental checker keeps its constraints posted
+        TestModel4 referenceModel = new TestModel4();
+        referenceModel.initialize();
+
+        ConstraintIndex index = new ConstraintIndex(testModel.getCorrectConstraints(), testModel.getPossiblyFaultyConstraints());
+        IncrementalConsistencyChecker checker = new IncrementalConsistencyChecker(testModel);
+        ChocoConsistencyChecker reference = new ChocoConsistencyChecker(referenceModel);
+
+        List<Constraint> C = new ArrayList<>(testModel.getPossiblyFaultyConstraints());
+        ConstraintSet B = ConstraintSet.of(index, testModel.getCorrectConstraints());
+        Random random = new Random(42);
+        ConstraintSet previous = null;
+        for (int i = 0; i < 50; i++) {
+            List<Constraint> subset = new ArrayList<>();
+            for (Constraint c : C) {
+                if (random.nextInt(3) > 0) {
+                    subset.add(c);
+                }
+            }
+            ConstraintSet check = B.union(ConstraintSet.of(index, subset));
+
+            CAEvaluator.reset();
+            boolean consistent = checker.isConsistent(check);
+
+            // only the difference to the previous check is posted and unposted
+            assertEquals(previous == null ? check.size() : check.difference(previous).size(),
+                    getCounter(COUNTER_POSTED_CONSTRAINTS));
+            assertEquals(previous == null ? 0 : previous.difference(check).size(),
+                    getCounter(COUNTER_UNPOSTED_CONSTRAINTS));
+            assertEquals(0, checker.distance(check));
+
+            // the same result as posting and unposting the whole set
+            List<Constraint> referenceCheck = new ArrayList<>();
+            referenceModel.getCorrectConstraints().stream().filter(check::contains).forEach(referenceCheck::add);
+            referenceModel.getPossiblyFaultyConstraints().stream().filter(check::contains).forEach(referenceCheck::add);
+            assertEquals(reference.isConsistent(referenceCheck), consistent, "check " + i + ": " + check);
+
+            previous = check;
+        }
+
+        // other collections are checked after unposting the posted constraints
+        List<Constraint> all = new ArrayList<>(testModel.getCorrectConstraints());
+        all.addAll(C);
+        List<Constraint> referenceAll = new ArrayList<>(referenceModel.getCorrectConstraints());
+        referenceAll.addAll(referenceModel.getPossiblyFaultyConstraints());
+        assertEquals(reference.isConsistent(referenceAll), checker.isConsistent(all));
+        assertEquals(B.size(), checker.distance(B));
+
+        checker.dispose();
+        reference.dispose();
+    }
+}
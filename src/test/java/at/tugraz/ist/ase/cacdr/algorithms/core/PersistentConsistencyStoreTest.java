@@ -0,0 +1,164 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentConsistencyStoreTest {
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+    private Path directory;
+    private long modelFingerprint;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        constraints = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+        index = new ConstraintIndex(constraints);
+        directory = Files.createTempDirectory("ccstore");
+        modelFingerprint = PersistentConsistencyStore.fingerprintOf(constraints);
+    }
+
+    private CCKey key(int from, int to) {
+        return ConstraintSet.of(index, constraints.subList(from, to)).key();
+    }
+
+    @Test
+    void testPersistence() throws IOException {
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            store.put(key(0, 5), true);
+            store.put(key(3, 10), false);
+            store.put(key(0, 5), true); // already stored
+
+            assertEquals(2, store.size());
+            assertEquals(Boolean.TRUE, store.get(key(0, 5)));
+            assertNull(store.get(key(0, 6)));
+        }
+
+        // a new run with another ConstraintIndex
+        ConstraintIndex other = new ConstraintIndex(constraints.subList(5, 10), constraints.subList(0, 5));
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            assertEquals(Boolean.TRUE, store.get(ConstraintSet.of(other, constraints.subList(0, 5)).key()));
+            assertEquals(Boolean.FALSE, store.get(ConstraintSet.of(other, constraints.subList(3, 10)).key()));
+        }
+    }
+
+    @Test
+    void testRecordsOfAnotherStore() throws IOException {
+        try (PersistentConsistencyStore reader = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            assertNull(reader.get(key(1, 4)));
+
+            try (PersistentConsistencyStore writer = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+                writer.put(key(1, 4), false);
+            }
+
+            assertEquals(Boolean.FALSE, reader.get(key(1, 4))); // visible after a miss
+        }
+    }
+
+    @Test
+    void testIncompleteRecord() throws IOException {
+        Path file;
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            store.put(key(0, 2), true);
+            file = store.getFile();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) { // a crashed writer
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5}),
+                    PersistentConsistencyStore.HEADER_SIZE + PersistentConsistencyStore.RECORD_SIZE);
+        }
+
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            assertEquals(1, store.size());
+            assertEquals(Boolean.TRUE, store.get(key(0, 2)));
+            store.put(key(0, 3), false);
+        }
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            assertEquals(2, store.size());
+            assertEquals(Boolean.FALSE, store.get(key(0, 3)));
+        }
+    }
+
+    @Test
+    void testGrowth() throws IOException {
+        List<Constraint> many = new ArrayList<>();
+        for (int i = 0; i < 14; i++) {
+            many.add(new Constraint("c" + i));
+        }
+        ConstraintIndex manyIndex = new ConstraintIndex(many);
+        long fingerprint = PersistentConsistencyStore.fingerprintOf(many);
+        int numSets = 10000; // more than the first mapping holds
+
+        try (PersistentConsistencyStore reader = PersistentConsistencyStore.open(directory, fingerprint)) {
+            try (PersistentConsistencyStore writer = PersistentConsistencyStore.open(directory, fingerprint)) {
+                for (int mask = 1; mask <= numSets; mask++) {
+                    writer.put(key(manyIndex, many, mask), mask % 3 == 0);
+                }
+                assertEquals(numSets, writer.size());
+            }
+
+            // mapped again after a miss
+            for (int mask = numSets; mask >= 1; mask--) {
+                assertEquals(mask % 3 == 0, reader.get(key(manyIndex, many, mask)));
+            }
+            assertEquals(numSets, reader.size());
+        }
+    }
+
+    private static CCKey key(ConstraintIndex index, List<Constraint> constraints, int mask) {
+        List<Constraint> subset = new ArrayList<>();
+        for (int i = 0; i < constraints.size(); i++) {
+            if ((mask & (1 << i)) != 0) {
+                subset.add(constraints.get(i));
+            }
+        }
+        return ConstraintSet.of(index, subset).key();
+    }
+
+    @Test
+    void testClosed() throws IOException {
+        PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint);
+        store.put(key(0, 5), true);
+        store.close();
+
+        assertNull(store.get(key(0, 5)));
+        store.put(key(0, 6), true);
+        try (PersistentConsistencyStore reopened = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            assertEquals(Boolean.TRUE, reopened.get(key(0, 5)));
+            assertNull(reopened.get(key(0, 6)));
+        }
+    }
+
+    @Test
+    void testOtherModel() throws IOException {
+        long otherFingerprint = PersistentConsistencyStore.fingerprintOf(constraints.subList(0, 9));
+        assertNotEquals(modelFingerprint, otherFingerprint);
+
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, modelFingerprint)) {
+            store.put(key(0, 5), true);
+        }
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory, otherFingerprint)) {
+            assertNull(store.get(key(0, 5)));
+        }
+    }
+
+    @Test
+    void testDuplicateNames() {
+        long duplicates = PersistentConsistencyStore.fingerprintOf(List.of(new Constraint("c0"), new Constraint("c0")));
+        assertNotEquals(PersistentConsistencyStore.fingerprintOf(List.of(new Constraint("c0"), new Constraint("c1"))), duplicates);
+        assertNotEquals(PersistentConsistencyStore.fingerprintOf(List.of(new Constraint("c0"))), duplicates);
+    }
+}
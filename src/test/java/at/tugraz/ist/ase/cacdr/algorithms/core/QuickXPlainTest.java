@@ -0,0 +1,66 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuickXPlainTest {
+
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+    private List<ConstraintSet> conflicts;
+
+    @BeforeEach
+    void setUp() {
+        constraints = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+        index = new ConstraintIndex(constraints);
+
+        // the minimal conflicts
+        conflicts = List.of(of(7, 23, 31), of(12, 35));
+    }
+
+    private ConstraintSet of(int... indexes) {
+        List<Constraint> C = new ArrayList<>();
+        for (int i : indexes) {
+            C.add(constraints.get(i));
+        }
+        return ConstraintSet.of(index, C);
+    }
+
+    private CheckOutcome check(ConstraintSet S) {
+        return CheckOutcome.of(conflicts.stream().noneMatch(conflict -> conflict.isSubsetOf(S)));
+    }
+
+    @Test
+    void testFindConflict() throws InterruptedException {
+        ConstraintSet B = ConstraintSet.of(index, constraints.subList(0, 5));
+        ConstraintSet C = ConstraintSet.of(index, constraints.subList(5, 40));
+
+        QuickXPlain quickXPlain = new QuickXPlain(this::check, 100);
+        ConstraintSet conflict = quickXPlain.findConflict(C, B);
+
+        assertNotNull(conflict);
+        assertTrue(B.isSubsetOf(conflict));
+        assertEquals(CheckOutcome.INCONSISTENT, check(conflict));
+        ConstraintSet minimal = conflict.difference(B);
+        assertTrue(minimal.equals(of(7, 23, 31)) || minimal.equals(of(12, 35)), minimal.toString());
+        assertTrue(quickXPlain.getNumChecks() > 0);
+    }
+
+    @Test
+    void testAborted() throws InterruptedException {
+        ConstraintSet B = ConstraintSet.empty(index);
+        ConstraintSet C = ConstraintSet.of(index, constraints);
+
+        assertNull(new QuickXPlain(this::check, 2).findConflict(C, B)); // too few checks
+        assertNull(new QuickXPlain(S -> CheckOutcome.UNKNOWN, 100).findConflict(C, B));
+    }
+}
@@ -0,0 +1,202 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SatSolverTest {
+
+    private static boolean isSatisfied(int[] clause, int assignment) {
+        for (int l : clause) {
+            boolean value = ((assignment >>> (Math.abs(l) - 1)) & 1) == 1;
+            if (value == l > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if an assignment of the variables satisfies all clauses and assumptions
+     */
+    private static boolean bruteForce(int numVars, List<int[]> clauses, int[] assumptions) {
+        for (int assignment = 0; assignment < 1 << numVars; assignment++) {
+            int a = assignment;
+            boolean sat = clauses.stream().allMatch(clause -> isSatisfied(clause, a));
+            for (int l : assumptions) {
+                sat &= isSatisfied(new int[]{l}, a);
+            }
+            if (sat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] randomClause(Random random, int numVars, int width) {
+        int[] clause = new int[width];
+        for (int i = 0; i < width; i++) {
+            int v = random.nextInt(numVars) + 1;
+            clause[i] = random.nextBoolean() ? v : -v;
+        }
+        return clause;
+    }
+
+    @Test
+    void testRandomFormulasWithAssumptions() {
+        Random random = new Random(42);
+        int numVars = 12;
+        for (int round = 0; round < 50; round++) {
+            SatSolver solver = new SatSolver();
+            for (int v = 0; v < numVars; v++) {
+                solver.newVar();
+            }
+            List<int[]> clauses = new ArrayList<>();
+            boolean ok = true;
+            for (int i = 0; i < 40 + random.nextInt(20); i++) {
+                int[] clause = randomClause(random, numVars, 3);
+                clauses.add(clause);
+                ok &= solver.addClause(clause);
+            }
+
+            // several calls on the same solver, which keeps its learned clauses
+            for (int call = 0; call < 10; call++) {
+                int[] assumptions = randomClause(random, numVars, random.nextInt(4));
+                boolean expected = bruteForce(numVars, clauses, assumptions);
+
+                CheckOutcome outcome = solver.solve(assumptions, CheckBudget.UNLIMITED, () -> false);
+                assertEquals(CheckOutcome.of(expected), outcome);
+                if (expected) {
+                    assertTrue(ok);
+                    for (int[] clause : clauses) {
+                        assertTrue(isSatisfied(clause, model(solver, numVars)));
+                    }
+                    for (int l : assumptions) {
+                        assertEquals(l > 0, solver.value(Math.abs(l)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int model(SatSolver solver, int numVars) {
+        int assignment = 0;
+        for (int v = 1; v <= numVars; v++) {
+            if (solver.value(v)) {
+                assignment |= 1 << (v - 1);
+            }
+        }
+        return assignment;
+    }
+
+    @Test
+    void testPigeonholeKeepsLearnedClauses() {
+        // 6 pigeons in 5 holes, selected by the assumption of the selector variable
+        int pigeons = 6;
+        int holes = 5;
+        SatSolver solver = new SatSolver();
+        int[][] p = new int[pigeons][holes];
+        for (int i = 0; i < pigeons; i++) {
+            for (int j = 0; j < holes; j++) {
+                p[i][j] = solver.newVar();
+            }
+        }
+        int selector = solver.newVar();
+        for (int i = 0; i < pigeons; i++) {
+            int[] clause = Arrays.copyOf(p[i], holes + 1);
+            clause[holes] = i == pigeons - 1 ? -selector : p[i][0]; // the last pigeon only if selected
+            assertTrue(solver.addClause(clause));
+        }
+        for (int j = 0; j < holes; j++) {
+            for (int i = 0; i < pigeons; i++) {
+                for (int k = i + 1; k < pigeons; k++) {
+                    assertTrue(solver.addClause(-p[i][j], -p[k][j]));
+                }
+            }
+        }
+
+        assertEquals(CheckOutcome.INCONSISTENT, solver.solve(new int[]{selector}, CheckBudget.UNLIMITED, () -> false));
+        long conflicts = solver.getNumConflicts();
+        assertTrue(conflicts > 0);
+        assertTrue(solver.numLearnts() > 0);
+
+        assertEquals(CheckOutcome.CONSISTENT, solver.solve(new int[]{-selector}, CheckBudget.UNLIMITED, () -> false));
+        assertEquals(CheckOutcome.INCONSISTENT, solver.solve(new int[]{selector}, CheckBudget.UNLIMITED, () -> false));
+        assertTrue(solver.getNumConflicts() - conflicts < conflicts); // the learned clauses are reused
+    }
+
+    @Test
+    void testBudget() {
+        SatSolver solver = new SatSolver();
+        int v = solver.newVar();
+        solver.addClause(v);
+
+        assertEquals(CheckOutcome.UNKNOWN, solver.solve(new int[0], new CheckBudget(0, 0, 1), () -> true));
+        assertEquals(CheckOutcome.CONSISTENT, solver.solve(new int[0], CheckBudget.UNLIMITED, () -> false));
+        assertEquals(CheckOutcome.INCONSISTENT, solver.solve(new int[]{-v}, CheckBudget.UNLIMITED, () -> false));
+        assertFalse(solver.addClause(-v));
+        assertEquals(CheckOutcome.INCONSISTENT, solver.solve(new int[0], CheckBudget.UNLIMITED, () -> false));
+    }
+
+    @Test
+    void testStoppedDuringSearch() {
+        // 10 pigeons in 9 holes, which takes many conflicts to refute
+        int pigeons = 10;
+        int holes = 9;
+        SatSolver solver = new SatSolver();
+        int[][] p = new int[pigeons][holes];
+        for (int i = 0; i < pigeons; i++) {
+            for (int j = 0; j < holes; j++) {
+                p[i][j] = solver.newVar();
+            }
+            assertTrue(solver.addClause(p[i]));
+        }
+        for (int j = 0; j < holes; j++) {
+            for (int i = 0; i < pigeons; i++) {
+                for (int k = i + 1; k < pigeons; k++) {
+                    assertTrue(solver.addClause(-p[i][j], -p[k][j]));
+                }
+            }
+        }
+
+        // stopped at the fourth check, i.e., after about three intervals of conflicts and decisions
+        AtomicInteger checks = new AtomicInteger();
+        assertEquals(CheckOutcome.UNKNOWN, solver.solve(new int[0], CheckBudget.UNLIMITED, () -> checks.incrementAndGet() > 3));
+        assertEquals(4, checks.get());
+        long steps = solver.getNumConflicts() + solver.getNumDecisions();
+        System.out.println("Conflicts and decisions until stopped: " + steps);
+        assertTrue(steps >= 3 * 256 && steps < 4 * 256, "stopped after " + steps + " conflicts and decisions");
+    }
+
+    @Test
+    void testPropagate() {
+        // a => b, b => c, a & c => false
+        SatSolver solver = new SatSolver();
+        int a = solver.newVar();
+        int b = solver.newVar();
+        int c = solver.newVar();
+        solver.addClause(-a, b);
+        solver.addClause(-b, c);
+        solver.addClause(-a, -c);
+
+        assertEquals(CheckOutcome.INCONSISTENT, solver.propagate(new int[]{a}));
+        assertEquals(CheckOutcome.INCONSISTENT, solver.propagate(new int[]{b, -c}));
+        assertEquals(CheckOutcome.UNKNOWN, solver.propagate(new int[]{b}));
+        assertEquals(CheckOutcome.UNKNOWN, solver.propagate(new int[]{-a, -c})); // no search after the propagation
+        assertEquals(CheckOutcome.CONSISTENT, solver.solve(new int[]{b}, CheckBudget.UNLIMITED, () -> false));
+    }
+
+    @Test
+    void testLuby() {
+        long[] expected = {1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], SatSolver.luby(i + 1));
+        }
+    }
+}
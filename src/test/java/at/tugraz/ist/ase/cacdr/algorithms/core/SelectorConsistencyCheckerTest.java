@@ -0,0 +1,60 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.cacdr.eval.CAEvaluator;
+import at.tugraz.ist.ase.cdrmodel.test.model.TestModel4;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static at.tugraz.ist.ase.cacdr.algorithms.core.SelectorConsistencyChecker.COUNTER_SNAPSHOT_HITS;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.getCounter;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectorConsistencyCheckerTest {
+
+    @Test
+    void testSnapshotsGiveTheSameResults() {
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+        SelectorConsistencyChecker checker = new SelectorConsistencyChecker(testModel);
+
+        List<Set<Constraint>> checks = new ArrayList<>();
+        // growing sets, as FastDiag and the lookahead check them, which start from the snapshot of the previous set
+        List<Constraint> C = new ArrayList<>(testModel.getPossiblyFaultyConstraints());
+        Set<Constraint> S = new LinkedHashSet<>(testModel.getCorrectConstraints());
+        for (Constraint c : C) {
+            S.add(c);
+            checks.add(new LinkedHashSet<>(S));
+        }
+        // and random sets, which pop the snapshots
+        Random random = new Random(42);
+        for (int i = 0; i < 10; i++) {
+            Set<Constraint> R = new LinkedHashSet<>(testModel.getCorrectConstraints());
+            C.stream().filter(c -> random.nextBoolean()).forEach(R::add);
+            checks.add(R);
+        }
+
+        CAEvaluator.reset();
+        long hits = 0;
+        for (Set<Constraint> check : checks) {
+            long before = getCounter(COUNTER_SNAPSHOT_HITS);
+            boolean consistent = checker.isConsistent(check);
+            hits += getCounter(COUNTER_SNAPSHOT_HITS) - before;
+
+            // a checker without the snapshots of the previous checks
+            TestModel4 freshModel = new TestModel4();
+            freshModel.initialize();
+            SelectorConsistencyChecker fresh = new SelectorConsistencyChecker(freshModel);
+            assertEquals(fresh.isConsistent(check), consistent, check.toString());
+            fresh.dispose();
+        }
+        assertTrue(hits > 0, "no check has started from a snapshot");
+        assertTrue(checker.getNumSnapshots() > 0);
+        checker.dispose();
+    }
+}
@@ -0,0 +1,37 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WarmUpTest {
+
+    @Test
+    void testSyntheticChecks() {
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+        ConstraintIndex index = new ConstraintIndex(constraints);
+        ConstraintSet B = ConstraintSet.of(index, constraints.subList(0, 2));
+        ConstraintSet C = ConstraintSet.of(index, constraints.subList(2, 8));
+
+        List<ConstraintSet> checks = WarmUp.syntheticChecks(C, B, 10);
+
+        assertEquals(10, checks.size());
+        assertEquals(B.union(C), checks.get(0));
+        assertEquals(B.union(C.leftHalf()), checks.get(1));
+        assertEquals(B.union(C.leftHalf().rightHalf()), checks.get(2));
+        for (ConstraintSet check : checks) {
+            assertTrue(check.containsAll(B));
+            assertTrue(check.size() > B.size());
+        }
+
+        // starts again with the whole C after reaching a singleton
+        assertTrue(checks.subList(3, 10).contains(B.union(C)));
+    }
+}
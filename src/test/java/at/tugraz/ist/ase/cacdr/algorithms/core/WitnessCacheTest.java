@@ -0,0 +1,79 @@
+package at.tugraz.ist.ase.cacdr.algorithms.core;
+
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WitnessCacheTest {
+
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+    private WitnessCache cache;
+
+    @BeforeEach
+    void setUp() {
+        constraints = new ArrayList<>();
+        String[] variableNames = new String[70];
+        for (int i = 0; i < 70; i++) {
+            constraints.add(new Constraint("c" + i));
+            variableNames[i] = "f" + i;
+        }
+        index = new ConstraintIndex(constraints);
+
+        // the constraint ci is satisfied if the variable fi is true
+        cache = new WitnessCache(index, variableNames, solution -> {
+            List<Constraint> satisfied = new ArrayList<>();
+            for (int i = 0; i < constraints.size(); i++) {
+                if ((solution[i >>> 6] >>> i & 1L) != 0) {
+                    satisfied.add(constraints.get(i));
+                }
+            }
+            return satisfied;
+        }, 2);
+    }
+
+    private long[] solution(int from, int to) {
+        long[] bits = new long[2];
+        for (int i = from; i < to; i++) {
+            bits[i >>> 6] |= 1L << i;
+        }
+        return bits;
+    }
+
+    private ConstraintSet set(int from, int to) {
+        return ConstraintSet.of(index, constraints.subList(from, to));
+    }
+
+    @Test
+    void testCovers() {
+        assertFalse(cache.covers(set(0, 10)));
+
+        cache.add(solution(0, 68));
+        assertTrue(cache.covers(set(0, 10)));
+        assertTrue(cache.covers(set(60, 68)));
+        assertFalse(cache.covers(set(60, 70)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testDominatedAndEviction() {
+        cache.add(solution(0, 40));
+        cache.add(solution(10, 20)); // dominated by the first witness
+        assertEquals(1, cache.size());
+
+        cache.add(solution(40, 50));
+        cache.add(solution(50, 70)); // evicts the first witness
+        assertEquals(2, cache.size());
+        assertFalse(cache.covers(set(0, 10)));
+        assertTrue(cache.covers(set(40, 50)));
+        assertTrue(cache.covers(set(55, 70)));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -1,17 +1,26 @@
 package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp;
 
 import at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckBudget;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConsistencyCache;
+import at.tugraz.ist.ase.cacdr.algorithms.core.PersistentConsistencyStore;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
 import at.tugraz.ist.ase.cacdr.eval.CAEvaluator;
 import at.tugraz.ist.ase.cdrmodel.test.model.*;
 import at.tugraz.ist.ase.kb.core.Constraint;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Set;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3.TIMER_FASTDIAGV3;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.CCManager.COUNTER_STOPPED_CHECKS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.ConsistencyCache.COUNTER_CACHE_HIT;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.PersistentConsistencyStore.COUNTER_STORE_HIT;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6.TIMER_FASTDIAGPV6;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.ConsistencyCheckWorker.COUNTER_CONSISTENCY_CHECKS_IN_WORKER;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.ConsistencyCheckWorkerV6.COUNTER_UNKNOWN_CHECKS_IN_WORKER;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.LookupTable.*;
 import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_CONSISTENCY_CHECKS;
@@ -20,6 +29,7 @@ import static at.tugraz.ist.ase.common.ConstraintUtils.convertToString;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.getCounter;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.setCommonTimer;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class FastDiagPV6Test {
     private final int lookAheadPoolSize = 2;
@@ -270,4 +280,113 @@ class FastDiagPV6Test {
 
         assertEquals(testModel.getExpectedFirstDiagnosis(), firstDiagV3);
     }
-}
\ No newline at end of file
+
+    /**
+     * Resets the counters and sets the timers of a run of FastDiagPV6
+     */
+    private static void resetEvaluator() {
+        CAEvaluator.reset();
+        setCommonTimer(TIMER_SOLVER);
+        setCommonTimer(TIMER_FASTDIAGPV6);
+        setCommonTimer(TIMER_LOOKUP_ALTERNATIVE);
+        setCommonTimer(TIMER_LOOKUP_GET);
+        setCommonTimer(TIMER_CLEANUP);
+    }
+
+    @Test
+    void testFindDiagnosisWithSharedStore() throws Exception {
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+
+        Set<Constraint> C = testModel.getPossiblyFaultyConstraints();
+        Set<Constraint> B = testModel.getCorrectConstraints();
+
+        Path directory = Files.createTempDirectory("ccstore");
+        try (PersistentConsistencyStore store = PersistentConsistencyStore.open(directory,
+                PersistentConsistencyStore.fingerprintOf(C, B))) {
+            // the first engine fills the store
+            FastDiagPV6 first = new FastDiagPV6(testModel, lookAheadPoolSize, checkerPoolSize, maxLevel);
+            first.setConsistencyStore(store);
+
+            resetEvaluator();
+            assertEquals(testModel.getExpectedFirstDiagnosis(), first.findDiagnosis(C, B));
+            // the workers race with the main thread, hence, the checks of both are compared
+            long checks = getCounter(COUNTER_CONSISTENCY_CHECKS) + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
+
+            // a warm rerun on a new engine
+            FastDiagPV6 second = new FastDiagPV6(testModel, lookAheadPoolSize, checkerPoolSize, maxLevel);
+            second.setConsistencyStore(store);
+
+            resetEvaluator();
+            assertEquals(testModel.getExpectedFirstDiagnosis(), second.findDiagnosis(C, B));
+
+            System.out.println("=========================================");
+            System.out.println("Warm rerun with a shared PersistentConsistencyStore:");
+            System.out.println("CC (main + workers): " + checks + " -> "
+                    + (getCounter(COUNTER_CONSISTENCY_CHECKS) + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER)));
+            System.out.println("Store hits: " + getCounter(COUNTER_STORE_HIT));
+
+            assertTrue(getCounter(COUNTER_STORE_HIT) > 0);
+            assertTrue(getCounter(COUNTER_CONSISTENCY_CHECKS) + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER) < checks);
+        }
+    }
+
+    @Test
+    void testFindDiagnosisWithSharedCache() throws Exception {
+        ConsistencyCache cache = new ConsistencyCache(1024);
+
+        // the first engine fills the cache
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+        FastDiagPV6 first = new FastDiagPV6(testModel, lookAheadPoolSize, checkerPoolSize, maxLevel);
+        first.setConsistencyCache(cache);
+
+        resetEvaluator();
+        assertEquals(testModel.getExpectedFirstDiagnosis(),
+                first.findDiagnosis(testModel.getPossiblyFaultyConstraints(), testModel.getCorrectConstraints()));
+        long checksInWorker = getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
+
+        // a second engine on another instance of the model, i.e., with another ConstraintIndex
+        TestModel4 otherModel = new TestModel4();
+        otherModel.initialize();
+        FastDiagPV6 second = new FastDiagPV6(otherModel, lookAheadPoolSize, checkerPoolSize, maxLevel);
+        second.setConsistencyCache(cache);
+
+        resetEvaluator();
+        assertEquals(otherModel.getExpectedFirstDiagnosis(),
+                second.findDiagnosis(otherModel.getPossiblyFaultyConstraints(), otherModel.getCorrectConstraints()));
+
+        System.out.println("=========================================");
+        System.out.println("Second engine with a shared ConsistencyCache:");
+        System.out.println("CC in workers: " + checksInWorker + " -> " + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER));
+        System.out.println(cache);
+
+        assertTrue(getCounter(COUNTER_CACHE_HIT) > 0);
+        assertTrue(getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER) < checksInWorker);
+    }
+
+    @Test
+    void testFindDiagnosisWithStoppedChecks() throws Exception {
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+
+        // the CheckGuard stops each search of a worker after its first node
+        FastDiagPV6 fdp = new FastDiagPV6(testModel, lookAheadPoolSize, checkerPoolSize, maxLevel);
+        fdp.setCheckBudget(new CheckBudget(0, 0, 1));
+
+        resetEvaluator();
+        Set<Constraint> diag = fdp.findDiagnosis(testModel.getPossiblyFaultyConstraints(), testModel.getCorrectConstraints());
+
+        System.out.println("=========================================");
+        System.out.println("FastDiagPV6 with stopped worker checks:");
+        System.out.println("Stopped: " + getCounter(COUNTER_STOPPED_CHECKS));
+        System.out.println("CC: " + getCounter(COUNTER_CONSISTENCY_CHECKS));
+        System.out.println("CC in workers: " + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER));
+
+        assertTrue(getCounter(COUNTER_STOPPED_CHECKS) > 0, "no search has been stopped");
+        assertEquals(getCounter(COUNTER_STOPPED_CHECKS), getCounter(COUNTER_UNKNOWN_CHECKS_IN_WORKER));
+        // the main thread checks the sets it needs itself, without a budget
+        assertTrue(getCounter(COUNTER_CONSISTENCY_CHECKS) > 0);
+        assertEquals(testModel.getExpectedFirstDiagnosis(), diag);
+    }
+}
@@ -0,0 +1,120 @@
+package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6;
+
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.CCSTATE;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistencyCheckResultV6Test {
+
+    private ConsistencyCheckResultV6 createResult() {
+        List<Constraint> C = List.of(new Constraint("c1"), new Constraint("c2"));
+        return new ConsistencyCheckResultV6(ConstraintSet.of(new ConstraintIndex(C), C));
+    }
+
+    @Test
+    void testStateTransitions() {
+        ConsistencyCheckResultV6 result = createResult();
+        assertTrue(result.isInQueue());
+        assertEquals(CCSTATE.IN_QUEUE, result.getStatus());
+
+        assertTrue(result.tryStart());
+        assertFalse(result.tryStart()); // already claimed
+        assertEquals(CCSTATE.IN_PROGRESS, result.getStatus());
+        assertFalse(result.isDone());
+
+        assertTrue(result.setConsistency(false, 1));
+        assertFalse(result.setConsistency(true, 2)); // already done
+        assertTrue(result.isDone());
+        assertFalse(result.isConsistent());
+        assertEquals(1, result.getThreadId());
+        assertEquals(Boolean.FALSE, result.getFuture().getNow(null));
+        assertFalse(result.tryStart());
+    }
+
+    @Test
+    void testUnknown() {
+        ConsistencyCheckResultV6 result = createResult();
+        assertFalse(result.setUnknown()); // not started
+        assertFalse(result.isIrrelevant());
+
+        assertTrue(result.tryStart());
+        assertTrue(result.setUnknown());
+        assertTrue(result.isUnknown());
+        assertFalse(result.isDone());
+        assertEquals(CCSTATE.UNKNOWN, result.getStatus());
+        CompletableFuture<Boolean> stopped = result.getFuture();
+        assertTrue(stopped.isDone());
+        assertNull(stopped.getNow(true));
+
+        assertTrue(result.tryStart()); // claimed again, e.g., by the main thread
+        assertNotSame(stopped, result.getFuture()); // a new attempt
+        assertFalse(result.getFuture().isDone());
+        assertTrue(result.setConsistency(true, 1));
+        assertTrue(result.isConsistent());
+        assertTrue(result.isIrrelevant());
+        assertEquals(Boolean.TRUE, result.getFuture().getNow(null));
+        assertNull(stopped.getNow(true));
+    }
+
+    @Test
+    void testInferredDuringNewAttempt() {
+        ConsistencyCheckResultV6 result = createResult();
+        assertTrue(result.tryStart());
+        assertTrue(result.setUnknown());
+        assertTrue(result.tryStart());
+        assertTrue(result.setUnknown()); // stopped again
+
+        CompletableFuture<Boolean> stopped = result.getFuture();
+        assertTrue(result.setConsistency(false, 1)); // inferred while unknown
+        assertFalse(result.tryStart());
+        assertEquals(Boolean.FALSE, result.getFuture().getNow(null));
+        assertNull(stopped.getNow(true)); // the future of the stopped attempt keeps null
+        assertFalse(result.isConsistent());
+    }
+
+    @Test
+    void testCancel() {
+        ConsistencyCheckResultV6 result = createResult();
+        assertTrue(result.tryStart());
+        result.cancel();
+        assertTrue(result.isIrrelevant());
+        assertFalse(result.isDone());
+    }
+
+    @Test
+    void testConcurrentClaim() throws InterruptedException {
+        ConsistencyCheckResultV6 result = createResult();
+        AtomicInteger claimed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                if (result.tryStart()) {
+                    claimed.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(1, claimed.get());
+    }
+}
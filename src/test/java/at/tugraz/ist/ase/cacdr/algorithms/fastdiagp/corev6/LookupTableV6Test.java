@@ -0,0 +1,214 @@
+package at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6;
+
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
+import at.tugraz.ist.ase.cacdr.eval.CAEvaluator;
+import at.tugraz.ist.ase.cdrmodel.test.model.TestModel4;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.ConsistencyCheckWorkerV6.COUNTER_CONSISTENCY_CHECKS_IN_WORKER;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookupTableV6.COUNTER_CLAIMED_CC;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookupTableV6.COUNTER_INFERRED_CC;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookupTableV6.COUNTER_PRUNED_CC;
+import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_CONSISTENCY_CHECKS;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.getCounter;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookupTableV6Test {
+    private List<Constraint> constraints;
+    private ConstraintIndex index;
+    private LookupTableV6 lookupTable;
+
+    @BeforeEach
+    void setUp() {
+        constraints = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+        index = new ConstraintIndex(constraints);
+        lookupTable = new LookupTableV6(index);
+        CAEvaluator.reset();
+    }
+
+    private ConstraintSet setOf(int... indexes) {
+        List<Constraint> C = new ArrayList<>();
+        for (int i : indexes) {
+            C.add(constraints.get(i));
+        }
+        return ConstraintSet.of(index, C);
+    }
+
+    private ConsistencyCheckResultV6 putPending(ConstraintSet C) {
+        ConsistencyCheckResultV6 result = new ConsistencyCheckResultV6(C);
+        lookupTable.put(result.getKey(), result);
+        return result;
+    }
+
+    private ConsistencyCheckResultV6 putDone(ConstraintSet C, boolean consistent) {
+        ConsistencyCheckResultV6 result = putPending(C);
+        assertTrue(result.tryStart());
+        assertTrue(result.setConsistency(consistent, 1));
+        lookupTable.putDone(result);
+        return result;
+    }
+
+    @Test
+    void testConsistentSupersetResolvesPendingSubset() {
+        ConsistencyCheckResultV6 subset = putPending(setOf(0, 1));
+        ConsistencyCheckResultV6 other = putPending(setOf(0, 4));
+        assertFalse(subset.isDone());
+
+        putDone(setOf(0, 1, 2, 3), true);
+
+        assertTrue(subset.isDone());
+        assertTrue(subset.isConsistent());
+        assertEquals(Boolean.TRUE, subset.getFuture().getNow(null));
+        assertFalse(other.isDone()); // not a subset
+        assertEquals(1, getCounter(COUNTER_INFERRED_CC));
+
+        // a later subset is resolved when it is put
+        ConsistencyCheckResultV6 later = putPending(setOf(2));
+        assertTrue(later.isConsistent());
+        assertEquals(2, getCounter(COUNTER_INFERRED_CC));
+    }
+
+    @Test
+    void testInconsistentSubsetResolvesPendingSuperset() {
+        ConsistencyCheckResultV6 superset = putPending(setOf(0, 1, 2, 3));
+        ConsistencyCheckResultV6 other = putPending(setOf(0, 2, 3));
+        assertFalse(superset.isDone());
+
+        putDone(setOf(1, 3), false);
+
+        assertTrue(superset.isDone());
+        assertFalse(superset.isConsistent());
+        assertEquals(Boolean.FALSE, superset.getFuture().getNow(null));
+        assertFalse(other.isDone()); // not a superset
+        assertEquals(1, getCounter(COUNTER_INFERRED_CC));
+        // a result, which is done, is not inferred again
+        assertFalse(superset.setConsistency(true, 1));
+    }
+
+    @Test
+    void testCancelledWorkerIsNotCounted() throws CloneNotSupportedException {
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+        CCManager ccManager = new CCManager(1, CheckerType.POST_UNPOST, testModel);
+
+        ConsistencyCheckResultV6 pending = putPending(setOf(0, 1));
+        ConsistencyCheckWorkerV6 worker = new ConsistencyCheckWorkerV6(pending.getC(), ccManager, pending, lookupTable);
+        assertTrue(pending.trySetWorker(worker));
+        ConsistencyCheckResultV6 late = putPending(setOf(0));
+        ConsistencyCheckWorkerV6 lateWorker = new ConsistencyCheckWorkerV6(late.getC(), ccManager, late, lookupTable);
+        assertTrue(late.trySetWorker(lateWorker));
+        CAEvaluator.reset();
+
+        putDone(setOf(0, 1, 2), true);
+
+        // the worker, which has not started yet, is cancelled
+        assertTrue(worker.isCancelled());
+        assertTrue(lateWorker.isCancelled());
+        assertEquals(2, getCounter(COUNTER_INFERRED_CC));
+        assertEquals(2, getCounter(COUNTER_PRUNED_CC));
+
+        // a worker, which starts after the inference, returns the inferred consistency without checking
+        ConsistencyCheckResultV6 started = putPending(setOf(3));
+        ConsistencyCheckWorkerV6 startedWorker = new ConsistencyCheckWorkerV6(started.getC(), ccManager, started, lookupTable);
+        putDone(setOf(3, 4), true);
+        assertEquals(Boolean.TRUE, startedWorker.compute());
+
+        assertEquals(0, getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER));
+        assertEquals(0, getCounter(COUNTER_CONSISTENCY_CHECKS));
+        ccManager.dispose();
+    }
+
+    @Test
+    void testStoppedAttemptIsClaimedAgain() throws Exception {
+        ConsistencyCheckResultV6 result = putPending(setOf(0, 1));
+        for (int i = 0; i < 32; i++) { // checks take a minute, i.e., a waiter would wait long
+            lookupTable.getCheckTimeEstimator().record(TimeUnit.SECONDS.toNanos(60));
+        }
+        assertTrue(result.tryStart()); // by a worker
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return lookupTable.getConsistency(result.getKey());
+            } catch (ExecutionException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(waiter.isDone());
+
+        // the worker is stopped, the waiter gives up at once instead of waiting for the estimated time
+        assertTrue(result.setUnknown());
+        assertNull(waiter.get(5, TimeUnit.SECONDS));
+
+        // the main thread claims the check again and checks it itself
+        assertTrue(lookupTable.claim(result.getKey()));
+        assertFalse(result.getFuture().isDone());
+        assertTrue(result.setConsistency(true, 1));
+        lookupTable.putDone(result);
+
+        assertEquals(Boolean.TRUE, lookupTable.getConsistency(result.getKey()));
+        assertEquals(Boolean.TRUE, result.getFuture().getNow(null));
+        assertEquals(1, getCounter(COUNTER_CLAIMED_CC));
+    }
+
+    @Test
+    void testInferenceAgreesWithChecks() {
+        TestModel4 testModel = new TestModel4();
+        testModel.initialize();
+        index = new ConstraintIndex(testModel.getCorrectConstraints(), testModel.getPossiblyFaultyConstraints());
+        lookupTable = new LookupTableV6(index);
+        ChocoConsistencyChecker checker = new ChocoConsistencyChecker(testModel);
+
+        ConstraintSet B = ConstraintSet.of(index, testModel.getCorrectConstraints());
+        List<Constraint> C = new ArrayList<>(testModel.getPossiblyFaultyConstraints());
+        Random random = new Random(42);
+        List<ConsistencyCheckResultV6> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            List<Constraint> subset = new ArrayList<>();
+            for (Constraint c : C) {
+                if (random.nextInt(4) > 0) {
+                    subset.add(c);
+                }
+            }
+            ConstraintSet S = B.union(ConstraintSet.of(index, subset));
+            if (!lookupTable.contains(S.key())) {
+                results.add(putPending(S));
+            }
+        }
+
+        // check the pending results in random order, the others are inferred from them
+        Collections.shuffle(results, random);
+        CAEvaluator.reset();
+        for (ConsistencyCheckResultV6 result : results) {
+            if (result.tryStart()) {
+                assertTrue(result.setConsistency(checker.isConsistent(result.getC()), 1));
+                lookupTable.putDone(result);
+            }
+        }
+        assertTrue(getCounter(COUNTER_INFERRED_CC) > 0, "no consistency check has been inferred");
+
+        // a later check never contradicts an inferred result
+        for (ConsistencyCheckResultV6 result : results) {
+            assertTrue(result.isDone());
+            assertEquals(checker.isConsistent(result.getC()), result.isConsistent(), result.getC().toString());
+        }
+        checker.dispose();
+    }
+}
@@ -0,0 +1,84 @@
+package at.tugraz.ist.ase.cacdr.algorithms.linux;
+
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
+import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6;
+import at.tugraz.ist.ase.cacdr.core.Combination;
+import at.tugraz.ist.ase.cacdr.core.translator.FMUserRequirementTranslator;
+import at.tugraz.ist.ase.cacdr.eval.CAEvaluator;
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.kb.core.Constraint;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6.TIMER_FASTDIAGPV6;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.ConsistencyCheckWorker.COUNTER_CONSISTENCY_CHECKS_IN_WORKER;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.LookupTable.*;
+import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
+import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_CONSISTENCY_CHECKS;
+import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.printPerformance;
+import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
+
+/**
+ * Runs the variants of FastDiagPV6, i.e., with other checkers or options, on the scenarios of the Linux tests.
+ */
+final class FastDiagPV6Runner {
+
+    private FastDiagPV6Runner() {
+    }
+
+    /**
+     * Runs FastDiagPV6 with the given checkers for the given iterations, and prints the diagnosis
+     * and the given counters of the last run.
+     * @param setup configures the engine before each run
+     * @param variant describes the variant in the output
+     * @return the diagnosis of the last run
+     */
+    static Set<Constraint> run(FeatureModel featureModel, Combination combination, int iterations,
+                               int lookAheadPoolSize, int checkerPoolSize, int maxLevel,
+                               CheckerType checkerType, Consumer<FastDiagPV6> setup,
+                               String variant, String... counters) {
+        double time = 0.0;
+        Set<Constraint> firstDiag = null;
+        for (int i = 0; i < iterations; i++) {
+            System.gc();
+
+            FMModel diagModel = new FMModel(featureModel, combination, new FMUserRequirementTranslator(), true, false);
+            diagModel.initialize();
+
+            Set<Constraint> C = diagModel.getPossiblyFaultyConstraints();
+            Set<Constraint> B = diagModel.getCorrectConstraints();
+
+            // run fastDiagP
+            FastDiagPV6 fdp = new FastDiagPV6(diagModel, lookAheadPoolSize, checkerPoolSize, maxLevel, checkerType);
+            setup.accept(fdp);
+
+            CAEvaluator.reset();
+            setCommonTimer(TIMER_SOLVER);
+            setCommonTimer(TIMER_FASTDIAGPV6);
+            setCommonTimer(TIMER_LOOKUP_ALTERNATIVE);
+            setCommonTimer(TIMER_LOOKUP_GET);
+            setCommonTimer(TIMER_CLEANUP);
+            firstDiag = fdp.findDiagnosis(C, B);
+
+            time += totalCommonTimer(TIMER_FASTDIAGPV6) / 1000000000.0;
+        }
+        time /= iterations;
+
+        System.out.println("=========================================");
+        System.out.println("Preferred diagnosis found by FastDiagPV6 with " + variant + ":");
+        System.out.println(firstDiag);
+        System.out.println("\t\tCardinality: " + firstDiag.size());
+        System.out.println("\t\tRuntime: " + time + " seconds");
+        System.out.println("\t\tCC: " + getCounter(COUNTER_CONSISTENCY_CHECKS));
+        System.out.println("\t\tCC: " + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER));
+        System.out.println("\t\tSolver time: " + totalCommonTimer(TIMER_SOLVER) / 1000000000.0 + " seconds");
+        for (String counter : counters) {
+            System.out.println("\t\t" + counter + ": " + getCounter(counter));
+        }
+        printPerformance();
+
+        return firstDiag;
+    }
+}
@@ -1,6 +1,9 @@
 package at.tugraz.ist.ase.cacdr.algorithms.linux;
 
 import at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
+import at.tugraz.ist.ase.cacdr.algorithms.core.FeatureModelAnalysis;
+import at.tugraz.ist.ase.cacdr.algorithms.core.FeatureModelBdd;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV4;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
@@ -20,11 +23,22 @@ import com.google.common.io.Files;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3.TIMER_FASTDIAGV3;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.BddConsistencyChecker.COUNTER_BDD_CHECKS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.IncrementalConsistencyChecker.COUNTER_POSTED_CONSTRAINTS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.IncrementalConsistencyChecker.COUNTER_UNPOSTED_CONSTRAINTS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.SatConsistencyChecker.COUNTER_SAT_CHECKS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.SelectorConsistencyChecker.COUNTER_SELECTOR_CHECKS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.SelectorConsistencyChecker.COUNTER_SNAPSHOT_HITS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.TwoStageCheck.COUNTER_RESOLVED_BY_PROPAGATION;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.TwoStageCheck.COUNTER_RESOLVED_BY_SEARCH;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV4.TIMER_FASTDIAGPV4;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6.COUNTER_DECIDED_BY_ANALYSIS;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6.TIMER_FASTDIAGPV6;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.ConsistencyCheckWorker.COUNTER_CONSISTENCY_CHECKS_IN_WORKER;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.LookupTable.*;
@@ -32,7 +46,8 @@ import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLV
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_CONSISTENCY_CHECKS;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.printPerformance;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class LinuxTest1 {
@@ -185,4 +200,110 @@ public class LinuxTest1 {
         assertEquals(1, firstDiag.size());
         assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
     }
+
+    @Test
+    @Order(4)
+    void fastDiagPV6WithSelectorCheckers() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.SELECTOR, fdp -> {},
+                "selector checkers", COUNTER_SELECTOR_CHECKS, COUNTER_SNAPSHOT_HITS);
+
+        assertTrue(getCounter(COUNTER_SELECTOR_CHECKS) > 0, "the selector checkers have not been used");
+        assertTrue(getCounter(COUNTER_SNAPSHOT_HITS) > 0, "no selector check has started from a snapshot");
+        assertEquals(1, firstDiag.size());
+        assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
+    }
+
+    @Test
+    @Order(5)
+    void fastDiagPV6WithSatCheckers() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.SAT, fdp -> {},
+                "SAT checkers", COUNTER_SAT_CHECKS);
+
+        assertTrue(getCounter(COUNTER_SAT_CHECKS) > 0, "the SAT checkers have fallen back to Choco");
+        assertEquals(1, firstDiag.size());
+        assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
+    }
+
+    @Test
+    @Order(6)
+    void fastDiagPV6WithBddCheckers() throws IOException {
+        // compiled offline, loaded by the checkers of the first run and kept for the later runs
+        Path directory = Path.of("target", "bdd");
+        FMModel model = new FMModel(featureModel, combination, new FMUserRequirementTranslator(), true, false);
+        model.initialize();
+        FeatureModelBdd compiled = FeatureModelBdd.compileTo(directory, model, FeatureModelBdd.DEFAULT_MAX_NODES);
+        assumeTrue(compiled != null, "the feature model exceeds the node limit of the BDD");
+
+        Set<Constraint> firstDiag;
+        FeatureModelBdd.setDirectory(directory);
+        try {
+            firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                    lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.BDD, fdp -> {},
+                    "BDD checkers (" + compiled.size() + " nodes)", COUNTER_BDD_CHECKS);
+        } finally {
+            FeatureModelBdd.setDirectory(null);
+        }
+
+        assertTrue(getCounter(COUNTER_BDD_CHECKS) > 0, "the BDD checkers have fallen back to Choco");
+        FeatureModelBdd bdd = FeatureModelBdd.of(model);
+        assertNotNull(bdd);
+        assertTrue(bdd.isLoaded(), "the BDD of the checkers has been compiled again");
+        assertEquals(compiled.size(), bdd.size());
+        assertEquals(1, firstDiag.size());
+        assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
+    }
+
+    @Test
+    @Order(7)
+    void fastDiagPV6WithFeatureModelAnalysis() {
+        // computed once, kept for the runs
+        FMModel model = new FMModel(featureModel, combination, new FMUserRequirementTranslator(), true, false);
+        model.initialize();
+        FeatureModelAnalysis analysis = FeatureModelAnalysis.of(model);
+        assertNotNull(analysis);
+        assertTrue(analysis.isConsistent());
+        List<String> inconsistent = model.getUserRequirements().stream()
+                .filter(analysis::isInconsistent)
+                .map(ur -> ur.getConstraint().getName())
+                .toList();
+
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST,
+                fdp -> fdp.setFeatureModelAnalysis(true),
+                "the feature model analysis (" + analysis.getDeadFeatures().size() + " dead, "
+                        + analysis.getCoreFeatures().size() + " core features)", COUNTER_DECIDED_BY_ANALYSIS);
+
+        // the self-inconsistent user requirements are decided without consistency checks
+        assertEquals(inconsistent.size(), getCounter(COUNTER_DECIDED_BY_ANALYSIS));
+        assertTrue(firstDiag.stream().map(Constraint::getName).toList().containsAll(inconsistent));
+        assertEquals(1, firstDiag.size());
+        assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
+    }
+
+    @Test
+    @Order(8)
+    void fastDiagPV6WithTwoStageChecks() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.SAT,
+                fdp -> fdp.setTwoStageChecks(true, 1),
+                "two-stage checks", COUNTER_RESOLVED_BY_PROPAGATION, COUNTER_RESOLVED_BY_SEARCH);
+
+        assertTrue(getCounter(COUNTER_RESOLVED_BY_PROPAGATION) > 0, "no check has been resolved by propagation");
+        assertEquals(1, firstDiag.size());
+        assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
+    }
+
+    @Test
+    @Order(9)
+    void fastDiagPV6WithIncrementalCheckers() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.INCREMENTAL, fdp -> {},
+                "incremental checkers", COUNTER_POSTED_CONSTRAINTS, COUNTER_UNPOSTED_CONSTRAINTS);
+
+        assertTrue(getCounter(COUNTER_POSTED_CONSTRAINTS) > 0, "the incremental checkers have not been used");
+        assertEquals(1, firstDiag.size());
+        assertEquals("[ARCH_INLINE_READ_TRYLOCK=true]", firstDiag.toString());
+    }
 }
@@ -1,6 +1,7 @@
 package at.tugraz.ist.ase.cacdr.algorithms.linux;
 
 import at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV4;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
@@ -24,6 +25,7 @@ import java.util.List;
 import java.util.Set;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3.TIMER_FASTDIAGV3;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.SatConsistencyChecker.COUNTER_SAT_CHECKS;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV4.TIMER_FASTDIAGPV4;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6.TIMER_FASTDIAGPV6;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.ConsistencyCheckWorker.COUNTER_CONSISTENCY_CHECKS_IN_WORKER;
@@ -32,7 +34,7 @@ import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLV
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_CONSISTENCY_CHECKS;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.printPerformance;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class LinuxTest2 {
@@ -186,4 +188,16 @@ public class LinuxTest2 {
         assertEquals(2, firstDiag.size());
         assertEquals("[ARCH_INLINE_SPIN_UNLOCK_IRQ=true, INIT_ALL_POSSIBLE=true]", firstDiag.toString());
     }
+
+    @Test
+    @Order(4)
+    void fastDiagPV6WithSatCheckers() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.SAT, fdp -> {},
+                "SAT checkers", COUNTER_SAT_CHECKS);
+
+        assertTrue(getCounter(COUNTER_SAT_CHECKS) > 0, "the SAT checkers have fallen back to Choco");
+        assertEquals(2, firstDiag.size());
+        assertEquals("[ARCH_INLINE_SPIN_UNLOCK_IRQ=true, INIT_ALL_POSSIBLE=true]", firstDiag.toString());
+    }
 }
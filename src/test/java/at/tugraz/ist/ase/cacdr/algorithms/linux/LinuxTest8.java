@@ -1,6 +1,7 @@
 package at.tugraz.ist.ase.cacdr.algorithms.linux;
 
 import at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerType;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV4;
 import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6;
 import at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker;
@@ -24,15 +25,20 @@ import java.util.List;
 import java.util.Set;
 
 import static at.tugraz.ist.ase.cacdr.algorithms.FastDiagV3.TIMER_FASTDIAGV3;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.QuickXPlain.COUNTER_QUICKXPLAIN_CHECKS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.SatConsistencyChecker.COUNTER_SAT_CHECKS;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.WitnessCache.COUNTER_WITNESSES;
+import static at.tugraz.ist.ase.cacdr.algorithms.core.WitnessCache.COUNTER_WITNESS_HITS;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV4.TIMER_FASTDIAGPV4;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.FastDiagPV6.TIMER_FASTDIAGPV6;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.ConsistencyCheckWorker.COUNTER_CONSISTENCY_CHECKS_IN_WORKER;
 import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.core.LookupTable.*;
+import static at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookupTableV6.COUNTER_CONFLICTS;
 import static at.tugraz.ist.ase.cacdr.checker.ChocoConsistencyChecker.TIMER_SOLVER;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.COUNTER_CONSISTENCY_CHECKS;
 import static at.tugraz.ist.ase.cacdr.eval.CAEvaluator.printPerformance;
 import static at.tugraz.ist.ase.eval.PerformanceEvaluator.*;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class LinuxTest8 {
@@ -189,4 +195,55 @@ public class LinuxTest8 {
         assertEquals("[REED_SOLOMON_ENC16=true, ARCH_INLINE_SPIN_UNLOCK_IRQ=true, ARCH_INLINE_READ_TRYLOCK=true, MGEODEGX1_alt=false, INIT_ALL_POSSIBLE=true, SERIAL_SAMSUNG_UARTS=false, SPLIT_PTLOCK_CPUS=false, GENERIC_ATOMIC64=true]",
                 firstDiag.toString());
     }
+
+    @Test
+    @Order(4)
+    void fastDiagPV6WithConflicts() {
+        Set<Constraint> plainDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST, fdp -> {},
+                "no conflicts");
+        long plainChecks = getCounter(COUNTER_CONSISTENCY_CHECKS) + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
+
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST,
+                fdp -> fdp.setConflictExtraction(true),
+                "conflicts", COUNTER_CONFLICTS, COUNTER_QUICKXPLAIN_CHECKS);
+        // the solver calls of the diagnosis, without the ones of the conflict extraction on spare checkers
+        long checks = getCounter(COUNTER_CONSISTENCY_CHECKS) + getCounter(COUNTER_CONSISTENCY_CHECKS_IN_WORKER);
+        System.out.println("\t\tSolver calls: " + checks + " (without conflicts: " + plainChecks + ")");
+
+        assertTrue(getCounter(COUNTER_CONFLICTS) > 0, "no conflict has been extracted");
+        assertTrue(checks <= plainChecks, "the conflicts have not saved consistency checks");
+        assertEquals(plainDiag, firstDiag);
+        assertEquals(8, firstDiag.size());
+        assertEquals("[REED_SOLOMON_ENC16=true, ARCH_INLINE_SPIN_UNLOCK_IRQ=true, ARCH_INLINE_READ_TRYLOCK=true, MGEODEGX1_alt=false, INIT_ALL_POSSIBLE=true, SERIAL_SAMSUNG_UARTS=false, SPLIT_PTLOCK_CPUS=false, GENERIC_ATOMIC64=true]",
+                firstDiag.toString());
+    }
+
+    @Test
+    @Order(5)
+    void fastDiagPV6WithSatCheckers() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.SAT, fdp -> {},
+                "SAT checkers", COUNTER_SAT_CHECKS);
+
+        assertTrue(getCounter(COUNTER_SAT_CHECKS) > 0, "the SAT checkers have fallen back to Choco");
+        assertEquals(8, firstDiag.size());
+        assertEquals("[REED_SOLOMON_ENC16=true, ARCH_INLINE_SPIN_UNLOCK_IRQ=true, ARCH_INLINE_READ_TRYLOCK=true, MGEODEGX1_alt=false, INIT_ALL_POSSIBLE=true, SERIAL_SAMSUNG_UARTS=false, SPLIT_PTLOCK_CPUS=false, GENERIC_ATOMIC64=true]",
+                firstDiag.toString());
+    }
+
+    @Test
+    @Order(6)
+    void fastDiagPV6WithWitnessCache() {
+        Set<Constraint> firstDiag = FastDiagPV6Runner.run(featureModel, combination, iterations,
+                lookAheadPoolSize, checkerPoolSize, maxLevel, CheckerType.POST_UNPOST,
+                fdp -> assertTrue(fdp.enableWitnessCache(), "the witness cache cannot be enabled"),
+                "the witness cache", COUNTER_WITNESSES, COUNTER_WITNESS_HITS);
+
+        assertTrue(getCounter(COUNTER_WITNESS_HITS) > 0, "no consistency check has been answered by a witness");
+        assertEquals(8, firstDiag.size());
+        assertEquals("[REED_SOLOMON_ENC16=true, ARCH_INLINE_SPIN_UNLOCK_IRQ=true, ARCH_INLINE_READ_TRYLOCK=true, MGEODEGX1_alt=false, INIT_ALL_POSSIBLE=true, SERIAL_SAMSUNG_UARTS=false, SPLIT_PTLOCK_CPUS=false, GENERIC_ATOMIC64=true]",
+                firstDiag.toString());
+    }
 }
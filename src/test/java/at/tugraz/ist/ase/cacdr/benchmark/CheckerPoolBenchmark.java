@@ -0,0 +1,117 @@
+package at.tugraz.ist.ase.cacdr.benchmark;
+
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCManager;
+import at.tugraz.ist.ase.cacdr.algorithms.core.CheckerPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the acquisition and the release of checkers by the lock-free {@link CheckerPool} of {@link CCManager}
+ * with the previous scheme of CCManager, i.e., two semaphores and a scan over the checkers.
+ *
+ * The checkers are plain objects, since only the pool is measured.
+ * Run the main method to measure with 2, 8, 32 and 64 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckerPoolBenchmark {
+
+    /**
+     * The size of the checkerPool, CCManager creates twice as many checkers
+     */
+    @Param({"4", "16"})
+    private int numCheckers;
+
+    private static final int WORK = 32; // tokens of work while holding a checker
+
+    private CheckerPool<Object> pool;
+    private SemaphorePool semaphorePool;
+
+    /**
+     * The previous scheme of CCManager
+     */
+    static class SemaphorePool {
+        private final ConcurrentLinkedQueue<Object> checkers = new ConcurrentLinkedQueue<>();
+        private final ConcurrentMap<Integer, Boolean> usingCheckers = new ConcurrentHashMap<>();
+        private final Semaphore manager_semaphore;
+        private final Semaphore checker_semaphore = new Semaphore(1);
+
+        SemaphorePool(List<Object> checkers, int numCheckers) {
+            for (Object checker : checkers) {
+                this.checkers.add(checker);
+                usingCheckers.put(checker.hashCode(), false);
+            }
+            manager_semaphore = new Semaphore(numCheckers);
+        }
+
+        Object getChecker() throws InterruptedException {
+            manager_semaphore.acquire();
+            checker_semaphore.acquire();
+            Object freeChecker = checkers.stream().filter(checker -> !usingCheckers.get(checker.hashCode())).findFirst().orElse(null);
+            if (freeChecker != null) {
+                usingCheckers.replace(freeChecker.hashCode(), true);
+            }
+            checker_semaphore.release();
+            return freeChecker;
+        }
+
+        void releaseChecker(Object checker) {
+            usingCheckers.replace(checker.hashCode(), false);
+            manager_semaphore.release();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        List<Object> checkers = new ArrayList<>();
+        for (int i = 0; i < numCheckers * 2; i++) {
+            checkers.add(new Object());
+        }
+
+        pool = new CheckerPool<>(checkers);
+        semaphorePool = new SemaphorePool(checkers, numCheckers);
+    }
+
+    @Benchmark
+    public void semaphorePool(Blackhole bh) throws InterruptedException {
+        Object checker = semaphorePool.getChecker();
+        Blackhole.consumeCPU(WORK);
+        bh.consume(checker);
+        semaphorePool.releaseChecker(checker);
+    }
+
+    @Benchmark
+    public void lockFreePool(Blackhole bh) throws InterruptedException {
+        Object checker = pool.take();
+        Blackhole.consumeCPU(WORK);
+        bh.consume(checker);
+        pool.release(checker);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{2, 8, 32, 64}) {
+            Options opt = new OptionsBuilder()
+                    .include(CheckerPoolBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package at.tugraz.ist.ase.cacdr.benchmark;
+
+import at.tugraz.ist.ase.cacdr.core.Combination;
+import at.tugraz.ist.ase.cacdr.core.UserRequirement;
+import at.tugraz.ist.ase.cacdr.core.io.UserRequirementBuilder;
+import at.tugraz.ist.ase.cacdr.core.translator.FMUserRequirementTranslator;
+import at.tugraz.ist.ase.cacdr.model.FMModel;
+import at.tugraz.ist.ase.cacdr.model.FMModelTemplate;
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParser;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.fm.parser.factory.FMParserFactory;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per clone of the Linux model, i.e., the startup cost of each checker of CCManager,
+ * when the clone is created from the {@link FMModelTemplate} and when it is created from the feature model.
+ * compileTemplate measures the one-time cost of the template.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FMModelCloneBenchmark {
+
+    private static final String user_requirement = "QFMT_V1=true,TELCLOCK=true,SELECT_MEMORY_MODEL=true,PERF_COUNTERS=true,HT_IRQ=false,DEBUG_PAGEALLOC=true,X86_DS=true,SERIAL_SH_SCI=false,ARCH_INLINE_READ_TRYLOCK=true,SECURITY_TOMOYO=false,X86_HT=false,KGDB=false,HAVE_DMA_API_DEBUG=true,MCP_UCB1200=true,EFI_VARS=false,GENERIC_TIME=false,HZ_300_alt=true,NLS=false,UIO=true,FTRACE_NMI_ENTER=false,PRINTER=true,SYSVIPC=false,FW_LOADER=true,PCI_DEBUG=false,X86_PLATFORM_DEVICES=true,SERIAL_S3C2412=true,FIREWIRE=false,STRICT_DEVMEM=false,GENERIC_FIND_FIRST_BIT=true,IOMMU_DEBUG=false,MGEODEGX1_alt=true,DEBUG_PER_CPU_MAPS=true,SERIAL_SAMSUNG_UARTS=true,PHYS_ADDR_T_64BIT=false,HAVE_ARCH_EARLY_PFN_TO_NID=false";
+
+    private FMModel diagModel;
+
+    @Setup
+    public void setUp() throws FeatureModelParserException, CloneNotSupportedException {
+        // loads feature model
+        File file = new File("./data/kb/linux-2.6.33.3.xml");
+        FMFormat fmFormat = FMFormat.getFMFormat(Files.getFileExtension(file.getName()));
+        FeatureModelParser parser = FMParserFactory.getInstance().getParser(fmFormat);
+        FeatureModel featureModel = parser.parse(file);
+
+        UserRequirementBuilder builder = new UserRequirementBuilder();
+        List<UserRequirement> userRequirement = builder.buildUserRequirement(user_requirement);
+        Combination combination = Combination.builder()
+                .combination(user_requirement)
+                .userRequirements(userRequirement)
+                .build();
+
+        diagModel = new FMModel(featureModel, combination, new FMUserRequirementTranslator(), true, false);
+        diagModel.initialize();
+
+        diagModel.clone(); // compiles the template
+    }
+
+    @Benchmark
+    public void cloneFromFeatureModel(Blackhole bh) throws CloneNotSupportedException {
+        bh.consume(diagModel.cloneFromFeatureModel());
+    }
+
+    @Benchmark
+    public void cloneFromTemplate(Blackhole bh) throws CloneNotSupportedException {
+        bh.consume(diagModel.clone());
+    }
+
+    @Benchmark
+    public void compileTemplate(Blackhole bh) throws CloneNotSupportedException {
+        bh.consume(FMModelTemplate.compile(diagModel.cloneFromFeatureModel()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(FMModelCloneBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,103 @@
+package at.tugraz.ist.ase.cacdr.benchmark;
+
+import at.tugraz.ist.ase.cacdr.algorithms.core.CCKey;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintIndex;
+import at.tugraz.ist.ase.cacdr.algorithms.core.ConstraintSet;
+import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.ConsistencyCheckResultV6;
+import at.tugraz.ist.ase.cacdr.algorithms.fastdiagp.corev6.LookupTableV6;
+import at.tugraz.ist.ase.kb.core.Constraint;
+import com.google.common.collect.Sets;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookups of {@link LookupTableV6}, which uses canonical keys ({@link CCKey}) of
+ * bitset-backed {@link ConstraintSet}s, with the lookups of a map keyed by the int hash code
+ * of Guava union views, as done by the FastDiag engines before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupTableBenchmark {
+
+    @Param({"100", "1000", "6000"})
+    private int numConstraints;
+
+    private static final int NUM_SETS = 256;
+
+    private List<Set<Constraint>> sets;
+    private List<ConstraintSet> constraintSets;
+    private Set<Constraint> B;
+    private ConstraintSet bs;
+
+    private ConcurrentMap<Integer, Boolean> intHashTable;
+    private LookupTableV6 lookupTable;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(141);
+
+        List<Constraint> constraints = new ArrayList<>(numConstraints);
+        for (int i = 0; i < numConstraints; i++) {
+            constraints.add(new Constraint("c" + i));
+        }
+
+        // random, differently sized subsets, as the ones generated by fd and the lookahead
+        ConstraintIndex index = new ConstraintIndex(constraints);
+        sets = new ArrayList<>(NUM_SETS);
+        constraintSets = new ArrayList<>(NUM_SETS);
+        for (int i = 0; i < NUM_SETS; i++) {
+            int from = 1 + random.nextInt(numConstraints / 2);
+            int to = from + 1 + random.nextInt(numConstraints - from - 1);
+            Set<Constraint> C = new LinkedHashSet<>(constraints.subList(from, to));
+            sets.add(C);
+            constraintSets.add(ConstraintSet.of(index, C));
+        }
+        B = Collections.singleton(constraints.get(0));
+        bs = ConstraintSet.of(index, B);
+
+        intHashTable = new ConcurrentHashMap<>();
+        lookupTable = new LookupTableV6(index);
+        // half of the lookups are hits
+        for (int i = 0; i < NUM_SETS; i += 2) {
+            intHashTable.put(Sets.union(B, sets.get(i)).hashCode(), true);
+
+            ConstraintSet BwithC = bs.union(constraintSets.get(i));
+            lookupTable.put(BwithC.key(), new ConsistencyCheckResultV6(BwithC));
+        }
+    }
+
+    @Benchmark
+    public void intHashLookup(Blackhole bh) {
+        for (Set<Constraint> C : sets) {
+            bh.consume(intHashTable.containsKey(Sets.union(B, C).hashCode()));
+        }
+    }
+
+    @Benchmark
+    public void canonicalKeyLookup(Blackhole bh) {
+        for (ConstraintSet C : constraintSets) {
+            bh.consume(lookupTable.contains(bs.union(C).key()));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(LookupTableBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}